@@ -0,0 +1,436 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.jetty.util.ArrayTernaryTrie;
+import org.eclipse.jetty.util.Trie;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>A bounded cache of {@link HttpField}s that may be shared by many {@link HttpParser}s.</p>
+ * <p>Unlike the per connection header cache of {@link HttpParser}, that is discarded
+ * when the connection is closed, this cache learns the header name:value pairs that
+ * are frequently received by all the connections of a server, so that short lived
+ * connections can also avoid to allocate {@link HttpField}s and their strings.</p>
+ * <p>The fields that are not found in the cache are {@link #learn(HttpField) learnt}:
+ * their frequency is recorded in a count-min sketch that is periodically aged, and a field
+ * is admitted to the cache once it has been seen {@link #getAdmissionThreshold() a number of times}
+ * and, if the cache is full, more frequently than the least frequent cached field, which
+ * is then evicted.</p>
+ * <p>Lookups use an immutable {@link Trie} snapshot of the cached fields, so that they are
+ * lock free; admissions and evictions are batched and applied by building a new snapshot at
+ * most once per {@link #getRebuildInterval() rebuild interval}.</p>
+ * <p>Since header values are case sensitive while the trie is not, a field found in the
+ * trie is only returned if its value exactly matches the bytes of the buffer.</p>
+ */
+@ManagedObject("A shared cache of HTTP fields")
+public class HttpFieldCache
+{
+    private static final Logger LOG = Log.getLogger(HttpFieldCache.class);
+    private static final int MAX_TRIE_CAPACITY = 0xFFFE;
+
+    private final ReentrantLock _lock = new ReentrantLock();
+    private final Set<HttpField> _candidates = ConcurrentHashMap.newKeySet();
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _admissions = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
+    private final AtomicLong _lastRebuild = new AtomicLong(System.nanoTime());
+    private final FrequencySketch _sketch;
+    private final int _maxEntries;
+    private final int _maxFieldSize;
+    private volatile Snapshot _snapshot = new Snapshot(new ArrayList<>());
+    private volatile int _admissionThreshold = 3;
+    private volatile long _rebuildInterval = 1000;
+
+    public HttpFieldCache()
+    {
+        this(512, 256);
+    }
+
+    /**
+     * @param maxEntries the max number of fields in the cache
+     * @param maxFieldSize the max size in chars of the name and value of a cached field
+     */
+    public HttpFieldCache(int maxEntries, int maxFieldSize)
+    {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("Invalid maxEntries " + maxEntries);
+        _maxEntries = maxEntries;
+        _maxFieldSize = maxFieldSize;
+        _sketch = new FrequencySketch(maxEntries);
+    }
+
+    @ManagedAttribute("The max number of cached fields")
+    public int getMaxEntries()
+    {
+        return _maxEntries;
+    }
+
+    @ManagedAttribute("The max size in chars of a cached field")
+    public int getMaxFieldSize()
+    {
+        return _maxFieldSize;
+    }
+
+    @ManagedAttribute("The number of times a field must be seen before being cached")
+    public int getAdmissionThreshold()
+    {
+        return _admissionThreshold;
+    }
+
+    /**
+     * @param admissionThreshold the number of times a field must be seen before being cached
+     */
+    public void setAdmissionThreshold(int admissionThreshold)
+    {
+        _admissionThreshold = Math.max(1, Math.min(admissionThreshold, FrequencySketch.MAX_COUNT));
+    }
+
+    @ManagedAttribute("The min interval in ms between two updates of the cached fields")
+    public long getRebuildInterval()
+    {
+        return _rebuildInterval;
+    }
+
+    /**
+     * @param rebuildInterval the min interval in ms between two updates of the cached fields
+     */
+    public void setRebuildInterval(long rebuildInterval)
+    {
+        _rebuildInterval = rebuildInterval;
+    }
+
+    @ManagedAttribute("The number of cached fields")
+    public int getSize()
+    {
+        return _snapshot._fields.size();
+    }
+
+    @ManagedAttribute("The number of fields found in the cache")
+    public long getHits()
+    {
+        return _hits.longValue();
+    }
+
+    @ManagedAttribute("The number of fields not found in the cache")
+    public long getMisses()
+    {
+        return _misses.longValue();
+    }
+
+    @ManagedAttribute("The number of fields admitted to the cache")
+    public long getAdmissions()
+    {
+        return _admissions.longValue();
+    }
+
+    @ManagedAttribute("The number of fields evicted from the cache")
+    public long getEvictions()
+    {
+        return _evictions.longValue();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        _hits.reset();
+        _misses.reset();
+        _admissions.reset();
+        _evictions.reset();
+    }
+
+    @ManagedOperation(value = "Removes all the cached fields", impact = "ACTION")
+    public void clear()
+    {
+        _lock.lock();
+        try
+        {
+            _candidates.clear();
+            _sketch.clear();
+            _snapshot = new Snapshot(new ArrayList<>());
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * <p>Looks up a cached field in the buffer, with the same semantic of
+     * {@link Trie#getBest(ByteBuffer, int, int)}.</p>
+     *
+     * @param buffer the buffer containing a header line
+     * @param offset the offset of the header line from the buffer position
+     * @param length the max number of bytes to look up
+     * @return the cached field whose name and value match the buffer bytes, or null
+     * (the cached value may be a prefix of the value in the buffer)
+     */
+    public HttpField getBest(ByteBuffer buffer, int offset, int length)
+    {
+        Snapshot snapshot = _snapshot;
+        if (snapshot._fields.isEmpty())
+            return null;
+        HttpField field = snapshot._trie.getBest(buffer, offset, length);
+        if (field == null)
+            return null;
+
+        // The trie is case insensitive, so check the value exactly.
+        String value = field.getValue();
+        int start = buffer.position() + offset + field.getName().length() + 2;
+        for (int i = 0; i < value.length(); ++i)
+        {
+            if ((buffer.get(start + i) & 0xFF) != value.charAt(i))
+                return null;
+        }
+
+        // The field is only a hit if the whole value matches,
+        // otherwise the parser learns the field as a miss.
+        int end = start + value.length();
+        if (end < buffer.limit())
+        {
+            byte b = buffer.get(end);
+            if (b == HttpTokens.CARRIAGE_RETURN || b == HttpTokens.LINE_FEED)
+                _hits.increment();
+        }
+        return field;
+    }
+
+    /**
+     * <p>Records a field that was parsed and not found in this cache,
+     * possibly admitting it to the cache.</p>
+     *
+     * @param field the field to learn
+     */
+    public void learn(HttpField field)
+    {
+        _misses.increment();
+
+        String value = field.getValue();
+        if (value == null || value.isEmpty())
+            return;
+        if (size(field) > _maxFieldSize)
+            return;
+
+        int frequency = _sketch.increment(field.hashCode());
+        if (frequency >= _admissionThreshold && _candidates.size() < _maxEntries)
+            _candidates.add(field);
+
+        if (!_candidates.isEmpty())
+        {
+            long now = System.nanoTime();
+            long last = _lastRebuild.get();
+            if (now - last >= TimeUnit.MILLISECONDS.toNanos(_rebuildInterval) && _lock.tryLock())
+            {
+                try
+                {
+                    _lastRebuild.set(now);
+                    rebuild();
+                }
+                finally
+                {
+                    _lock.unlock();
+                }
+            }
+        }
+    }
+
+    private void rebuild()
+    {
+        List<HttpField> fields = new ArrayList<>(_snapshot._fields);
+        int capacity = 0;
+        for (HttpField field : fields)
+            capacity += nodes(field);
+
+        for (HttpField candidate : _candidates)
+        {
+            if (fields.contains(candidate))
+                continue;
+
+            int frequency = _sketch.frequency(candidate.hashCode());
+            if (fields.size() >= _maxEntries || capacity + nodes(candidate) > MAX_TRIE_CAPACITY)
+            {
+                // TinyLFU admission: evict the least frequent field only
+                // if it is less frequent than the candidate.
+                int victim = -1;
+                int victimFrequency = Integer.MAX_VALUE;
+                for (int i = 0; i < fields.size(); ++i)
+                {
+                    int f = _sketch.frequency(fields.get(i).hashCode());
+                    if (f < victimFrequency)
+                    {
+                        victim = i;
+                        victimFrequency = f;
+                    }
+                }
+                if (victim < 0 || victimFrequency >= frequency)
+                    continue;
+                HttpField evicted = fields.remove(victim);
+                capacity -= nodes(evicted);
+                _evictions.increment();
+                if (capacity + nodes(candidate) > MAX_TRIE_CAPACITY)
+                    continue;
+            }
+
+            fields.add(candidate);
+            capacity += nodes(candidate);
+            _admissions.increment();
+        }
+        _candidates.clear();
+
+        _snapshot = new Snapshot(fields);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Rebuilt {}", this);
+    }
+
+    private static int size(HttpField field)
+    {
+        // The length of the "name: value" string, without building it.
+        return field.getName().length() + 2 + field.getValue().length();
+    }
+
+    private static int nodes(HttpField field)
+    {
+        // A trie node per char, plus the node holding the value.
+        return size(field) + 1;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{size=%d/%d,hits=%d,misses=%d}",
+                getClass().getSimpleName(), hashCode(), getSize(), getMaxEntries(), getHits(), getMisses());
+    }
+
+    private static class Snapshot
+    {
+        private final List<HttpField> _fields;
+        private final Trie<HttpField> _trie;
+
+        private Snapshot(List<HttpField> fields)
+        {
+            // The root node and an extra node are always needed.
+            int capacity = 2;
+            for (HttpField field : fields)
+                capacity += nodes(field);
+            Trie<HttpField> trie = new ArrayTernaryTrie<>(true, capacity);
+            for (HttpField field : fields)
+                trie.put(field);
+            _fields = fields;
+            _trie = trie;
+        }
+    }
+
+    /**
+     * <p>A count-min sketch of 4 rows of counters saturating at {@link #MAX_COUNT},
+     * that are halved after a number of increments proportional to the sketch width,
+     * so that the frequencies of fields that are no longer received decay.</p>
+     * <p>The increments are counted by a {@link LongAdder}, so that concurrent parsers
+     * do not contend on a single counter, whose sum is only checked every
+     * {@link #CHECK_INTERVAL} increments on average.</p>
+     */
+    private static class FrequencySketch
+    {
+        private static final int MAX_COUNT = 15;
+        private static final int DEPTH = 4;
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+        private static final int CHECK_INTERVAL = 16;
+
+        private final AtomicIntegerArray _counters;
+        private final LongAdder _increments = new LongAdder();
+        private final AtomicLong _lastAge = new AtomicLong();
+        private final int _mask;
+        private final int _sampleSize;
+
+        private FrequencySketch(int maxEntries)
+        {
+            int width = Integer.highestOneBit(Math.max(16, maxEntries * 4) - 1) << 1;
+            _counters = new AtomicIntegerArray(width * DEPTH);
+            _mask = width - 1;
+            _sampleSize = width * 10;
+        }
+
+        private int index(int hash, int row)
+        {
+            int h = (hash ^ SEEDS[row]) * SEEDS[row];
+            h ^= h >>> 16;
+            return row * (_mask + 1) + (h & _mask);
+        }
+
+        private int frequency(int hash)
+        {
+            int min = MAX_COUNT;
+            for (int row = 0; row < DEPTH; ++row)
+                min = Math.min(min, _counters.get(index(hash, row)));
+            return min;
+        }
+
+        private int increment(int hash)
+        {
+            int min = MAX_COUNT;
+            for (int row = 0; row < DEPTH; ++row)
+            {
+                int index = index(hash, row);
+                int count = _counters.get(index);
+                if (count < MAX_COUNT)
+                    count = _counters.incrementAndGet(index);
+                min = Math.min(min, count);
+            }
+            _increments.increment();
+            if (ThreadLocalRandom.current().nextInt(CHECK_INTERVAL) == 0)
+            {
+                long increments = _increments.sum();
+                long lastAge = _lastAge.get();
+                if (increments - lastAge >= _sampleSize && _lastAge.compareAndSet(lastAge, increments))
+                    age();
+            }
+            return min;
+        }
+
+        private void age()
+        {
+            for (int i = 0; i < _counters.length(); ++i)
+                _counters.set(i, _counters.get(i) >>> 1);
+        }
+
+        private void clear()
+        {
+            for (int i = 0; i < _counters.length(); ++i)
+                _counters.set(i, 0);
+            _increments.reset();
+            _lastAge.set(0);
+        }
+    }
+}
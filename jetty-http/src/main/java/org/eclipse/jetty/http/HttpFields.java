@@ -592,6 +592,29 @@ public class HttpFields implements Iterable<HttpField>
         if (!put)
             add(field);
     }
+
+    /**
+     * Put the fields of a pre encoded template.
+     * <p>Fields with the same names as the fields of the template are removed,
+     * and the fields of the template are then added contiguously, so that the
+     * {@link HttpGenerator} can copy them as a single pre encoded block.</p>
+     *
+     * @param template the template of the fields to put
+     */
+    public void put(PreEncodedHttpFields template)
+    {
+        for (HttpField field : template)
+        {
+            if (field.getHeader()==null)
+                remove(field.getName());
+            else
+                remove(field.getHeader());
+        }
+        if (_size+template.size()>_fields.length)
+            _fields=Arrays.copyOf(_fields,Math.max(_size*2,_size+template.size()));
+        for (HttpField field : template)
+            _fields[_size++]=field;
+    }
     
     /**
      * Set a field.
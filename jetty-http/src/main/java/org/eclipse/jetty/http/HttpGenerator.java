@@ -662,6 +662,23 @@ public class HttpGenerator
             for (int f=0;f<n;f++)
             {
                 HttpField field = fields.getField(f);
+
+                // Copy a pre encoded template as a block if its fields are unchanged
+                if (field instanceof PreEncodedHttpFields.Field)
+                {
+                    PreEncodedHttpFields template = ((PreEncodedHttpFields.Field)field).getTemplate();
+                    if (template.isBlockAt(fields,f))
+                    {
+                        template.putTo(header);
+                        if (template.hasContentType())
+                            content_type=true;
+                        if (template.hasServer())
+                            send=send&~SEND_SERVER;
+                        f+=template.size()-1;
+                        continue;
+                    }
+                }
+
                 String v = field.getValue();
                 if (v==null || v.length()==0)
                     continue; // rfc7230 does not allow no value
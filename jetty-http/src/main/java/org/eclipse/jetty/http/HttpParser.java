@@ -19,6 +19,7 @@
 package org.eclipse.jetty.http;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.EnumSet;
@@ -74,7 +75,9 @@ import static org.eclipse.jetty.http.HttpTokens.TAB;
  * (eg. "Connection: close"), or just header names (eg. "Connection:" ).
  * For headers who's value is not known statically (eg. Host, COOKIE) then a
  * per parser dynamic Trie of {@link HttpFields} from previous parsed messages
- * is used to help the parsing of subsequent messages.
+ * is used to help the parsing of subsequent messages.  Optionally, a
+ * {@link HttpFieldCache} shared by the parsers of many connections learns the
+ * fields most frequently received, which helps short lived connections.
  * </p>
  * <p>
  * The parser can work in varying compliance modes:
@@ -93,6 +96,8 @@ public class HttpParser
     @Deprecated
     public final static String __STRICT="org.eclipse.jetty.http.HttpParser.STRICT";
     public final static int INITIAL_URI_LENGTH=256;
+    private final static int MIN_ARENA_SIZE=128;
+    private final static int MAX_ARENA_SIZE=1024;
 
     /**
      * Cache of common {@link HttpField}s including: <UL>
@@ -180,6 +185,11 @@ public class HttpParser
     private boolean _cr;
     private ByteBuffer _contentChunk;
     private Trie<HttpField> _connectionFields;
+    private HttpFieldCache _fieldCache;
+    private boolean _lazyFieldValues;
+    private boolean _valuePending;
+    private byte[] _arena;
+    private int _arenaSize;
 
     private int _length;
     private final StringBuilder _string=new StringBuilder();
@@ -311,6 +321,41 @@ public class HttpParser
     {
         return _handler;
     }
+
+    /* ------------------------------------------------------------------------------- */
+    public HttpFieldCache getHttpFieldCache()
+    {
+        return _fieldCache;
+    }
+
+    /* ------------------------------------------------------------------------------- */
+    /** Set a field cache shared with other parsers.
+     * <p>The shared cache is looked up after the per connection cache and before
+     * the static {@link #CACHE}, and learns the fields that are not cached.</p>
+     * @param fieldCache the shared field cache, or null for no shared cache
+     */
+    public void setHttpFieldCache(HttpFieldCache fieldCache)
+    {
+        _fieldCache = fieldCache;
+    }
+
+    /* ------------------------------------------------------------------------------- */
+    public boolean isLazyFieldValues()
+    {
+        return _lazyFieldValues;
+    }
+
+    /* ------------------------------------------------------------------------------- */
+    /** Set whether header values are converted to String only when accessed.
+     * <p>When true, the values of the header fields that are not interpreted by the
+     * parser (nor cached) are copied to a byte arena shared by the fields of a request,
+     * and are only converted to String by the first call to {@link HttpField#getValue()}.</p>
+     * @param lazyFieldValues whether header values are converted to String only when accessed
+     */
+    public void setLazyFieldValues(boolean lazyFieldValues)
+    {
+        _lazyFieldValues = lazyFieldValues;
+    }
     
     /* ------------------------------------------------------------------------------- */
     /** Check RFC compliance violation
@@ -475,6 +520,88 @@ public class HttpParser
 
     }
 
+    /* ------------------------------------------------------------------------------- */
+    /**
+     * <p>Scans the buffer 8 bytes at a time for the first byte that is not a legal
+     * field value byte without special meaning, that is any byte less than
+     * {@link HttpTokens#SPACE} (including CR, LF and TAB) or the DEL byte.</p>
+     *
+     * @param buffer the buffer to scan
+     * @param from the absolute index to scan from
+     * @param to the absolute index to scan to (exclusive)
+     * @return the absolute index of the first such byte, or {@code to} if there is none
+     */
+    static int scanFieldValue(ByteBuffer buffer, int from, int to)
+    {
+        int i=from;
+        boolean bigEndian=buffer.order()==ByteOrder.BIG_ENDIAN;
+        while (i+8<=to)
+        {
+            long word=buffer.getLong(i);
+            long mask=lessThan(word,SPACE)|equalTo(word,(byte)0x7F);
+            if (mask!=0)
+                return i+((bigEndian?Long.numberOfLeadingZeros(mask):Long.numberOfTrailingZeros(mask))>>>3);
+            i+=8;
+        }
+        while (i<to)
+        {
+            byte b=buffer.get(i);
+            if ((b>=0 && b<SPACE) || b==0x7F)
+                return i;
+            ++i;
+        }
+        return to;
+    }
+
+    /* ------------------------------------------------------------------------------- */
+    /**
+     * <p>Scans the buffer 8 bytes at a time for the first byte that is not a
+     * visible US-ASCII char, that is the end of a request target.</p>
+     *
+     * @param buffer the buffer to scan
+     * @param from the absolute index to scan from
+     * @param to the absolute index to scan to (exclusive)
+     * @return the absolute index of the first such byte, or {@code to} if there is none
+     */
+    static int scanUri(ByteBuffer buffer, int from, int to)
+    {
+        int i=from;
+        boolean bigEndian=buffer.order()==ByteOrder.BIG_ENDIAN;
+        while (i+8<=to)
+        {
+            long word=buffer.getLong(i);
+            long mask=lessThan(word,(byte)(SPACE+1))|(word&0x8080808080808080L);
+            if (mask!=0)
+                return i+((bigEndian?Long.numberOfLeadingZeros(mask):Long.numberOfTrailingZeros(mask))>>>3);
+            i+=8;
+        }
+        while (i<to && buffer.get(i)>SPACE)
+            ++i;
+        return i;
+    }
+
+    /* ------------------------------------------------------------------------------- */
+    /**
+     * @return a mask with the high bit set in every byte of the word that is,
+     * unsigned, less than {@code n}, with {@code 0 < n <= 0x80}; there is no carry
+     * between bytes, so the mask is exact for every byte
+     */
+    private static long lessThan(long word, byte n)
+    {
+        long geq=(word&0x7F7F7F7F7F7F7F7FL)+(0x0101010101010101L*(0x80-n));
+        return ~(geq|word)&0x8080808080808080L;
+    }
+
+    /* ------------------------------------------------------------------------------- */
+    /**
+     * @return a mask with the high bit set in every byte of the word that is equal to {@code b}
+     */
+    private static long equalTo(long word, byte b)
+    {
+        long x=word^(0x0101010101010101L*(b&0xFF));
+        return ~(((x&0x7F7F7F7F7F7F7F7FL)+0x7F7F7F7F7F7F7F7FL)|x|0x7F7F7F7F7F7F7F7FL);
+    }
+
     /* ------------------------------------------------------------------------------- */
     private byte next(ByteBuffer buffer)
     {
@@ -695,10 +822,7 @@ public class HttpParser
                             {
                                 byte[] array=buffer.array();
                                 int p=buffer.arrayOffset()+buffer.position();
-                                int l=buffer.arrayOffset()+buffer.limit();
-                                int i=p;
-                                while (i<l && array[i]>HttpTokens.SPACE)
-                                    i++;
+                                int i=buffer.arrayOffset()+scanUri(buffer,buffer.position(),buffer.limit());
 
                                 int len=i-p;
                                 _headerBytes+=len;
@@ -885,11 +1009,70 @@ public class HttpParser
         return handle;
     }
 
+    /* ------------------------------------------------------------------------------- */
+    /* Fast path to append to the field value the bytes up to the next CR, LF,
+     * TAB or illegal byte, which are left to the byte at a time state machine.
+     */
+    private void appendFieldValue(ByteBuffer buffer)
+    {
+        int from=buffer.position();
+        int to=scanFieldValue(buffer,from,buffer.limit());
+        int len=to-from;
+        if (len==0)
+            return;
+
+        _headerBytes+=len;
+        if (_maxHeaderBytes>0 && _headerBytes>_maxHeaderBytes)
+        {
+            // Let the state machine report the header as too large.
+            _headerBytes-=len;
+            return;
+        }
+
+        if (buffer.hasArray())
+        {
+            byte[] array=buffer.array();
+            int offset=buffer.arrayOffset();
+            for (int i=from;i<to;i++)
+                _string.append((char)(0xff&array[offset+i]));
+        }
+        else
+        {
+            for (int i=from;i<to;i++)
+                _string.append((char)(0xff&buffer.get(i)));
+        }
+
+        // Trailing spaces are not part of the value.
+        int last=to-1;
+        while (last>=from && buffer.get(last)==HttpTokens.SPACE)
+            last--;
+        if (last>=from)
+            _length=_string.length()-(to-1-last);
+
+        buffer.position(to);
+    }
+
     private void parsedHeader()
     {
         // handler last header if any.  Delayed to here just in case there was a continuation line (above)
+        if (_valuePending)
+        {
+            _valuePending=false;
+            if (isLazyFieldValue())
+            {
+                _handler.parsedHeader(newLazyHttpField());
+                _headerString=null;
+                _header=null;
+                return;
+            }
+            _valueString=takeString();
+        }
+
         if (_headerString!=null || _valueString!=null)
         {
+            // Was the field found in a cache?
+            boolean cached=_field!=null;
+
             // Handle known headers
             if (_header!=null)
             {
@@ -964,7 +1147,11 @@ public class HttpParser
                     _connectionFields.put(_field);
                 }
             }
-            _handler.parsedHeader(_field!=null?_field:new HttpField(_header,_headerString,_valueString));
+
+            HttpField field=_field!=null?_field:new HttpField(_header,_headerString,_valueString);
+            if (!cached && _fieldCache!=null && _requestHandler!=null)
+                _fieldCache.learn(field);
+            _handler.parsedHeader(field);
         }
 
         _headerString=_valueString=null;
@@ -973,6 +1160,57 @@ public class HttpParser
         _field=null;
     }
 
+    private boolean isLazyFieldValue()
+    {
+        // The shared cache needs the value to learn the field.
+        if (_fieldCache!=null)
+            return false;
+        if (_header==null)
+            return true;
+
+        switch (_header)
+        {
+            case CONTENT_LENGTH:
+            case TRANSFER_ENCODING:
+            case HOST:
+            case CONNECTION:
+                return false;
+
+            case AUTHORIZATION:
+            case ACCEPT:
+            case ACCEPT_CHARSET:
+            case ACCEPT_ENCODING:
+            case ACCEPT_LANGUAGE:
+            case COOKIE:
+            case CACHE_CONTROL:
+            case USER_AGENT:
+                return _connectionFields==null;
+
+            default:
+                return true;
+        }
+    }
+
+    private HttpField newLazyHttpField()
+    {
+        int length=_length;
+        if (_arena==null || _arenaSize+length>_arena.length)
+        {
+            // Fields keep a reference to the previous arena, so it is not reused.
+            // Arenas start small and grow, so that requests with few lazy fields allocate little.
+            int size=_arena==null?MIN_ARENA_SIZE:Math.min(MAX_ARENA_SIZE,_arena.length*2);
+            _arena=new byte[Math.max(size,length)];
+            _arenaSize=0;
+        }
+        for (int i=0;i<length;i++)
+            _arena[_arenaSize+i]=(byte)_string.charAt(i);
+        HttpField field=new LazyHttpField(_header,_headerString,_arena,_arenaSize,length);
+        _arenaSize+=length;
+        _string.setLength(0);
+        _length=-1;
+        return field;
+    }
+
     private void parsedTrailer()
     {
         // handler last header if any.  Delayed to here just in case there was a continuation line (above)
@@ -1034,7 +1272,14 @@ public class HttpParser
                                 throw new BadMessageException(HttpStatus.BAD_REQUEST_400,"Header Folding");
 
                             // header value without name - continuation?
-                            if (_valueString==null)
+                            if (_valuePending)
+                            {
+                                _valuePending=false;
+                                _string.setLength(_length);
+                                _string.append(' ');
+                                _length++;
+                            }
+                            else if (_valueString==null)
                             {
                                 _string.setLength(0);
                                 _length=0;
@@ -1141,6 +1386,8 @@ public class HttpParser
                             {
                                 // Try a look ahead for the known header name and value.
                                 HttpField field=_connectionFields==null?null:_connectionFields.getBest(buffer,-1,buffer.remaining());
+                                if (field==null && _fieldCache!=null && _state==State.HEADER)
+                                    field=_fieldCache.getBest(buffer,-1,buffer.remaining());
                                 if (field==null)
                                     field=CACHE.getBest(buffer,-1,buffer.remaining());
 
@@ -1306,6 +1553,8 @@ public class HttpParser
                         _string.append((char)(0xff&ch));
                         if (ch>HttpTokens.SPACE || ch<0)
                             _length=_string.length();
+                        if (ch!=HttpTokens.TAB)
+                            appendFieldValue(buffer);
                         break;
                     }
 
@@ -1314,8 +1563,14 @@ public class HttpParser
                         if (_length > 0)
                         {
                             _value=null;
-                            _valueString=takeString();
-                            _length=-1;
+                            // Lazy values are left in _string until parsedHeader()
+                            if (_lazyFieldValues && _state==State.HEADER && _field==null)
+                                _valuePending=true;
+                            else
+                            {
+                                _valueString=takeString();
+                                _length=-1;
+                            }
                         }
                         setState(FieldState.FIELD);
                         break;
@@ -1678,6 +1933,8 @@ public class HttpParser
         _headerBytes=0;
         _host=false;
         _headerComplete=false;
+        _valuePending=false;
+        _arena=null;
     }
 
     /* ------------------------------------------------------------------------------- */
@@ -75,6 +75,10 @@ public class HttpURI
     
     String _uri;
     String _decodedPath;
+    private boolean _pathPending;
+    private boolean _queryPending;
+    private int _pathEnd;
+    private String _target;
 
     /* ------------------------------------------------------------ */
     /**
@@ -120,6 +124,10 @@ public class HttpURI
     {
         this(uri._scheme,uri._host,uri._port,uri._path,uri._param,uri._query,uri._fragment);
         _uri=uri._uri;
+        _pathPending=uri._pathPending;
+        _queryPending=uri._queryPending;
+        _pathEnd=uri._pathEnd;
+        _target=uri._target;
     }
     
     /* ------------------------------------------------------------ */
@@ -193,6 +201,64 @@ public class HttpURI
             parse(uri.startsWith("/")?State.PATH:State.START,uri,0,uri.length());
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * Parse according to https://tools.ietf.org/html/rfc7230#section-5.3,
+     * deferring the parsing of an origin-form target (eg "/path?query"):
+     * the path and param are only parsed when one of them is accessed, and
+     * the query and fragment are only split when one of them is accessed.
+     * @param method the request method
+     * @param uri the request uri
+     */
+    public void parseRequestTargetLazily(String method,String uri)
+    {
+        if (HttpMethod.CONNECT.is(method) || !uri.startsWith("/"))
+        {
+            parseRequestTarget(method,uri);
+            return;
+        }
+        clear();
+        _uri=uri;
+        _target=uri;
+        _pathPending=true;
+        _queryPending=true;
+    }
+
+    /* ------------------------------------------------------------ */
+    private void parsePendingPath()
+    {
+        if (_pathPending)
+        {
+            _pathPending=false;
+            int end=0;
+            while (end<_target.length())
+            {
+                char c=_target.charAt(end);
+                if (c=='?' || c=='#')
+                    break;
+                end++;
+            }
+            _pathEnd=end;
+            parse(State.PATH,_target,0,end);
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    private void parsePending()
+    {
+        parsePendingPath();
+        if (_queryPending)
+        {
+            _queryPending=false;
+            int end=_target.length();
+            int fragment=_target.indexOf('#',_pathEnd);
+            if (_pathEnd<end && _target.charAt(_pathEnd)=='?')
+                _query=_target.substring(_pathEnd+1,fragment<0?end:fragment);
+            if (fragment>=0)
+                _fragment=_target.substring(fragment+1);
+        }
+    }
+
     /* ------------------------------------------------------------ */
     @Deprecated
     public void parseConnect(String uri)
@@ -572,12 +638,14 @@ public class HttpURI
      */
     public String getPath()
     {
+        parsePendingPath();
         return _path;
     }
 
     /* ------------------------------------------------------------ */
     public String getDecodedPath()
     {
+        parsePendingPath();
         if (_decodedPath==null && _path!=null)
             _decodedPath=URIUtil.decodePath(_path);
         return _decodedPath;
@@ -586,30 +654,35 @@ public class HttpURI
     /* ------------------------------------------------------------ */
     public String getParam()
     {
+        parsePendingPath();
         return _param;
     }
 
     /* ------------------------------------------------------------ */
     public String getQuery()
     {
+        parsePending();
         return _query;
     }
 
     /* ------------------------------------------------------------ */
     public boolean hasQuery()
     {
+        parsePending();
         return _query!=null && _query.length()>0;
     }
 
     /* ------------------------------------------------------------ */
     public String getFragment()
     {
+        parsePending();
         return _fragment;
     }
 
     /* ------------------------------------------------------------ */
     public void decodeQueryTo(MultiMap<String> parameters)
     {
+        parsePending();
         if (_query==_fragment)
             return;
         UrlEncoded.decodeUtf8To(_query,parameters);
@@ -624,6 +697,7 @@ public class HttpURI
     /* ------------------------------------------------------------ */
     public void decodeQueryTo(MultiMap<String> parameters, Charset encoding) throws UnsupportedEncodingException
     {
+        parsePending();
         if (_query==_fragment)
             return;
 
@@ -637,6 +711,9 @@ public class HttpURI
     public void clear()
     {
         _uri=null;
+        _pathPending=false;
+        _queryPending=false;
+        _target=null;
 
         _scheme=null;
         _host=null;
@@ -677,14 +754,19 @@ public class HttpURI
             if (_port>0)
                 out.append(':').append(_port);
             
-            if (_path!=null)
-                out.append(_path);
-            
-            if (_query!=null)
-                out.append('?').append(_query);
-            
-            if (_fragment!=null)
-                out.append('#').append(_fragment);
+            if (_queryPending)
+                out.append(_target);
+            else
+            {
+                if (_path!=null)
+                    out.append(_path);
+
+                if (_query!=null)
+                    out.append('?').append(_query);
+
+                if (_fragment!=null)
+                    out.append('#').append(_fragment);
+            }
             
             if (out.length()>0)
                 _uri=out.toString();
@@ -729,6 +811,7 @@ public class HttpURI
      */
     public void setPath(String path)
     {
+        parsePending();
         _uri=null;
         _path=path;
         _decodedPath=null;
@@ -737,6 +820,9 @@ public class HttpURI
     /* ------------------------------------------------------------ */
     public void setPathQuery(String path)
     {
+        _pathPending=false;
+        _queryPending=false;
+        _target=null;
         _uri=null;
         _path=null;
         _decodedPath=null;
@@ -749,6 +835,7 @@ public class HttpURI
     /* ------------------------------------------------------------ */
     public void setQuery(String query)
     {
+        parsePending();
         _query=query;
         _uri=null;
     }
@@ -756,12 +843,19 @@ public class HttpURI
     /* ------------------------------------------------------------ */
     public URI toURI() throws URISyntaxException
     {
+        parsePending();
         return new URI(_scheme,null,_host,_port,_path,_query==null?null:UrlEncoded.decodeString(_query),_fragment);
     }
 
     /* ------------------------------------------------------------ */
     public String getPathQuery()
     {
+        if (_queryPending)
+        {
+            // The origin-form target without its fragment
+            int fragment=_target.indexOf('#');
+            return fragment<0?_target:_target.substring(0,fragment);
+        }
         if (_query==null)
             return _path;
         return _path+"?"+_query;
@@ -0,0 +1,57 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>A {@link HttpField} whose value is kept as the ISO-8859-1 bytes received
+ * and is only converted to a String when first accessed.</p>
+ * <p>The bytes are held in a byte arena shared by the fields of a request,
+ * so that a request that reads only a few of its headers does not allocate
+ * a String for every header value.</p>
+ */
+class LazyHttpField extends HttpField
+{
+    private final byte[] _bytes;
+    private final int _offset;
+    private final int _length;
+    private String _value;
+
+    LazyHttpField(HttpHeader header, String name, byte[] bytes, int offset, int length)
+    {
+        super(header, name, (String)null);
+        _bytes = bytes;
+        _offset = offset;
+        _length = length;
+    }
+
+    @Override
+    public String getValue()
+    {
+        // A racing conversion yields an equal String, so no need to synchronize.
+        String value = _value;
+        if (value == null)
+        {
+            value = new String(_bytes, _offset, _length, StandardCharsets.ISO_8859_1);
+            _value = value;
+        }
+        return value;
+    }
+}
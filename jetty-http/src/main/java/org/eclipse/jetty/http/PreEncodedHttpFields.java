@@ -0,0 +1,210 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+
+/* ------------------------------------------------------------ */
+/** Pre encoded block of response HttpFields.
+ * <p>An immutable template of the header fields that a resource sends
+ * unchanged with every response (eg Content-Type, Cache-Control, Vary).
+ * Each field of the template is a {@link PreEncodedHttpField} and the
+ * HTTP/1 encoding of all the fields is also kept as a single block, so that
+ * when the fields of the template are still contiguous in a response,
+ * the {@link HttpGenerator} copies them with a single bulk put and only
+ * encodes the fields that vary (eg Date, Content-Length).
+ * </p>
+ * <p>Templates are added to a response with {@link HttpFields#put(PreEncodedHttpFields)}.
+ * If the fields of the template are subsequently replaced or removed, the
+ * remaining fields are encoded individually.
+ * </p>
+ * <p>The fields that are interpreted by the generator for each message
+ * (Content-Length, Transfer-Encoding, Connection) and the Date field
+ * cannot be part of a template.
+ * </p>
+ */
+public class PreEncodedHttpFields implements Iterable<HttpField>
+{
+    private final Field[] _fields;
+    private final byte[] _encoded;
+    private final boolean _contentType;
+    private final boolean _server;
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param fields the fields of the template
+     * @throws IllegalArgumentException if a field cannot be pre encoded
+     */
+    public PreEncodedHttpFields(HttpFields fields)
+    {
+        this(fields.stream().toArray(HttpField[]::new));
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param fields the fields of the template
+     * @throws IllegalArgumentException if a field cannot be pre encoded
+     */
+    public PreEncodedHttpFields(HttpField... fields)
+    {
+        List<Field> list = new ArrayList<>(fields.length);
+        boolean contentType=false;
+        boolean server=false;
+        int length=0;
+        for (HttpField field : fields)
+        {
+            String value=field.getValue();
+            if (value==null || value.length()==0)
+                continue; // rfc7230 does not allow no value
+
+            HttpHeader header=field.getHeader();
+            if (header!=null)
+            {
+                switch (header)
+                {
+                    case CONTENT_LENGTH:
+                    case TRANSFER_ENCODING:
+                    case CONNECTION:
+                    case DATE:
+                        throw new IllegalArgumentException("Cannot pre encode "+field);
+                    case CONTENT_TYPE:
+                        contentType=true;
+                        break;
+                    case SERVER:
+                        server=true;
+                        break;
+                    default:
+                        break;
+                }
+            }
+
+            Field f=new Field(this,list.size(),header,field.getName(),value);
+            list.add(f);
+            length+=f.getEncodedLength(HttpVersion.HTTP_1_1);
+        }
+        _fields=list.toArray(new Field[list.size()]);
+        _contentType=contentType;
+        _server=server;
+
+        ByteBuffer buffer=ByteBuffer.allocate(length);
+        for (Field f : _fields)
+            f.putTo(buffer,HttpVersion.HTTP_1_1);
+        _encoded=buffer.array();
+    }
+
+    /* ------------------------------------------------------------ */
+    public int size()
+    {
+        return _fields.length;
+    }
+
+    /* ------------------------------------------------------------ */
+    public HttpField getField(int index)
+    {
+        return _fields[index];
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public Iterator<HttpField> iterator()
+    {
+        return Arrays.<HttpField>asList(_fields).iterator();
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return true if the template contains a Content-Type field
+     */
+    public boolean hasContentType()
+    {
+        return _contentType;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @return true if the template contains a Server field
+     */
+    public boolean hasServer()
+    {
+        return _server;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * @param fields the fields of a message
+     * @param index an index within the fields
+     * @return true if all the fields of this template are found, unchanged and in order, at the index
+     */
+    public boolean isBlockAt(HttpFields fields, int index)
+    {
+        if (_fields.length==0 || index+_fields.length>fields.size())
+            return false;
+        for (int i=0;i<_fields.length;i++)
+            if (fields.getField(index+i)!=_fields[i])
+                return false;
+        return true;
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Put the HTTP/1 encoding of all the fields of this template.
+     * @param bufferInFillMode the buffer to put to
+     */
+    public void putTo(ByteBuffer bufferInFillMode)
+    {
+        bufferInFillMode.put(_encoded);
+    }
+
+    /* ------------------------------------------------------------ */
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x%s",getClass().getSimpleName(),hashCode(),Arrays.toString(_fields));
+    }
+
+    /* ------------------------------------------------------------ */
+    /** A field of a template, that knows its template and position within it.
+     */
+    public static class Field extends PreEncodedHttpField
+    {
+        private final PreEncodedHttpFields _template;
+        private final int _index;
+
+        private Field(PreEncodedHttpFields template, int index, HttpHeader header, String name, String value)
+        {
+            super(header,name,value);
+            _template=template;
+            _index=index;
+        }
+
+        public PreEncodedHttpFields getTemplate()
+        {
+            return _template;
+        }
+
+        public int getIndex()
+        {
+            return _index;
+        }
+    }
+}
@@ -838,4 +838,77 @@ public class HttpGeneratorServerTest
         Assert.assertTrue(headers.contains(HttpHeaderValue.KEEP_ALIVE.asString()));
         Assert.assertTrue(headers.contains(customValue));
     }
+
+    @Test
+    public void testPreEncodedTemplate() throws Exception
+    {
+        PreEncodedHttpFields template = new PreEncodedHttpFields(
+                new HttpField(HttpHeader.CONTENT_TYPE, "application/json"),
+                new HttpField(HttpHeader.CACHE_CONTROL, "no-cache"),
+                new HttpField("X-Api-Version", "2"),
+                new HttpField(HttpHeader.SERVER, "api"));
+        Assert.assertEquals(4, template.size());
+
+        HttpFields fields = new HttpFields();
+        fields.put(HttpHeader.CACHE_CONTROL, "max-age=0");
+        fields.put(template);
+        fields.put(HttpHeader.DATE, DateGenerator.__01Jan1970);
+        Assert.assertEquals(5, fields.size());
+        Assert.assertTrue(template.isBlockAt(fields, 0));
+
+        String templated = generateHeader(new HttpGenerator(true, false), fields, 10);
+
+        HttpFields plain = new HttpFields();
+        plain.put(HttpHeader.CONTENT_TYPE, "application/json");
+        plain.put(HttpHeader.CACHE_CONTROL, "no-cache");
+        plain.put("X-Api-Version", "2");
+        plain.put(HttpHeader.SERVER, "api");
+        plain.put(HttpHeader.DATE, DateGenerator.__01Jan1970);
+        Assert.assertEquals(generateHeader(new HttpGenerator(true, false), plain, 10), templated);
+
+        assertThat(templated, startsWith("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nCache-Control: no-cache\r\nX-Api-Version: 2\r\nServer: api\r\n"));
+        assertThat(templated, containsString("Content-Length: 10\r\n"));
+        assertThat(templated, not(containsString("Jetty")));
+        assertThat(templated, not(containsString("max-age")));
+    }
+
+    @Test
+    public void testPreEncodedTemplateModified() throws Exception
+    {
+        PreEncodedHttpFields template = new PreEncodedHttpFields(
+                new HttpField(HttpHeader.CONTENT_TYPE, "application/json"),
+                new HttpField("X-Api-Version", "2"),
+                new HttpField(HttpHeader.VARY, "Accept"));
+
+        HttpFields fields = new HttpFields();
+        fields.put(template);
+        fields.put("X-Api-Version", "3");
+        Assert.assertFalse(template.isBlockAt(fields, 0));
+
+        String out = generateHeader(new HttpGenerator(), fields, 0);
+        assertThat(out, containsString("Content-Type: application/json\r\n"));
+        assertThat(out, containsString("X-Api-Version: 3\r\n"));
+        assertThat(out, not(containsString("X-Api-Version: 2")));
+        assertThat(out, containsString("Vary: Accept\r\n"));
+
+        fields.remove(HttpHeader.CONTENT_TYPE);
+        out = generateHeader(new HttpGenerator(), fields, 0);
+        assertThat(out, not(containsString("Content-Type")));
+        assertThat(out, containsString("Vary: Accept\r\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPreEncodedTemplateVaryingField() throws Exception
+    {
+        new PreEncodedHttpFields(new HttpField(HttpHeader.CONTENT_LENGTH, "10"));
+    }
+
+    private static String generateHeader(HttpGenerator generator, HttpFields fields, int contentLength) throws Exception
+    {
+        MetaData.Response info = new MetaData.Response(HttpVersion.HTTP_1_1, 200, null, fields, contentLength);
+        ByteBuffer header = BufferUtil.allocate(4096);
+        HttpGenerator.Result result = generator.generateResponse(info, false, header, null, null, true);
+        assertEquals(HttpGenerator.Result.FLUSH, result);
+        return BufferUtil.toString(header);
+    }
 }
@@ -222,4 +222,51 @@ public class HttpURITest
         assertEquals(uri.getAuthority(), "example.com:8888");
         assertEquals(uri.getUser(), "user:password");
     }
+
+    @Test
+    public void testParseRequestTargetLazily() throws Exception
+    {
+        HttpURI uri = new HttpURI();
+
+        uri.parseRequestTargetLazily("GET","/foo/bar;jsessionid=12345?a=1&b=2#frag");
+        assertThat(uri.getHost(),nullValue());
+        assertThat(uri.getPort(),is(-1));
+        assertEquals("/foo/bar;jsessionid=12345?a=1&b=2#frag",uri.toString());
+        assertThat(uri.getPath(),is("/foo/bar;jsessionid=12345"));
+        assertThat(uri.getDecodedPath(),is("/foo/bar"));
+        assertThat(uri.getParam(),is("jsessionid=12345"));
+        assertThat(uri.getQuery(),is("a=1&b=2"));
+        assertThat(uri.getFragment(),is("frag"));
+
+        uri.parseRequestTargetLazily("GET","/path?value=x");
+        MultiMap<String> parameters = new MultiMap<>();
+        uri.decodeQueryTo(parameters);
+        assertEquals("x",parameters.getString("value"));
+
+        // Setters apply to the parsed target.
+        uri.parseRequestTargetLazily("GET","/path?a=1");
+        uri.setScheme("http");
+        uri.setAuthority("host",8080);
+        assertEquals("http://host:8080/path?a=1",uri.toString());
+        assertThat(uri.getQuery(),is("a=1"));
+        uri.setAuthority("other",80);
+        assertThat(uri.getPathQuery(),is("/path?a=1"));
+        assertEquals("http://other:80/path?a=1",uri.toString());
+
+        uri.parseRequestTargetLazily("GET","/path?a=1");
+        HttpURI copy = new HttpURI(uri);
+        assertThat(copy.getPathQuery(),is("/path?a=1"));
+        copy.setQuery("b=2");
+        assertThat(copy.getQuery(),is("b=2"));
+        assertThat(copy.getPath(),is("/path"));
+
+        // Other forms are parsed eagerly.
+        uri.parseRequestTargetLazily("GET","http://host:8080/path");
+        assertThat(uri.getHost(),is("host"));
+        assertThat(uri.getPort(),is(8080));
+        assertThat(uri.getPath(),is("/path"));
+
+        uri.parseRequestTargetLazily("CONNECT","host:443");
+        assertThat(uri.getPath(),is("host:443"));
+    }
 }
@@ -47,7 +47,6 @@ public class HTTP2Connection extends AbstractConnection
     private final ByteBufferPool byteBufferPool;
     private final Parser parser;
     private final ISession session;
-    private final int bufferSize;
     private final ExecutionStrategy strategy;
 
     public HTTP2Connection(ByteBufferPool byteBufferPool, ReservedThreadExecutor executor, EndPoint endPoint, Parser parser, ISession session, int bufferSize)
@@ -56,7 +55,7 @@ public class HTTP2Connection extends AbstractConnection
         this.byteBufferPool = byteBufferPool;
         this.parser = parser;
         this.session = session;
-        this.bufferSize = bufferSize;
+        setInputBufferSize(bufferSize);
         this.strategy = new EatWhatYouKill(producer, executor.getExecutor(), executor);
         
         LifeCycle.start(strategy);
@@ -74,6 +73,12 @@ public class HTTP2Connection extends AbstractConnection
         return session.getBytesWritten();
     }
 
+    @Override
+    public long getRetainedBufferBytes()
+    {
+        return capacityOf(producer.buffer);
+    }
+
     public ISession getSession()
     {
         return session;
@@ -195,7 +200,7 @@ public class HTTP2Connection extends AbstractConnection
                 return null;
 
             if (buffer == null)
-                buffer = byteBufferPool.acquire(bufferSize, false); // TODO: make directness customizable
+                buffer = byteBufferPool.acquire(getInputBufferSize(), false); // TODO: make directness customizable
             boolean looping = BufferUtil.hasContent(buffer);
             while (true)
             {
@@ -233,6 +238,7 @@ public class HTTP2Connection extends AbstractConnection
                 else
                 {
                     bytesIn.addAndGet(filled);
+                    onFilled(buffer, filled);
                 }
 
                 looping = true;
@@ -84,7 +84,7 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
     private final FlowControlStrategy flowControl;
     private final HTTP2Flusher flusher;
     private int maxLocalStreams;
-    private int maxRemoteStreams;
+    private volatile int maxRemoteStreams;
     private long streamIdleTimeout;
     private int initialSessionRecvWindow;
     private boolean pushEnabled;
@@ -35,6 +35,7 @@ import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.http.MetaData.Request;
 import org.eclipse.jetty.http2.ErrorCode;
 import org.eclipse.jetty.http2.HTTP2Connection;
+import org.eclipse.jetty.http2.HTTP2Session;
 import org.eclipse.jetty.http2.ISession;
 import org.eclipse.jetty.http2.IStream;
 import org.eclipse.jetty.http2.api.Stream;
@@ -52,13 +53,14 @@ import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.LowResourceMonitor;
 import org.eclipse.jetty.util.B64Code;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.TypeUtil;
 import org.eclipse.jetty.util.thread.ReservedThreadExecutor;
 
-public class HTTP2ServerConnection extends HTTP2Connection implements Connection.UpgradeTo
+public class HTTP2ServerConnection extends HTTP2Connection implements Connection.UpgradeTo, LowResourceMonitor.Listener
 {
     /**
      * @param protocol A HTTP2 protocol variant
@@ -91,6 +93,7 @@ public class HTTP2ServerConnection extends HTTP2Connection implements Connection
     private final ServerSessionListener listener;
     private final HttpConfiguration httpConfig;
     private boolean recycleHttpChannels;
+    private int maxRemoteStreams = Integer.MIN_VALUE;
 
     public HTTP2ServerConnection(ByteBufferPool byteBufferPool, ReservedThreadExecutor executor, EndPoint endPoint, HttpConfiguration httpConfig, ServerParser parser, ISession session, int inputBufferSize, ServerSessionListener listener)
     {
@@ -111,6 +114,37 @@ public class HTTP2ServerConnection extends HTTP2Connection implements Connection
         return totalResponses.get();
     }
 
+    /**
+     * <p>Refuses new streams while the low resources stage is
+     * {@link LowResourceMonitor.Stage#REFUSE_STREAMS} or higher.</p>
+     *
+     * @param stage the new low resources stage
+     */
+    @Override
+    public void onLowResourcesStage(LowResourceMonitor.Stage stage)
+    {
+        ISession session = getSession();
+        if (!(session instanceof HTTP2Session))
+            return;
+        HTTP2Session http2Session = (HTTP2Session)session;
+        synchronized (this)
+        {
+            boolean refuse = stage.compareTo(LowResourceMonitor.Stage.REFUSE_STREAMS) >= 0;
+            if (refuse && maxRemoteStreams == Integer.MIN_VALUE)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Refusing new streams on {}", this);
+                maxRemoteStreams = http2Session.getMaxRemoteStreams();
+                http2Session.setMaxRemoteStreams(0);
+            }
+            else if (!refuse && maxRemoteStreams != Integer.MIN_VALUE)
+            {
+                http2Session.setMaxRemoteStreams(maxRemoteStreams);
+                maxRemoteStreams = Integer.MIN_VALUE;
+            }
+        }
+    }
+
     @Override
     protected ServerParser getParser()
     {
@@ -0,0 +1,257 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.thread.Sweeper;
+
+/**
+ * <p>Base class for {@link ByteBufferPool}s that queue buffers in {@link ByteBufferPool.Bucket}s.</p>
+ * <p>This class tracks the bytes retained by the buckets and optionally bounds them with
+ * a maximum heap memory and a maximum direct memory; when a release exceeds the maximum,
+ * buffers are evicted from the least recently used buckets until the retained memory
+ * is within the bound again.</p>
+ * <p>This class is also a {@link Sweeper.Sweepable}: when offered to a {@link Sweeper}
+ * and configured with a {@link #setMaxIdleTime(long) max idle time}, the buffers of the
+ * buckets that were not released to for longer than the max idle time are evicted.</p>
+ */
+@ManagedObject("A ByteBuffer pool")
+public abstract class AbstractByteBufferPool implements ByteBufferPool, Sweeper.Sweepable
+{
+    private final AtomicLong _heapMemory = new AtomicLong();
+    private final AtomicLong _directMemory = new AtomicLong();
+    private volatile long _maxHeapMemory = -1;
+    private volatile long _maxDirectMemory = -1;
+    private volatile long _maxIdleTime = -1;
+
+    /**
+     * @param direct whether to return the direct or heap buckets
+     * @return the buckets of this pool
+     */
+    protected abstract Iterable<Bucket> getBuckets(boolean direct);
+
+    protected ByteBuffer acquire(Bucket bucket, boolean direct)
+    {
+        ByteBuffer buffer = bucket.acquire();
+        if (buffer == null)
+            return newByteBuffer(bucket.getCapacity(), direct);
+        memory(direct).addAndGet(-buffer.capacity());
+        return buffer;
+    }
+
+    protected void release(Bucket bucket, ByteBuffer buffer)
+    {
+        boolean direct = buffer.isDirect();
+        if (bucket.offer(buffer))
+        {
+            memory(direct).addAndGet(buffer.capacity());
+            releaseExcessMemory(direct);
+        }
+    }
+
+    private void releaseExcessMemory(boolean direct)
+    {
+        long maxMemory = direct ? _maxDirectMemory : _maxHeapMemory;
+        if (maxMemory < 0)
+            return;
+        AtomicLong memory = memory(direct);
+        while (memory.get() > maxMemory)
+        {
+            Bucket oldest = null;
+            for (Bucket bucket : getBuckets(direct))
+            {
+                if (bucket.isEmpty())
+                    continue;
+                if (oldest == null || bucket.getLastUpdate() - oldest.getLastUpdate() < 0)
+                    oldest = bucket;
+            }
+            if (oldest == null)
+                return;
+            ByteBuffer buffer = oldest.acquire();
+            if (buffer != null)
+                memory.addAndGet(-buffer.capacity());
+        }
+    }
+
+    private void evict(Bucket bucket, boolean direct)
+    {
+        AtomicLong memory = memory(direct);
+        while (true)
+        {
+            ByteBuffer buffer = bucket.acquire();
+            if (buffer == null)
+                return;
+            memory.addAndGet(-buffer.capacity());
+        }
+    }
+
+    /**
+     * <p>Evicts the buffers of the buckets that have not been released to
+     * for longer than the {@link #getMaxIdleTime() max idle time}.</p>
+     *
+     * @return always false, as this pool is never removed from the {@link Sweeper}
+     */
+    @Override
+    public boolean sweep()
+    {
+        long maxIdleTime = _maxIdleTime;
+        if (maxIdleTime > 0)
+        {
+            long now = System.nanoTime();
+            long maxIdleNanos = TimeUnit.MILLISECONDS.toNanos(maxIdleTime);
+            for (Bucket bucket : getBuckets(true))
+            {
+                if (now - bucket.getLastUpdate() > maxIdleNanos)
+                    evict(bucket, true);
+            }
+            for (Bucket bucket : getBuckets(false))
+            {
+                if (now - bucket.getLastUpdate() > maxIdleNanos)
+                    evict(bucket, false);
+            }
+        }
+        return false;
+    }
+
+    @ManagedOperation(value = "Evicts all the pooled buffers", impact = "ACTION")
+    public void clear()
+    {
+        for (Bucket bucket : getBuckets(true))
+            evict(bucket, true);
+        for (Bucket bucket : getBuckets(false))
+            evict(bucket, false);
+    }
+
+    private AtomicLong memory(boolean direct)
+    {
+        return direct ? _directMemory : _heapMemory;
+    }
+
+    @ManagedAttribute("The bytes retained by the pooled heap buffers")
+    public long getHeapMemory()
+    {
+        return _heapMemory.get();
+    }
+
+    @ManagedAttribute("The bytes retained by the pooled direct buffers")
+    public long getDirectMemory()
+    {
+        return _directMemory.get();
+    }
+
+    @ManagedAttribute("The number of pooled heap buffers")
+    public long getHeapByteBufferCount()
+    {
+        return count(false);
+    }
+
+    @ManagedAttribute("The number of pooled direct buffers")
+    public long getDirectByteBufferCount()
+    {
+        return count(true);
+    }
+
+    private long count(boolean direct)
+    {
+        long count = 0;
+        for (Bucket bucket : getBuckets(direct))
+            count += bucket.size();
+        return count;
+    }
+
+    @ManagedAttribute("The bytes retained by the pooled heap buffers, per buffer capacity")
+    public Map<Integer, Long> getHeapMemoryByCapacity()
+    {
+        return memoryByCapacity(false);
+    }
+
+    @ManagedAttribute("The bytes retained by the pooled direct buffers, per buffer capacity")
+    public Map<Integer, Long> getDirectMemoryByCapacity()
+    {
+        return memoryByCapacity(true);
+    }
+
+    private Map<Integer, Long> memoryByCapacity(boolean direct)
+    {
+        Map<Integer, Long> result = new TreeMap<>();
+        for (Bucket bucket : getBuckets(direct))
+        {
+            int size = bucket.size();
+            if (size > 0)
+                result.merge(bucket.getCapacity(), (long)size * bucket.getCapacity(), Long::sum);
+        }
+        return result;
+    }
+
+    @ManagedAttribute("The max bytes retained by the pooled heap buffers, or -1 for unbounded")
+    public long getMaxHeapMemory()
+    {
+        return _maxHeapMemory;
+    }
+
+    /**
+     * @param maxHeapMemory the max bytes retained by the pooled heap buffers, or -1 for unbounded
+     */
+    public void setMaxHeapMemory(long maxHeapMemory)
+    {
+        _maxHeapMemory = maxHeapMemory;
+        releaseExcessMemory(false);
+    }
+
+    @ManagedAttribute("The max bytes retained by the pooled direct buffers, or -1 for unbounded")
+    public long getMaxDirectMemory()
+    {
+        return _maxDirectMemory;
+    }
+
+    /**
+     * @param maxDirectMemory the max bytes retained by the pooled direct buffers, or -1 for unbounded
+     */
+    public void setMaxDirectMemory(long maxDirectMemory)
+    {
+        _maxDirectMemory = maxDirectMemory;
+        releaseExcessMemory(true);
+    }
+
+    @ManagedAttribute("The time in ms after which the buffers of an unused bucket are evicted, or -1 to never evict them")
+    public long getMaxIdleTime()
+    {
+        return _maxIdleTime;
+    }
+
+    /**
+     * <p>Sets the time after which the buffers of a bucket that has not been released to are evicted.</p>
+     * <p>The eviction is performed by {@link #sweep()}, so this pool must be offered to a {@link Sweeper}
+     * for this setting to have effect.</p>
+     *
+     * @param maxIdleTime the max idle time in ms, or -1 to never evict idle buckets
+     */
+    public void setMaxIdleTime(long maxIdleTime)
+    {
+        _maxIdleTime = maxIdleTime;
+    }
+}
@@ -18,6 +18,7 @@
 
 package org.eclipse.jetty.io;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
@@ -46,6 +47,7 @@ public abstract class AbstractConnection implements Connection
     private final Executor _executor;
     private final Callback _readCallback;
     private int _inputBufferSize=2048;
+    private InputBufferSizer.Predictor _inputBufferPredictor;
 
     protected AbstractConnection(EndPoint endp, Executor executor)
     {
@@ -68,9 +70,15 @@ public abstract class AbstractConnection implements Connection
         listeners.remove(listener);
     }
 
+    /**
+     * @return the size of the next buffer to read into, as predicted by the
+     * {@link #setInputBufferSizer(InputBufferSizer) input buffer sizer} if any,
+     * or the configured input buffer size
+     */
     public int getInputBufferSize()
     {
-        return _inputBufferSize;
+        InputBufferSizer.Predictor predictor = _inputBufferPredictor;
+        return predictor==null?_inputBufferSize:predictor.getSize();
     }
 
     public void setInputBufferSize(int inputBufferSize)
@@ -78,6 +86,31 @@ public abstract class AbstractConnection implements Connection
         _inputBufferSize = inputBufferSize;
     }
 
+    /**
+     * <p>Sets the {@link InputBufferSizer} that adapts the input buffer size of this
+     * connection to the bytes read by {@link #onFilled(ByteBuffer, int) its fills}.</p>
+     *
+     * @param sizer the input buffer sizer, or null to use the configured input buffer size
+     */
+    public void setInputBufferSizer(InputBufferSizer sizer)
+    {
+        _inputBufferPredictor = sizer==null?null:sizer.newPredictor();
+    }
+
+    /**
+     * <p>Records the bytes read into an input buffer, so that the size of the
+     * next input buffer may be adapted.</p>
+     *
+     * @param buffer the buffer that was filled
+     * @param filled the number of bytes read by the fill
+     */
+    protected void onFilled(ByteBuffer buffer, int filled)
+    {
+        InputBufferSizer.Predictor predictor = _inputBufferPredictor;
+        if (predictor!=null && filled>0)
+            predictor.filled(filled,buffer.capacity());
+    }
+
     protected Executor getExecutor()
     {
         return _executor;
@@ -258,6 +291,30 @@ public abstract class AbstractConnection implements Connection
         return _created;
     }
 
+    /**
+     * <p>Returns the total capacity of the buffers currently retained by this connection,
+     * which should be zero when the connection is idle and has no pending data.</p>
+     *
+     * @return the total capacity in bytes of the retained buffers
+     */
+    public long getRetainedBufferBytes()
+    {
+        return 0;
+    }
+
+    /**
+     * @param buffers the buffers to measure, possibly null
+     * @return the sum of the capacities of the non null buffers
+     */
+    protected static long capacityOf(ByteBuffer... buffers)
+    {
+        long capacity=0;
+        for (ByteBuffer buffer : buffers)
+            if (buffer!=null)
+                capacity+=buffer.capacity();
+        return capacity;
+    }
+
     @Override
     public final String toString()
     {
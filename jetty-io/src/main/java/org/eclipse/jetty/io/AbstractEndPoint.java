@@ -386,6 +386,15 @@ public abstract class AbstractEndPoint extends IdleTimeout implements EndPoint
         return _writeFlusher;
     }
 
+    /**
+     * @param coalescer the coalescer of the small buffers of the writes of this endpoint, or null to not coalesce
+     * @see WriteFlusher#setWriteCoalescer(WriteCoalescer)
+     */
+    public void setWriteCoalescer(WriteCoalescer coalescer)
+    {
+        _writeFlusher.setWriteCoalescer(coalescer);
+    }
+
     @Override
     protected void onIdleExpired(TimeoutException timeout)
     {
@@ -19,8 +19,9 @@
 package org.eclipse.jetty.io;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
-public class ArrayByteBufferPool implements ByteBufferPool
+public class ArrayByteBufferPool extends AbstractByteBufferPool
 {
     private final int _min;
     private final int _maxQueue;
@@ -73,8 +74,7 @@ public class ArrayByteBufferPool implements ByteBufferPool
         if (bucket==null)
             return newByteBuffer(size,direct);
             
-        return bucket.acquire(direct);
-            
+        return acquire(bucket,direct);
     }
 
     @Override
@@ -84,17 +84,14 @@ public class ArrayByteBufferPool implements ByteBufferPool
         {    
             ByteBufferPool.Bucket bucket = bucketFor(buffer.capacity(),buffer.isDirect());
             if (bucket!=null)
-                bucket.release(buffer);
+                release(bucket,buffer);
         }
     }
 
-    public void clear()
+    @Override
+    protected Iterable<Bucket> getBuckets(boolean direct)
     {
-        for (int i=0;i<_direct.length;i++)
-        {
-            _direct[i].clear();
-            _indirect[i].clear();
-        }
+        return Arrays.asList(bucketsFor(direct));
     }
 
     private ByteBufferPool.Bucket bucketFor(int size,boolean direct)
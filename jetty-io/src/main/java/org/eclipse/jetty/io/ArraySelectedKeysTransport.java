@@ -0,0 +1,177 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>A {@link SelectorTransport} whose selectors store the selected keys
+ * in an array rather than in a {@link java.util.HashSet}.</p>
+ * <p>The JDK {@link Selector} implementations add the selected keys to a
+ * {@code HashSet} that is then iterated and cleared at every select loop;
+ * this transport replaces that set, via reflection, with an array backed
+ * set that is cheaper to add to, iterate and clear.</p>
+ * <p>The replacement requires access to the private fields of
+ * {@code sun.nio.ch.SelectorImpl}, which on Java 9 and later requires the
+ * JVM option {@code --add-opens java.base/sun.nio.ch=ALL-UNNAMED}; when the
+ * replacement is not possible the JDK selector is used unmodified.</p>
+ * <p>The array backed set does not detect duplicates, so the replacement is
+ * only performed for the Linux epoll selector, that reports each channel at
+ * most once per select, and the selected keys must be cleared after each
+ * select, as {@link ManagedSelector} does; other selectors are used unmodified.</p>
+ */
+public class ArraySelectedKeysTransport implements SelectorTransport
+{
+    private static final Logger LOG = Log.getLogger(ArraySelectedKeysTransport.class);
+    private static final String EPOLL_SELECTOR = "sun.nio.ch.EPollSelectorImpl";
+
+    @Override
+    public Selector newSelector() throws IOException
+    {
+        Selector selector = SelectorTransport.super.newSelector();
+        try
+        {
+            if (EPOLL_SELECTOR.equals(selector.getClass().getName()))
+            {
+                Class<?> selectorImpl = Class.forName("sun.nio.ch.SelectorImpl", false, ClassLoader.getSystemClassLoader());
+                Field selectedKeys = selectorImpl.getDeclaredField("selectedKeys");
+                Field publicSelectedKeys = selectorImpl.getDeclaredField("publicSelectedKeys");
+                selectedKeys.setAccessible(true);
+                publicSelectedKeys.setAccessible(true);
+                SelectedKeys keys = new SelectedKeys();
+                selectedKeys.set(selector, keys);
+                publicSelectedKeys.set(selector, keys);
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Replaced selected keys of {}", selector);
+            }
+        }
+        catch (Throwable x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Could not replace selected keys of " + selector, x);
+        }
+        return selector;
+    }
+
+    /**
+     * @param selector the selector to test
+     * @return whether the selected keys of the given selector are stored in an array
+     */
+    public static boolean isOptimized(Selector selector)
+    {
+        return selector.selectedKeys() instanceof SelectedKeys;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x", getClass().getSimpleName(), hashCode());
+    }
+
+    /**
+     * <p>An array backed set of selection keys, optimized for additions,
+     * iteration and clearing.</p>
+     */
+    static class SelectedKeys extends AbstractSet<SelectionKey>
+    {
+        private SelectionKey[] _keys = new SelectionKey[1024];
+        private int _size;
+
+        @Override
+        public boolean add(SelectionKey key)
+        {
+            if (key == null)
+                return false;
+            if (_size == _keys.length)
+                _keys = Arrays.copyOf(_keys, _size * 2);
+            _keys[_size++] = key;
+            return true;
+        }
+
+        @Override
+        public boolean contains(Object o)
+        {
+            // Not supported for efficiency: the epoll selector reports each key
+            // at most once per select, and the keys are cleared after each select.
+            return false;
+        }
+
+        @Override
+        public boolean remove(Object o)
+        {
+            // Only called when keys are cancelled, so a linear scan is acceptable.
+            for (int i = 0; i < _size; ++i)
+            {
+                if (_keys[i] == o)
+                {
+                    System.arraycopy(_keys, i + 1, _keys, i, _size - i - 1);
+                    _keys[--_size] = null;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public int size()
+        {
+            return _size;
+        }
+
+        @Override
+        public void clear()
+        {
+            Arrays.fill(_keys, 0, _size, null);
+            _size = 0;
+        }
+
+        @Override
+        public Iterator<SelectionKey> iterator()
+        {
+            return new Iterator<SelectionKey>()
+            {
+                private int _index;
+
+                @Override
+                public boolean hasNext()
+                {
+                    return _index < _size;
+                }
+
+                @Override
+                public SelectionKey next()
+                {
+                    if (!hasNext())
+                        throw new NoSuchElementException();
+                    return _keys[_index++];
+                }
+            };
+        }
+    }
+}
@@ -130,6 +130,7 @@ public interface ByteBufferPool
         private final ByteBufferPool _pool;
         private final int _capacity;
         private final AtomicInteger _space;
+        private volatile long _lastUpdate = System.nanoTime();
 
         public Bucket(ByteBufferPool pool, int bufferSize, int maxSize)
         {
@@ -140,9 +141,20 @@ public interface ByteBufferPool
 
         public ByteBuffer acquire(boolean direct)
         {
-            ByteBuffer buffer = queuePoll();
+            ByteBuffer buffer = acquire();
             if (buffer == null)
                 return _pool.newByteBuffer(_capacity, direct);
+            return buffer;
+        }
+
+        /**
+         * @return a queued buffer, or null if this bucket is empty
+         */
+        public ByteBuffer acquire()
+        {
+            ByteBuffer buffer = queuePoll();
+            if (buffer == null)
+                return null;
             if (_space != null)
                 _space.incrementAndGet();
             return buffer;
@@ -150,13 +162,29 @@ public interface ByteBufferPool
 
         public void release(ByteBuffer buffer)
         {
+            offer(buffer);
+        }
+
+        /**
+         * @param buffer the buffer to queue
+         * @return true if the buffer was queued, false if it was discarded because this bucket is full
+         */
+        public boolean offer(ByteBuffer buffer)
+        {
+            _lastUpdate = System.nanoTime();
             BufferUtil.clear(buffer);
             if (_space == null)
+            {
                 queueOffer(buffer);
-            else if (_space.decrementAndGet() >= 0)
+                return true;
+            }
+            if (_space.decrementAndGet() >= 0)
+            {
                 queueOffer(buffer);
-            else
-                _space.incrementAndGet();
+                return true;
+            }
+            _space.incrementAndGet();
+            return false;
         }
 
         public void clear()
@@ -176,6 +204,19 @@ public interface ByteBufferPool
             }
         }
 
+        public int getCapacity()
+        {
+            return _capacity;
+        }
+
+        /**
+         * @return the {@link System#nanoTime()} of the last release to this bucket
+         */
+        public long getLastUpdate()
+        {
+            return _lastUpdate;
+        }
+
         private void queueOffer(ByteBuffer buffer)
         {
             _queue.offerFirst(buffer);
@@ -191,12 +232,12 @@ public interface ByteBufferPool
             _queue.clear();
         }
 
-        boolean isEmpty()
+        public boolean isEmpty()
         {
             return _queue.isEmpty();
         }
 
-        int size()
+        public int size()
         {
             return _queue.size();
         }
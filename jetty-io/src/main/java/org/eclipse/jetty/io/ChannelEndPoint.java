@@ -23,10 +23,13 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ByteChannel;
 import java.nio.channels.CancelledKeyException;
+import java.nio.channels.FileChannel;
 import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.SelectionKey;
+import java.nio.channels.WritePendingException;
 
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.thread.Invocable;
@@ -47,6 +50,7 @@ public abstract class ChannelEndPoint extends AbstractEndPoint implements Manage
     protected final ManagedSelector _selector;
     protected final SelectionKey _key;
     private boolean _updatePending;
+    private volatile FileRegion _transfer;
 
     /**
      * The current value for {@link SelectionKey#interestOps()}.
@@ -299,9 +303,71 @@ public abstract class ChannelEndPoint extends AbstractEndPoint implements Manage
             if (!BufferUtil.isEmpty(b))
                 return false;
 
+        FileRegion transfer=_transfer;
+        return transfer==null || transfer(transfer);
+    }
+
+    private boolean transfer(FileRegion region) throws IOException
+    {
+        try
+        {
+            while (region._count>0)
+            {
+                long transferred=region._file.transferTo(region._position,region._count,_channel);
+                if (LOG.isDebugEnabled())
+                    LOG.debug("transferred {}/{} {}", transferred, region._count, this);
+                if (transferred<=0)
+                {
+                    if (region._position>=region._file.size())
+                        throw new EofException("File truncated");
+                    return false;
+                }
+                region._position+=transferred;
+                region._count-=transferred;
+                notIdle();
+            }
+            return true;
+        }
+        catch (EofException e)
+        {
+            throw e;
+        }
+        catch (IOException e)
+        {
+            throw new EofException(e);
+        }
+    }
+
+    @Override
+    public boolean isTransferSupported()
+    {
         return true;
     }
 
+    @Override
+    public void transfer(Callback callback, FileChannel file, long position, long count, ByteBuffer... buffers) throws WritePendingException
+    {
+        if (getWriteFlusher().isInProgress())
+            throw new WritePendingException();
+        _transfer=new FileRegion(file,position,count);
+        write(new Callback.Nested(callback)
+        {
+            @Override
+            public void succeeded()
+            {
+                _transfer=null;
+                super.succeeded();
+            }
+
+            @Override
+            public void failed(Throwable x)
+            {
+                _transfer=null;
+                super.failed(x);
+            }
+        }, buffers.length==0?new ByteBuffer[]{BufferUtil.EMPTY_BUFFER}:buffers);
+    }
+
     public ByteChannel getChannel()
     {
         return _channel;
@@ -451,4 +517,18 @@ public abstract class ChannelEndPoint extends AbstractEndPoint implements Manage
             return String.format("%s{io=%s,kio=-2,kro=-2}", super.toString(), _desiredInterestOps);
         }
     }
+
+    private static class FileRegion
+    {
+        private final FileChannel _file;
+        private long _position;
+        private long _count;
+
+        private FileRegion(FileChannel file, long position, long count)
+        {
+            _file=file;
+            _position=position;
+            _count=count;
+        }
+    }
 }
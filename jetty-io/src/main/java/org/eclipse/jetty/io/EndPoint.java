@@ -22,6 +22,7 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadPendingException;
 import java.nio.channels.WritePendingException;
 
@@ -229,6 +230,34 @@ public interface EndPoint extends Closeable
      */
     void write(Callback callback, ByteBuffer... buffers) throws WritePendingException;
 
+    /**
+     * @return whether this {@link EndPoint} supports {@link #transfer(Callback, FileChannel, long, long, ByteBuffer...)}
+     */
+    default boolean isTransferSupported()
+    {
+        return false;
+    }
+
+    /**
+     * <p>Writes the given buffers followed by the given region of a file, and invokes callback methods
+     * when either all the data has been written or an error occurs.</p>
+     * <p>The file bytes are transferred with {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+     * so that the operating system may send them without copying them through user space buffers.</p>
+     * <p>The file channel is not closed by this method.</p>
+     *
+     * @param callback the callback to call when an error occurs or the write completed.
+     * @param file the file to transfer bytes from
+     * @param position the position in the file of the first byte to transfer
+     * @param count the number of bytes of the file to transfer
+     * @param buffers zero or more {@link ByteBuffer}s that will be flushed before the file bytes.
+     * @throws WritePendingException if another write operation is concurrent.
+     * @throws UnsupportedOperationException if this {@link EndPoint} does not {@link #isTransferSupported() support transfers}
+     */
+    default void transfer(Callback callback, FileChannel file, long position, long count, ByteBuffer... buffers) throws WritePendingException
+    {
+        throw new UnsupportedOperationException();
+    }
+
     /**
      * @return the {@link Connection} associated with this {@link EndPoint}
      * @see #setConnection(Connection)
@@ -0,0 +1,169 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+
+/**
+ * <p>Adapts the size of the buffers that connections read into to the amount of data
+ * that they actually read.</p>
+ * <p>Each connection is given its own {@link Predictor}, that starts with the minimum size
+ * and then walks up and down a table of sizes, doubling from the minimum size to the maximum
+ * size, according to the bytes read by the previous fills:</p>
+ * <ul>
+ * <li>when a fill fills the whole buffer, the size grows by two steps, so that bulk uploads
+ * quickly reach large buffers;</li>
+ * <li>when two consecutive fills would have fitted in a buffer of the previous size,
+ * the size shrinks by one step, so that keep-alive connections that carry small requests
+ * only retain small buffers.</li>
+ * </ul>
+ * <p>A single instance is shared by the connections created by a connection factory and
+ * records the distribution of the buffer sizes used by the fills of all those connections.</p>
+ */
+@ManagedObject("Adaptive input buffer sizes")
+public class InputBufferSizer
+{
+    private static final int GROW_STEPS = 2;
+
+    private final int[] _sizes;
+    private final LongAdder[] _fills;
+
+    /**
+     * @param minSize the minimum buffer size
+     * @param maxSize the maximum buffer size
+     */
+    public InputBufferSizer(int minSize, int maxSize)
+    {
+        if (minSize <= 0 || maxSize < minSize)
+            throw new IllegalArgumentException("Invalid buffer sizes " + minSize + "-" + maxSize);
+        int steps = 1;
+        for (long size = minSize; size < maxSize; size *= 2)
+            ++steps;
+        _sizes = new int[steps];
+        _fills = new LongAdder[steps];
+        for (int i = 0; i < steps; ++i)
+        {
+            _sizes[i] = (int)Math.min((long)minSize << i, maxSize);
+            _fills[i] = new LongAdder();
+        }
+    }
+
+    @ManagedAttribute("The minimum input buffer size")
+    public int getMinSize()
+    {
+        return _sizes[0];
+    }
+
+    @ManagedAttribute("The maximum input buffer size")
+    public int getMaxSize()
+    {
+        return _sizes[_sizes.length - 1];
+    }
+
+    /**
+     * @return a new predictor, to be used by a single connection
+     */
+    public Predictor newPredictor()
+    {
+        return new Predictor();
+    }
+
+    @ManagedAttribute("The number of fills per input buffer size")
+    public Map<Integer, Long> getFillsBySize()
+    {
+        Map<Integer, Long> result = new TreeMap<>();
+        for (int i = 0; i < _sizes.length; ++i)
+            result.put(_sizes[i], _fills[i].sum());
+        return result;
+    }
+
+    @ManagedOperation(value = "Resets the input buffer size statistics", impact = "ACTION")
+    public void reset()
+    {
+        for (LongAdder fills : _fills)
+            fills.reset();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%d-%d}", getClass().getSimpleName(), hashCode(), getMinSize(), getMaxSize());
+    }
+
+    /**
+     * <p>The input buffer size of a single connection.</p>
+     * <p>This class is not thread safe, as the fills of a connection are not concurrent.</p>
+     */
+    public class Predictor
+    {
+        private int _index;
+        private boolean _shrink;
+
+        /**
+         * @return the size of the next input buffer to acquire
+         */
+        public int getSize()
+        {
+            return _sizes[_index];
+        }
+
+        /**
+         * @param filled the number of bytes read by a fill
+         * @param capacity the capacity of the buffer that was filled, which may be
+         * larger than {@link #getSize()} if the buffer pool rounds up the sizes
+         */
+        public void filled(int filled, int capacity)
+        {
+            _fills[_index].increment();
+            if (filled >= capacity)
+            {
+                _index = Math.min(_index + GROW_STEPS, _sizes.length - 1);
+                _shrink = false;
+            }
+            else if (_index > 0 && filled <= _sizes[_index - 1])
+            {
+                if (_shrink)
+                {
+                    --_index;
+                    _shrink = false;
+                }
+                else
+                {
+                    _shrink = true;
+                }
+            }
+            else
+            {
+                _shrink = false;
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x{%d}", getClass().getSimpleName(), hashCode(), getSize());
+        }
+    }
+}
@@ -33,21 +33,27 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
 import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.thread.ExecutionStrategy;
+import org.eclipse.jetty.util.thread.ExecutorPartition;
 import org.eclipse.jetty.util.thread.Invocable;
 import org.eclipse.jetty.util.thread.Invocable.InvocationType;
 import org.eclipse.jetty.util.thread.Locker;
 import org.eclipse.jetty.util.thread.ReservedThreadExecutor;
 import org.eclipse.jetty.util.thread.Scheduler;
+import org.eclipse.jetty.util.thread.VirtualThreadPool;
 import org.eclipse.jetty.util.thread.strategy.EatWhatYouKill;
 
 /**
@@ -55,26 +61,48 @@ import org.eclipse.jetty.util.thread.strategy.EatWhatYouKill;
  * <p>{@link ManagedSelector} runs the select loop, which waits on {@link Selector#select()} until events
  * happen for registered channels. When events happen, it notifies the {@link EndPoint} associated
  * with the channel.</p>
+ * <p>When {@link SelectorManager#isBatchUpdates() batch updates} are enabled, the actions
+ * submitted to this {@link ManagedSelector}, including the interest set updates of the
+ * endpoints, are queued in a lock-free queue and the selector is woken up only by the
+ * first action submitted after it started to wait in {@link Selector#select()};
+ * submitters never contend on a lock and redundant wakeups are suppressed.</p>
  */
+@ManagedObject("Managed Selector")
 public class ManagedSelector extends ContainerLifeCycle implements Dumpable
 {
     private static final Logger LOG = Log.getLogger(ManagedSelector.class);
 
     private final Locker _locker = new Locker();
     private boolean _selecting = false;
-    private final Queue<Runnable> _actions = new ArrayDeque<>();
+    private final Queue<Runnable> _actions;
+    private final AtomicBoolean _wakeupNeeded = new AtomicBoolean();
+    private final boolean _batchUpdates;
     private final SelectorManager _selectorManager;
     private final int _id;
     private final ExecutionStrategy _strategy;
+    private final LongAdder _selects = new LongAdder();
+    private final LongAdder _selectedKeys = new LongAdder();
+    private final LongAdder _actionsRun = new LongAdder();
+    private final LongAdder _wakeups = new LongAdder();
+    private final LongAdder _suppressedWakeups = new LongAdder();
+    private final LongAdder _selectNanos = new LongAdder();
+    private volatile int _lastSelectedKeys;
+    private volatile int _lastActionsRun;
+    private volatile long _lastSelectNanos;
     private Selector _selector;
 
     public ManagedSelector(SelectorManager selectorManager, int id)
     {
         _selectorManager = selectorManager;
         _id = id;
+        _batchUpdates = selectorManager.isBatchUpdates();
+        _actions = _batchUpdates ? new ConcurrentLinkedQueue<>() : new ArrayDeque<>();
         SelectorProducer producer = new SelectorProducer();
-        Executor executor = selectorManager.getExecutor();
-        _strategy = new EatWhatYouKill(producer,executor,_selectorManager.getBean(ReservedThreadExecutor.class));            
+        ExecutorPartition partition = selectorManager.getExecutorPartition(id);
+        if (partition == null)
+            _strategy = new EatWhatYouKill(producer,selectorManager.getExecutor(),_selectorManager.getBean(ReservedThreadExecutor.class));
+        else
+            _strategy = new EatWhatYouKill(producer,partition,partition.getReservedThreadExecutor());
         addBean(_strategy,true);
         setStopTimeout(5000);
     }
@@ -91,7 +119,7 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
 
         // The normal strategy obtains the produced task, schedules
         // a new thread to produce more, runs the task and then exits.
-        _selectorManager.execute(_strategy::produce);
+        _selectorManager.execute((VirtualThreadPool.PlatformJob)_strategy::produce);
     }
 
     public int size()
@@ -120,24 +148,120 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
             LOG.debug("Stopped {}", this);
     }
 
+    /**
+     * @return whether submitted actions are queued without locking and wakeups are coalesced
+     * @see SelectorManager#setBatchUpdates(boolean)
+     */
+    @ManagedAttribute("Whether actions are queued without locking and wakeups are coalesced")
+    public boolean isBatchUpdates()
+    {
+        return _batchUpdates;
+    }
+
     public void submit(Runnable change)
     {
         if (LOG.isDebugEnabled())
             LOG.debug("Queued change {} on {}", change, this);
 
         Selector selector = null;
-        try (Locker.Lock lock = _locker.lock())
+        if (_batchUpdates)
         {
             _actions.offer(change);
-            if (_selecting)
-            {
+            // Only the first submitter after the selector started
+            // to select wakes it up, the others are coalesced.
+            if (_wakeupNeeded.compareAndSet(true, false))
                 selector = _selector;
-                // To avoid the extra select wakeup.
-                _selecting = false;
+        }
+        else
+        {
+            try (Locker.Lock lock = _locker.lock())
+            {
+                _actions.offer(change);
+                if (_selecting)
+                {
+                    selector = _selector;
+                    // To avoid the extra select wakeup.
+                    _selecting = false;
+                }
             }
         }
         if (selector != null)
+        {
+            _wakeups.increment();
             selector.wakeup();
+        }
+        else
+        {
+            _suppressedWakeups.increment();
+        }
+    }
+
+    @ManagedAttribute("The number of select loops")
+    public long getSelects()
+    {
+        return _selects.sum();
+    }
+
+    @ManagedAttribute("The number of keys selected by all the select loops")
+    public long getSelectedKeys()
+    {
+        return _selectedKeys.sum();
+    }
+
+    @ManagedAttribute("The number of keys selected by the last select loop")
+    public int getLastSelectedKeys()
+    {
+        return _lastSelectedKeys;
+    }
+
+    @ManagedAttribute("The number of non blocking actions run by the selector")
+    public long getActionsRun()
+    {
+        return _actionsRun.sum();
+    }
+
+    @ManagedAttribute("The number of non blocking actions run before the last select")
+    public int getLastActionsRun()
+    {
+        return _lastActionsRun;
+    }
+
+    @ManagedAttribute("The number of selector wakeups")
+    public long getWakeups()
+    {
+        return _wakeups.sum();
+    }
+
+    @ManagedAttribute("The number of submitted actions that did not need to wake up the selector")
+    public long getSuppressedWakeups()
+    {
+        return _suppressedWakeups.sum();
+    }
+
+    @ManagedAttribute("The total time spent waiting in select (ms)")
+    public long getSelectTime()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(_selectNanos.sum());
+    }
+
+    @ManagedAttribute("The time spent waiting in the last select (ms)")
+    public long getLastSelectTime()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(_lastSelectNanos);
+    }
+
+    @ManagedOperation(value = "Resets the select loop statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        _selects.reset();
+        _selectedKeys.reset();
+        _actionsRun.reset();
+        _wakeups.reset();
+        _suppressedWakeups.reset();
+        _selectNanos.reset();
+        _lastSelectedKeys = 0;
+        _lastActionsRun = 0;
+        _lastSelectNanos = 0;
     }
 
     /**
@@ -166,6 +290,7 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
     {
         private Set<SelectionKey> _keys = Collections.emptySet();
         private Iterator<SelectionKey> _cursor = Collections.emptyIterator();
+        private int _actionsSinceSelect;
 
         @Override
         public Runnable produce()
@@ -191,17 +316,9 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
         {
             while (true)
             {
-                Runnable action;
-                try (Locker.Lock lock = _locker.lock())
-                {
-                    action = _actions.poll();
-                    if (action == null)
-                    {
-                        // No more actions, so we need to select
-                        _selecting = true;
-                        return null;
-                    }
-                }
+                Runnable action = _batchUpdates ? pollBatched() : poll();
+                if (action == null)
+                    return null;
 
                 if (Invocable.getInvocationType(action)==InvocationType.BLOCKING)
                     return action;
@@ -210,6 +327,7 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
                 {
                     if (LOG.isDebugEnabled())
                         LOG.debug("Running action {}", action);
+                    ++_actionsSinceSelect;
                     // Running the change may queue another action.
                     action.run();
                 }
@@ -220,6 +338,42 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
             }
         }
 
+        private Runnable poll()
+        {
+            try (Locker.Lock lock = _locker.lock())
+            {
+                Runnable action = _actions.poll();
+                if (action == null)
+                {
+                    // No more actions, so we need to select
+                    _selecting = true;
+                }
+                return action;
+            }
+        }
+
+        private Runnable pollBatched()
+        {
+            while (true)
+            {
+                Runnable action = _actions.poll();
+                if (action != null)
+                    return action;
+
+                // No more actions, so we need to select.
+                _wakeupNeeded.set(true);
+
+                // An action may have been offered before the flag was set,
+                // and its submitter did not wake up the selector, so check again.
+                if (_actions.isEmpty())
+                    return null;
+
+                // If the flag was already reset the submitter woke up the
+                // selector, so the next select will just return immediately.
+                _wakeupNeeded.set(false);
+            }
+        }
+
         private boolean select()
         {
             try
@@ -229,15 +383,34 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
                 {
                     if (LOG.isDebugEnabled())
                         LOG.debug("Selector loop waiting on select");
+                    long begin = System.nanoTime();
                     int selected = selector.select();
+                    long elapsed = System.nanoTime() - begin;
                     if (LOG.isDebugEnabled())
                         LOG.debug("Selector loop woken up from select, {}/{} selected", selected, selector.keys().size());
 
-                    try (Locker.Lock lock = _locker.lock())
+                    if (_batchUpdates)
                     {
                         // finished selecting
-                        _selecting = false;
+                        _wakeupNeeded.set(false);
                     }
+                    else
+                    {
+                        try (Locker.Lock lock = _locker.lock())
+                        {
+                            // finished selecting
+                            _selecting = false;
+                        }
+                    }
+
+                    _selects.increment();
+                    _selectedKeys.add(selected);
+                    _actionsRun.add(_actionsSinceSelect);
+                    _selectNanos.add(elapsed);
+                    _lastSelectedKeys = selected;
+                    _lastActionsRun = _actionsSinceSelect;
+                    _lastSelectNanos = elapsed;
+                    _actionsSinceSelect = 0;
 
                     _keys = selector.selectedKeys();
                     _cursor = _keys.iterator();
@@ -26,7 +26,7 @@ import java.util.function.Function;
 
 import org.eclipse.jetty.util.BufferUtil;
 
-public class MappedByteBufferPool implements ByteBufferPool
+public class MappedByteBufferPool extends AbstractByteBufferPool
 {
     private final ConcurrentMap<Integer, Bucket> directBuffers = new ConcurrentHashMap<>();
     private final ConcurrentMap<Integer, Bucket> heapBuffers = new ConcurrentHashMap<>();
@@ -65,7 +65,7 @@ public class MappedByteBufferPool implements ByteBufferPool
         Bucket bucket = buffers.get(b);
         if (bucket==null)
             return newByteBuffer(b*_factor, direct);
-        return bucket.acquire(direct);
+        return acquire(bucket,direct);
     }
 
     @Override
@@ -81,17 +81,23 @@ public class MappedByteBufferPool implements ByteBufferPool
         ConcurrentMap<Integer, Bucket> buckets = bucketsFor(buffer.isDirect());
 
         Bucket bucket = buckets.computeIfAbsent(b,_newBucket);
-        bucket.release(buffer);
+        release(bucket,buffer);
     }
 
+    @Override
     public void clear()
     {
-        directBuffers.values().forEach(Bucket::clear);
+        super.clear();
         directBuffers.clear();
-        heapBuffers.values().forEach(Bucket::clear);
         heapBuffers.clear();
     }
 
+    @Override
+    protected Iterable<Bucket> getBuckets(boolean direct)
+    {
+        return bucketsFor(direct).values();
+    }
+
     private int bucketFor(int size)
     {
         int bucket = size / _factor;
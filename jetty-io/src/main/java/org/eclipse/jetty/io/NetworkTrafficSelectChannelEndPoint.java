@@ -70,7 +70,13 @@ public class NetworkTrafficSelectChannelEndPoint extends SelectChannelEndPoint
         return flushed;
     }
 
-    
+    @Override
+    public boolean isTransferSupported()
+    {
+        // Transferred bytes would bypass the listeners.
+        return false;
+    }
+
 
     @Override
     public void onOpen()
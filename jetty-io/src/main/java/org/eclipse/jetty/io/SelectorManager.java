@@ -28,6 +28,8 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.Executor;
 
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
@@ -36,6 +38,7 @@ import org.eclipse.jetty.util.component.ContainerLifeCycle;
 import org.eclipse.jetty.util.component.Dumpable;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.thread.ExecutorPartition;
 import org.eclipse.jetty.util.thread.ReservedThreadExecutor;
 import org.eclipse.jetty.util.thread.Scheduler;
 import org.eclipse.jetty.util.thread.ThreadPool;
@@ -60,6 +63,12 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
     private long _connectTimeout = DEFAULT_CONNECT_TIMEOUT;
     private long _selectorIndex;
     private int _reservedThreads = -1;
+    private boolean _batchUpdates;
+    private SelectorTransport _transport = SelectorTransport.DEFAULT;
+    private boolean _partitioned;
+    private int _partitionThreads = -1;
+    private ExecutorPartition.ThreadAffinity _threadAffinity;
+    private ExecutorPartition[] _partitions;
 
     public static int defaultSchedulers(Executor executor)
     {
@@ -157,6 +166,131 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
         _reservedThreads = threads;
     }
     
+    /**
+     * @return whether the {@link ManagedSelector}s queue actions without locking and coalesce wakeups
+     */
+    @ManagedAttribute("Whether the selectors queue actions without locking and coalesce wakeups")
+    public boolean isBatchUpdates()
+    {
+        return _batchUpdates;
+    }
+
+    /**
+     * <p>Sets whether the {@link ManagedSelector}s queue the submitted actions, including
+     * the interest set updates of the endpoints, in a lock-free queue and wake up the
+     * selector only once per select, rather than queueing them under a lock.</p>
+     * <p>Batching the updates reduces the contention and the number of selector wakeups
+     * when many connections are opened, closed or change their interests concurrently.</p>
+     * <p>This setting only takes effect for the selectors created after it is set,
+     * so it must be set before this {@link SelectorManager} is started.</p>
+     *
+     * @param batchUpdates whether to batch the selector updates
+     */
+    public void setBatchUpdates(boolean batchUpdates)
+    {
+        _batchUpdates = batchUpdates;
+    }
+
+    /**
+     * @return the transport that creates the selectors and endpoints
+     */
+    @ManagedAttribute("The selector transport")
+    public SelectorTransport getSelectorTransport()
+    {
+        return _transport;
+    }
+
+    /**
+     * <p>Sets the transport that creates the {@link Selector}s of this {@link SelectorManager}
+     * and, for subclasses that delegate to it, the {@link EndPoint}s of the channels.</p>
+     * <p>The transport must be set before this {@link SelectorManager} is started.</p>
+     *
+     * @param transport the selector transport, or null for {@link SelectorTransport#DEFAULT}
+     */
+    public void setSelectorTransport(SelectorTransport transport)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        _transport = transport == null ? SelectorTransport.DEFAULT : transport;
+    }
+
+    /**
+     * @return whether each selector has its own partition of worker and reserved threads
+     */
+    @ManagedAttribute("Whether each selector has its own partition of threads")
+    public boolean isPartitioned()
+    {
+        return _partitioned;
+    }
+
+    /**
+     * <p>Sets whether each {@link ManagedSelector} has its own {@link ExecutorPartition}
+     * of worker and reserved threads.</p>
+     * <p>When partitioned, the tasks produced by a selector are run preferably by an idle
+     * thread of its own partition, then by an idle thread of another partition, and only
+     * then by the shared executor, so that the connections of a selector tend to be handled
+     * by the same threads, on the same cores.
+     * The partitions replace the shared {@link ReservedThreadExecutor}.</p>
+     * <p>This setting must be set before this {@link SelectorManager} is started.</p>
+     *
+     * @param partitioned whether each selector has its own partition of threads
+     * @see #setPartitionThreads(int)
+     * @see #setThreadAffinity(ExecutorPartition.ThreadAffinity)
+     */
+    public void setPartitioned(boolean partitioned)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        _partitioned = partitioned;
+    }
+
+    /**
+     * @return the number of threads of each partition, or -1 for a default derived from the number of CPUs
+     */
+    @ManagedAttribute("The number of threads of each partition")
+    public int getPartitionThreads()
+    {
+        return _partitionThreads;
+    }
+
+    /**
+     * @param threads the number of threads of each partition, or -1 for a default derived from the number of CPUs
+     */
+    public void setPartitionThreads(int threads)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        _partitionThreads = threads;
+    }
+
+    /**
+     * @return the affinity applied to the threads of the partitions, or null
+     */
+    public ExecutorPartition.ThreadAffinity getThreadAffinity()
+    {
+        return _threadAffinity;
+    }
+
+    /**
+     * @param affinity the affinity applied to the threads of the partitions, or null
+     */
+    public void setThreadAffinity(ExecutorPartition.ThreadAffinity affinity)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        _threadAffinity = affinity;
+    }
+
+    /**
+     * @param id the id of a selector
+     * @return the partition of threads of the given selector, or null if not {@link #isPartitioned() partitioned}
+     */
+    protected ExecutorPartition getExecutorPartition(int id)
+    {
+        ExecutorPartition[] partitions = _partitions;
+        return partitions == null ? null : partitions[id];
+    }
+
     /**
      * Executes the given task in a different thread.
      *
@@ -295,7 +429,27 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
     @Override
     protected void doStart() throws Exception
     {
-        addBean(new ReservedThreadExecutor(getExecutor(),_reservedThreads),true);
+        if (_partitioned)
+        {
+            int threads = _partitionThreads;
+            if (threads <= 0)
+                threads = Math.max(1, Runtime.getRuntime().availableProcessors() / _selectors.length);
+            String name = String.format("partition@%x", hashCode());
+            ExecutorPartition[] partitions = new ExecutorPartition[_selectors.length];
+            for (int i = 0; i < partitions.length; i++)
+                partitions[i] = new ExecutorPartition(name, i, threads, getExecutor(), _threadAffinity);
+            List<ExecutorPartition> peers = Arrays.asList(partitions);
+            for (ExecutorPartition partition : partitions)
+            {
+                partition.setPeers(peers);
+                addBean(partition, true);
+            }
+            _partitions = partitions;
+        }
+        else
+        {
+            addBean(new ReservedThreadExecutor(getExecutor(),_reservedThreads),true);
+        }
         for (int i = 0; i < _selectors.length; i++)
         {
             ManagedSelector selector = newSelector(i);
@@ -322,6 +476,13 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
         super.doStop();
         for (ManagedSelector selector : _selectors)
             removeBean(selector);
+        ExecutorPartition[] partitions = _partitions;
+        _partitions = null;
+        if (partitions != null)
+        {
+            for (ExecutorPartition partition : partitions)
+                removeBean(partition);
+        }
     }
 
     /**
@@ -411,7 +572,7 @@ public abstract class SelectorManager extends ContainerLifeCycle implements Dump
 
     protected Selector newSelector() throws IOException
     {
-        return Selector.open();
+        return _transport.newSelector();
     }
 
     /**
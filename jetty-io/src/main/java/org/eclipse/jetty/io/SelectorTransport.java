@@ -0,0 +1,74 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+import org.eclipse.jetty.util.thread.Scheduler;
+
+/**
+ * <p>The pluggable backend of a {@link SelectorManager}, that creates the
+ * {@link Selector}s run by the {@link ManagedSelector}s and the {@link EndPoint}s
+ * of the channels registered with them.</p>
+ * <p>The default implementation, {@link #DEFAULT}, uses the JDK NIO {@link Selector}
+ * and {@link SocketChannelEndPoint}. Alternative implementations may return optimized
+ * selectors, for example {@link ArraySelectedKeysTransport}, or endpoints that perform
+ * the I/O with a different mechanism.</p>
+ * <p>A transport is configured with {@link SelectorManager#setSelectorTransport(SelectorTransport)}
+ * before the {@link SelectorManager} is started.</p>
+ */
+public interface SelectorTransport
+{
+    /**
+     * The transport that uses the JDK NIO {@link Selector} and {@link SocketChannelEndPoint}.
+     */
+    SelectorTransport DEFAULT = new SelectorTransport()
+    {
+        @Override
+        public String toString()
+        {
+            return "SelectorTransport.DEFAULT";
+        }
+    };
+
+    /**
+     * @return a new {@link Selector} to be run by a {@link ManagedSelector}
+     * @throws IOException if the selector cannot be opened
+     */
+    default Selector newSelector() throws IOException
+    {
+        return Selector.open();
+    }
+
+    /**
+     * @param channel the channel associated to the endpoint
+     * @param selector the selector the channel is registered to
+     * @param key the selection key
+     * @param scheduler the scheduler used for the idle timeouts
+     * @return a new endpoint for the given channel
+     * @throws IOException if the endpoint cannot be created
+     */
+    default ChannelEndPoint newEndPoint(SocketChannel channel, ManagedSelector selector, SelectionKey key, Scheduler scheduler) throws IOException
+    {
+        return new SocketChannelEndPoint(channel, selector, key, scheduler);
+    }
+}
@@ -0,0 +1,260 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.util.BufferUtil;
+
+/**
+ * <p>A {@link ByteBufferPool} that keeps small per-thread magazines of buffers
+ * in front of a shared delegate pool.</p>
+ * <p>An acquire/release pair performed by the same thread is served from the
+ * thread's own magazine and does not touch any shared state.
+ * When a magazine is empty, buffers are acquired from the delegate pool;
+ * when a magazine is full, half of its buffers are spilled back to the
+ * delegate pool in a single batch.</p>
+ * <p>Only buffers whose capacity is an exact multiple of the {@code factor}
+ * and not greater than {@code maxSize} are cached in the magazines, all other
+ * buffers are passed straight to the delegate pool.
+ * The buffers cached by a thread, direct and heap, are limited in total to
+ * {@code maxThreadMemory} bytes, beyond which released buffers are passed to the
+ * delegate pool, so that the memory held outside the delegate pool is bounded by
+ * {@code maxThreadMemory} times the number of threads using this pool.</p>
+ * <p>Buffers held in the magazine of a thread that terminates are not returned
+ * to the delegate pool and are left to the garbage collector.</p>
+ * <p>This pool can be used wherever a {@link ByteBufferPool} is accepted, for example
+ * passing it to the {@code ServerConnector} constructors, adding it as a {@code Server}
+ * bean, or calling {@code HttpClient.setByteBufferPool(ByteBufferPool)}.</p>
+ */
+public class ThreadLocalByteBufferPool implements ByteBufferPool
+{
+    private final ThreadLocal<Magazines> _magazines = ThreadLocal.withInitial(Magazines::new);
+    private final ByteBufferPool _delegate;
+    private final int _factor;
+    private final int _buckets;
+    private final int _magazineSize;
+    private final long _maxThreadMemory;
+
+    public ThreadLocalByteBufferPool()
+    {
+        this(new ArrayByteBufferPool());
+    }
+
+    public ThreadLocalByteBufferPool(ByteBufferPool delegate)
+    {
+        this(delegate,-1,-1,-1);
+    }
+
+    /**
+     * @param delegate the shared pool to refill magazines from and spill them to
+     * @param factor the capacity granularity of the cached buffers, or -1 for the default of 1024
+     * @param maxSize the maximum capacity of the cached buffers, or -1 for the default of 32KiB
+     * @param magazineSize the maximum number of buffers cached per thread and per capacity, or -1 for the default of 4
+     */
+    public ThreadLocalByteBufferPool(ByteBufferPool delegate, int factor, int maxSize, int magazineSize)
+    {
+        this(delegate,factor,maxSize,magazineSize,-1);
+    }
+
+    /**
+     * @param delegate the shared pool to refill magazines from and spill them to
+     * @param factor the capacity granularity of the cached buffers, or -1 for the default of 1024
+     * @param maxSize the maximum capacity of the cached buffers, or -1 for the default of 32KiB
+     * @param magazineSize the maximum number of buffers cached per thread and per capacity, or -1 for the default of 4
+     * @param maxThreadMemory the maximum bytes of buffers cached per thread, or -1 for the default of 128KiB
+     */
+    public ThreadLocalByteBufferPool(ByteBufferPool delegate, int factor, int maxSize, int magazineSize, long maxThreadMemory)
+    {
+        if (delegate==null)
+            throw new IllegalArgumentException("null delegate");
+        if (factor<=0)
+            factor=1024;
+        if (maxSize<=0)
+            maxSize=32*1024;
+        if (magazineSize<=0)
+            magazineSize=4;
+        if (maxThreadMemory<0)
+            maxThreadMemory=128*1024;
+        if ((maxSize%factor)!=0)
+            throw new IllegalArgumentException("factor must be a divisor of maxSize");
+        _delegate=delegate;
+        _factor=factor;
+        _buckets=maxSize/factor;
+        _magazineSize=magazineSize;
+        _maxThreadMemory=maxThreadMemory;
+    }
+
+    public ByteBufferPool getDelegate()
+    {
+        return _delegate;
+    }
+
+    public int getMagazineSize()
+    {
+        return _magazineSize;
+    }
+
+    public long getMaxThreadMemory()
+    {
+        return _maxThreadMemory;
+    }
+
+    @Override
+    public ByteBuffer acquire(int size, boolean direct)
+    {
+        Magazine magazine = size>0 ? magazineFor((size-1)/_factor,direct) : null;
+        if (magazine!=null)
+        {
+            ByteBuffer buffer = magazine.pop();
+            if (buffer!=null)
+                return buffer;
+            // Acquire a buffer of the full bucket capacity so that it can be cached when released.
+            size=magazine._capacity;
+        }
+        return _delegate.acquire(size,direct);
+    }
+
+    @Override
+    public void release(ByteBuffer buffer)
+    {
+        if (buffer==null)
+            return;
+
+        int capacity=buffer.capacity();
+        Magazine magazine = (capacity%_factor)==0 ? magazineFor(capacity/_factor-1,buffer.isDirect()) : null;
+        if (magazine==null)
+        {
+            _delegate.release(buffer);
+            return;
+        }
+
+        BufferUtil.clear(buffer);
+        if (!magazine.push(buffer))
+        {
+            magazine.spill(_delegate,_magazineSize/2);
+            if (!magazine.push(buffer))
+                _delegate.release(buffer);
+        }
+    }
+
+    /**
+     * <p>Returns the buffers cached by the calling thread to the delegate pool.</p>
+     * <p>Buffers cached by other threads are not affected.</p>
+     */
+    public void clear()
+    {
+        Magazines magazines = _magazines.get();
+        for (int i=0;i<_buckets;i++)
+        {
+            if (magazines._direct[i]!=null)
+                magazines._direct[i].spill(_delegate,_magazineSize);
+            if (magazines._indirect[i]!=null)
+                magazines._indirect[i].spill(_delegate,_magazineSize);
+        }
+    }
+
+    private Magazine magazineFor(int index, boolean direct)
+    {
+        if (index<0 || index>=_buckets)
+            return null;
+        Magazines magazines = _magazines.get();
+        Magazine[] array = direct?magazines._direct:magazines._indirect;
+        Magazine magazine = array[index];
+        if (magazine==null)
+        {
+            magazine=new Magazine(magazines,(index+1)*_factor,_magazineSize);
+            array[index]=magazine;
+        }
+        return magazine;
+    }
+
+    // Package local for testing
+    int cached(int capacity, boolean direct)
+    {
+        Magazines magazines = _magazines.get();
+        Magazine magazine = (direct?magazines._direct:magazines._indirect)[(capacity-1)/_factor];
+        return magazine==null?0:magazine._size;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{delegate=%s,factor=%d,buckets=%d,magazine=%d,maxThreadMemory=%d}",
+                getClass().getSimpleName(),hashCode(),_delegate,_factor,_buckets,_magazineSize,_maxThreadMemory);
+    }
+
+    private class Magazines
+    {
+        private final Magazine[] _direct = new Magazine[_buckets];
+        private final Magazine[] _indirect = new Magazine[_buckets];
+        private long _memory;
+    }
+
+    private class Magazine
+    {
+        private final Magazines _magazines;
+        private final ByteBuffer[] _buffers;
+        private final int _capacity;
+        private int _size;
+
+        private Magazine(Magazines magazines, int capacity, int size)
+        {
+            _magazines=magazines;
+            _capacity=capacity;
+            _buffers=new ByteBuffer[size];
+        }
+
+        private ByteBuffer pop()
+        {
+            if (_size==0)
+                return null;
+            ByteBuffer buffer=_buffers[--_size];
+            _buffers[_size]=null;
+            _magazines._memory-=_capacity;
+            return buffer;
+        }
+
+        /**
+         * @param buffer the buffer to cache
+         * @return false if the magazine is full, or the thread already caches its maximum memory
+         */
+        private boolean push(ByteBuffer buffer)
+        {
+            if (_size==_buffers.length || _magazines._memory+_capacity>_maxThreadMemory)
+                return false;
+            _buffers[_size++]=buffer;
+            _magazines._memory+=_capacity;
+            return true;
+        }
+
+        private void spill(ByteBufferPool pool, int count)
+        {
+            // Spill the least recently used buffers, at the bottom of the stack.
+            count=Math.min(Math.max(count,1),_size);
+            for (int i=0;i<count;i++)
+                pool.release(_buffers[i]);
+            System.arraycopy(_buffers,count,_buffers,0,_size-count);
+            for (int i=_size-count;i<_size;i++)
+                _buffers[i]=null;
+            _size-=count;
+            _magazines._memory-=(long)count*_capacity;
+        }
+    }
+}
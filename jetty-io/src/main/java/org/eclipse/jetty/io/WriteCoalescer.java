@@ -0,0 +1,237 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+
+/**
+ * <p>Coalesces the small buffers of a gathering write into pooled aggregate buffers.</p>
+ * <p>When a {@link WriteFlusher} is given a {@link WriteFlusher#setWriteCoalescer(WriteCoalescer) coalescer},
+ * each run of two or more consecutive buffers whose remaining bytes are not more than the
+ * {@link #getThreshold() threshold} is copied into a single direct buffer acquired from the
+ * {@link ByteBufferPool}, while larger buffers are written as they are.
+ * This reduces the number of buffers of the gathering writes performed by {@link EndPoint#flush(ByteBuffer...)}
+ * (for example for the header, chunk and content buffers of a HTTP/1.1 response), and avoids the
+ * per buffer copy that the JVM performs when writing heap buffers to a channel.</p>
+ * <p>The coalesced buffers are consumed immediately, and the aggregate buffers are released to
+ * the pool when the write completes.</p>
+ * <p>A single instance may be shared by the endpoints of a connector, and records the number of
+ * writes and buffers that it coalesced.</p>
+ */
+@ManagedObject("Coalesces small buffers of gathering writes")
+public class WriteCoalescer
+{
+    private final LongAdder _coalescedWrites = new LongAdder();
+    private final LongAdder _coalescedBuffers = new LongAdder();
+    private final LongAdder _savedBuffers = new LongAdder();
+    private final ByteBufferPool _bufferPool;
+    private final int _threshold;
+    private final int _maxAggregateSize;
+
+    /**
+     * @param bufferPool the pool to acquire the aggregate buffers from
+     * @param threshold the max remaining bytes of a buffer to be coalesced
+     * @param maxAggregateSize the max size of an aggregate buffer
+     */
+    public WriteCoalescer(ByteBufferPool bufferPool, int threshold, int maxAggregateSize)
+    {
+        if (threshold <= 0 || maxAggregateSize < 2 * threshold)
+            throw new IllegalArgumentException("Invalid threshold " + threshold + " or max aggregate size " + maxAggregateSize);
+        _bufferPool = bufferPool;
+        _threshold = threshold;
+        _maxAggregateSize = maxAggregateSize;
+    }
+
+    @ManagedAttribute("The max remaining bytes of a buffer to be coalesced")
+    public int getThreshold()
+    {
+        return _threshold;
+    }
+
+    @ManagedAttribute("The max size of an aggregate buffer")
+    public int getMaxAggregateSize()
+    {
+        return _maxAggregateSize;
+    }
+
+    @ManagedAttribute("The number of writes that had buffers coalesced")
+    public long getCoalescedWrites()
+    {
+        return _coalescedWrites.sum();
+    }
+
+    @ManagedAttribute("The number of buffers copied into aggregate buffers")
+    public long getCoalescedBuffers()
+    {
+        return _coalescedBuffers.sum();
+    }
+
+    @ManagedAttribute("The number of buffers removed from gathering writes")
+    public long getSavedBuffers()
+    {
+        return _savedBuffers.sum();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void reset()
+    {
+        _coalescedWrites.reset();
+        _coalescedBuffers.reset();
+        _savedBuffers.reset();
+    }
+
+    /**
+     * @param buffers the buffers of a write
+     * @return a {@link Coalesced} write, or null if no buffers could be coalesced
+     */
+    Coalesced coalesce(ByteBuffer[] buffers)
+    {
+        if (buffers.length < 2)
+            return null;
+
+        ByteBuffer[] result = null;
+        ByteBuffer[] aggregates = null;
+        int length = 0;
+        int aggregated = 0;
+        int i = 0;
+        while (i < buffers.length)
+        {
+            // Find the run of small buffers that start at i.
+            int end = i;
+            int size = 0;
+            while (end < buffers.length)
+            {
+                int remaining = buffers[end].remaining();
+                if (remaining > _threshold || size + remaining > _maxAggregateSize)
+                    break;
+                size += remaining;
+                ++end;
+            }
+
+            if (end - i < 2)
+            {
+                if (result != null)
+                    result[length] = buffers[i];
+                ++length;
+                ++i;
+                continue;
+            }
+
+            if (result == null)
+            {
+                result = new ByteBuffer[buffers.length];
+                System.arraycopy(buffers, 0, result, 0, length);
+                aggregates = new ByteBuffer[buffers.length / 2];
+            }
+
+            ByteBuffer aggregate;
+            try
+            {
+                aggregate = _bufferPool.acquire(size, true);
+            }
+            catch (Throwable x)
+            {
+                // The write fails, release the aggregates already acquired.
+                for (int j = 0; j < aggregated; ++j)
+                    _bufferPool.release(aggregates[j]);
+                throw x;
+            }
+            for (int j = i; j < end; ++j)
+                BufferUtil.append(aggregate, buffers[j]);
+            aggregates[aggregated++] = aggregate;
+            result[length++] = aggregate;
+            _coalescedBuffers.add(end - i);
+            i = end;
+        }
+
+        if (result == null)
+            return null;
+
+        _coalescedWrites.increment();
+        _savedBuffers.add(buffers.length - length);
+        ByteBuffer[] coalesced = new ByteBuffer[length];
+        System.arraycopy(result, 0, coalesced, 0, length);
+        ByteBuffer[] pooled = new ByteBuffer[aggregated];
+        System.arraycopy(aggregates, 0, pooled, 0, aggregated);
+        return new Coalesced(coalesced, pooled);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{threshold=%d,max=%d}", getClass().getSimpleName(), hashCode(), _threshold, _maxAggregateSize);
+    }
+
+    /**
+     * <p>The coalesced buffers of a write, with the aggregate buffers to release when the write completes.</p>
+     */
+    class Coalesced
+    {
+        private final ByteBuffer[] _buffers;
+        private final ByteBuffer[] _aggregates;
+
+        private Coalesced(ByteBuffer[] buffers, ByteBuffer[] aggregates)
+        {
+            _buffers = buffers;
+            _aggregates = aggregates;
+        }
+
+        ByteBuffer[] getBuffers()
+        {
+            return _buffers;
+        }
+
+        /**
+         * @param callback the callback of the write, possibly null
+         * @return a callback that releases the aggregate buffers before notifying the given callback
+         */
+        Callback wrap(Callback callback)
+        {
+            return new Callback.Nested(callback == null ? Callback.NOOP : callback)
+            {
+                @Override
+                public void succeeded()
+                {
+                    release();
+                    super.succeeded();
+                }
+
+                @Override
+                public void failed(Throwable x)
+                {
+                    release();
+                    super.failed(x);
+                }
+            };
+        }
+
+        private void release()
+        {
+            for (ByteBuffer aggregate : _aggregates)
+                _bufferPool.release(aggregate);
+        }
+    }
+}
@@ -54,6 +54,7 @@ abstract public class WriteFlusher
     private static final State __COMPLETING = new CompletingState();
     private final EndPoint _endPoint;
     private final AtomicReference<State> _state = new AtomicReference<>();
+    private volatile WriteCoalescer _coalescer;
 
     static
     {
@@ -282,6 +283,20 @@ abstract public class WriteFlusher
         }
     }
 
+    public WriteCoalescer getWriteCoalescer()
+    {
+        return _coalescer;
+    }
+
+    /**
+     * @param coalescer the coalescer of the small buffers passed to {@link #write(Callback, ByteBuffer...)},
+     * or null to write the buffers as they are
+     */
+    public void setWriteCoalescer(WriteCoalescer coalescer)
+    {
+        _coalescer = coalescer;
+    }
+
     public InvocationType getCallbackInvocationType()
     {
         State s = _state.get();
@@ -319,6 +334,19 @@ abstract public class WriteFlusher
 
         try
         {
+            // Coalesce once WRITING, as the coalesced buffers are consumed,
+            // but within the try, so that a failure is not left WRITING.
+            WriteCoalescer coalescer = _coalescer;
+            if (coalescer!=null)
+            {
+                WriteCoalescer.Coalesced coalesced = coalescer.coalesce(buffers);
+                if (coalesced!=null)
+                {
+                    buffers=coalesced.getBuffers();
+                    callback=coalesced.wrap(callback);
+                }
+            }
+
             buffers=flush(buffers);
 
             // if we are incomplete?
@@ -340,7 +368,7 @@ abstract public class WriteFlusher
             if (callback!=null)
                 callback.succeeded();
         }
-        catch (IOException e)
+        catch (Throwable e)
         {
             if (DEBUG)
                 LOG.debug("write exception", e);
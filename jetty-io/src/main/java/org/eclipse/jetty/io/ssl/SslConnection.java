@@ -25,6 +25,7 @@ import java.nio.channels.ClosedChannelException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLEngineResult;
@@ -94,6 +95,9 @@ public class SslConnection extends AbstractConnection
     private int _renegotiationLimit = -1;
     private boolean _closedOutbound;
     private boolean _allowMissingCloseMessage = true;
+    private SslHandshakeExecutor _handshakeExecutor;
+    private long _handshakeStarted;
+    private boolean _handshakeRecorded;
 
     private abstract class RunnableTask  implements Runnable, Invocable
     {
@@ -141,6 +145,21 @@ public class SslConnection extends AbstractConnection
         }
     };
 
+    private final Runnable _runDelegatedTasksCompleted = new RunnableTask("runDelegatedTasksCompleted")
+    {
+        @Override
+        public void run()
+        {
+            onFillable();
+        }
+
+        @Override
+        public InvocationType getInvocationType()
+        {
+            return getDecryptedEndPoint().getFillInterest().getCallbackInvocationType();
+        }
+    };
+
     private final Callback _sslReadCallback = new Callback()
     {
         @Override
@@ -242,9 +261,33 @@ public class SslConnection extends AbstractConnection
         this._allowMissingCloseMessage = allowMissingCloseMessage;
     }
 
+    public SslHandshakeExecutor getHandshakeExecutor()
+    {
+        return _handshakeExecutor;
+    }
+
+    /**
+     * <p>Sets the executor that runs the {@link SSLEngine#getDelegatedTask() delegated tasks}
+     * of the TLS handshakes of this connection.</p>
+     * <p>When {@code null} (the default), delegated tasks are run by the thread that fills or
+     * flushes this connection.</p>
+     *
+     * @param handshakeExecutor the handshake executor, or null to run delegated tasks inline
+     */
+    public void setHandshakeExecutor(SslHandshakeExecutor handshakeExecutor)
+    {
+        _handshakeExecutor = handshakeExecutor;
+    }
+
     @Override
     public void onOpen()
     {
+        SslHandshakeExecutor handshakeExecutor = _handshakeExecutor;
+        if (handshakeExecutor != null)
+        {
+            _handshakeStarted = System.nanoTime();
+            handshakeExecutor.onHandshakeStarted();
+        }
         super.onOpen();
         getDecryptedEndPoint().getConnection().onOpen();
     }
@@ -328,6 +371,20 @@ public class SslConnection extends AbstractConnection
             _decryptedEndPoint.getWriteFlusher().onFail(cause);
     }
 
+    /**
+     * @return the capacity of the encrypted and decrypted buffers of this connection,
+     * plus the bytes retained by the connection of the decrypted endpoint
+     */
+    @Override
+    public long getRetainedBufferBytes()
+    {
+        long retained = capacityOf(_encryptedInput, _encryptedOutput, _decryptedInput);
+        Connection connection = _decryptedEndPoint.getConnection();
+        if (connection instanceof AbstractConnection)
+            retained += ((AbstractConnection)connection).getRetainedBufferBytes();
+        return retained;
+    }
+
     @Override
     public String toConnectionString()
     {
@@ -429,6 +486,8 @@ public class SslConnection extends AbstractConnection
         private boolean _cannotAcceptMoreAppDataToFlush;
         private boolean _handshaken;
         private boolean _underFlown;
+        private boolean _delegatedTasksPending;
+        private boolean _delegatedTasksCompleted;
 
         private final Callback _writeCallback = new WriteCallBack();
 
@@ -496,6 +555,12 @@ public class SslConnection extends AbstractConnection
                     _cannotAcceptMoreAppDataToFlush = true;
                     write = true;
                 }
+                // If we are waiting for the handshake executor,
+                else if (_delegatedTasksPending)
+                {
+                    // the completion of the delegated tasks will complete the write
+                    _flushRequiresFillToProgress = true;
+                }
                 // If we are handshaking and need to read,
                 else if (_sslEngine.getHandshakeStatus() == HandshakeStatus.NEED_UNWRAP)
                 {
@@ -547,8 +612,15 @@ public class SslConnection extends AbstractConnection
             boolean write = false;
             synchronized (DecryptedEndPoint.this)
             {
+                // If the handshake executor is running delegated tasks, their
+                // completion will wake up the fill interest
+                if (_delegatedTasksPending)
+                    return;
+
                 // Do we already have some app data, then app can fill now so return true
                 fillable = (BufferUtil.hasContent(_decryptedInput))
+                        // or if the delegated tasks have completed since the last fill
+                        || _delegatedTasksCompleted
                         // or if we have encryptedInput and have not underflowed yet, the it is worth trying a fill
                         || BufferUtil.hasContent(_encryptedInput) && !_underFlown;
 
@@ -618,6 +690,14 @@ public class SslConnection extends AbstractConnection
                         if (BufferUtil.hasContent(_decryptedInput))
                             return BufferUtil.append(buffer,_decryptedInput);
 
+                        // Are we waiting for the handshake executor?
+                        if (_delegatedTasksPending)
+                            return 0;
+                        // Have the delegated tasks completed? Then the handshake
+                        // status must be processed even if there are no net bytes.
+                        boolean tasksCompleted = _delegatedTasksCompleted;
+                        _delegatedTasksCompleted = false;
+
                         // We will need a network buffer
                         if (_encryptedInput == null)
                             _encryptedInput = _bufferPool.acquire(_sslEngine.getSession().getPacketBufferSize(), _encryptedDirectBuffers);
@@ -675,9 +755,10 @@ public class SslConnection extends AbstractConnection
                                 {
                                     if (net_filled < 0 && _sslEngine.getUseClientMode())
                                         closeInbound();
-                                    if (net_filled <= 0)
+                                    if (net_filled <= 0 && !tasksCompleted)
                                         return net_filled;
                                 }
+                                tasksCompleted = false;
 
                                 switch (unwrapResultStatus)
                                 {
@@ -744,8 +825,9 @@ public class SslConnection extends AbstractConnection
                                             }
                                             case NEED_TASK:
                                             {
-                                                _sslEngine.getDelegatedTask().run();
-                                                continue;
+                                                if (runDelegatedTasks())
+                                                    continue;
+                                                return 0;
                                             }
                                             case NEED_WRAP:
                                             {
@@ -862,6 +944,65 @@ public class SslConnection extends AbstractConnection
             }
         }
 
+        /**
+         * <p>Runs the delegated tasks of the {@link SSLEngine}, either inline or,
+         * if a {@link SslHandshakeExecutor} is set, in the handshake executor.</p>
+         *
+         * @return true if the tasks have been run, false if they have been
+         * offloaded to the handshake executor
+         * @throws SSLHandshakeException if the handshake executor rejected the tasks
+         */
+        private boolean runDelegatedTasks() throws SSLHandshakeException
+        {
+            SslHandshakeExecutor handshakeExecutor = _handshakeExecutor;
+            if (handshakeExecutor == null)
+            {
+                Runnable task = _sslEngine.getDelegatedTask();
+                if (task != null)
+                    task.run();
+                return true;
+            }
+
+            List<Runnable> tasks = new ArrayList<>();
+            while (true)
+            {
+                Runnable task = _sslEngine.getDelegatedTask();
+                if (task == null)
+                    break;
+                tasks.add(task);
+            }
+            if (tasks.isEmpty())
+                return true;
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("Offloading {} delegated tasks {}", tasks.size(), SslConnection.this);
+            _delegatedTasksPending = true;
+            try
+            {
+                handshakeExecutor.execute(new DelegatedTasks(tasks));
+                return false;
+            }
+            catch (RejectedExecutionException x)
+            {
+                _delegatedTasksPending = false;
+                throw (SSLHandshakeException)new SSLHandshakeException("Handshake rejected").initCause(x);
+            }
+        }
+
+        private void delegatedTasksCompleted()
+        {
+            synchronized (DecryptedEndPoint.this)
+            {
+                _delegatedTasksPending = false;
+                _delegatedTasksCompleted = true;
+            }
+            if (LOG.isDebugEnabled())
+                LOG.debug("Delegated tasks completed {}", SslConnection.this);
+            // Wake up the fill interest and the pending write, if any,
+            // but not in the handshake executor thread.
+            getExecutor().execute(_runDelegatedTasksCompleted);
+        }
+
         private boolean allowRenegotiate(HandshakeStatus handshakeStatus)
         {   
             if (!_handshaken || handshakeStatus == HandshakeStatus.NOT_HANDSHAKING)
@@ -943,6 +1084,10 @@ public class SslConnection extends AbstractConnection
                             return false;
                         }
 
+                        // Are we waiting for the handshake executor?
+                        if (_delegatedTasksPending)
+                            return false;
+
                         // We will need a network buffer
                         if (_encryptedOutput == null)
                             _encryptedOutput = _bufferPool.acquire(_sslEngine.getSession().getPacketBufferSize(), _encryptedDirectBuffers);
@@ -1036,9 +1181,10 @@ public class SslConnection extends AbstractConnection
                                             return allConsumed && BufferUtil.isEmpty(_encryptedOutput);
 
                                         case NEED_TASK:
-                                            // run the task and continue
-                                            _sslEngine.getDelegatedTask().run();
-                                            continue;
+                                            // run the task and continue, or wait for the handshake executor
+                                            if (runDelegatedTasks())
+                                                continue;
+                                            return false;
 
                                         case NEED_WRAP:
                                             // Hey we just wrapped! Oh well who knows what the sslEngine is thinking, so continue and we will wrap again
@@ -1173,6 +1319,7 @@ public class SslConnection extends AbstractConnection
 
         private void notifyHandshakeSucceeded(SSLEngine sslEngine)
         {
+            recordHandshake(true);
             SslHandshakeListener.Event event = null;
             for (SslHandshakeListener listener : handshakeListeners)
             {
@@ -1191,6 +1338,7 @@ public class SslConnection extends AbstractConnection
 
         private void notifyHandshakeFailed(SSLEngine sslEngine, Throwable failure)
         {
+            recordHandshake(false);
             SslHandshakeListener.Event event = null;
             for (SslHandshakeListener listener : handshakeListeners)
             {
@@ -1207,6 +1355,19 @@ public class SslConnection extends AbstractConnection
             }
         }
 
+        private void recordHandshake(boolean succeeded)
+        {
+            SslHandshakeExecutor handshakeExecutor = _handshakeExecutor;
+            if (handshakeExecutor == null || _handshakeRecorded)
+                return;
+            _handshakeRecorded = true;
+            long duration = System.nanoTime() - _handshakeStarted;
+            if (succeeded)
+                handshakeExecutor.onHandshakeSucceeded(duration);
+            else
+                handshakeExecutor.onHandshakeFailed(duration);
+        }
+
         @Override
         public String toString()
         {
@@ -1235,5 +1396,40 @@ public class SslConnection extends AbstractConnection
                 return getWriteFlusher().getCallbackInvocationType();
             }
         }
+
+        private class DelegatedTasks implements Runnable
+        {
+            private final List<Runnable> _tasks;
+
+            private DelegatedTasks(List<Runnable> tasks)
+            {
+                _tasks = tasks;
+            }
+
+            @Override
+            public void run()
+            {
+                try
+                {
+                    // A failed task is reported by the SSLEngine on the next wrap or unwrap.
+                    for (Runnable task : _tasks)
+                        task.run();
+                }
+                catch (Throwable x)
+                {
+                    LOG.debug(x);
+                }
+                finally
+                {
+                    delegatedTasksCompleted();
+                }
+            }
+
+            @Override
+            public String toString()
+            {
+                return String.format("SSL:%s:delegatedTasks:%d", SslConnection.this, _tasks.size());
+            }
+        }
     }
 }
@@ -0,0 +1,215 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io.ssl;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.statistic.HistogramStatistic;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+/**
+ * <p>A bounded {@link Executor} dedicated to the CPU intensive work of TLS handshakes.</p>
+ * <p>When set on a {@link SslConnection} via {@link SslConnection#setHandshakeExecutor(SslHandshakeExecutor)},
+ * the {@link javax.net.ssl.SSLEngine#getDelegatedTask() delegated tasks} of the handshake (where the
+ * {@code SSLEngine} performs certificate validation and the key exchange computations) are run by this
+ * executor rather than by the thread that fills the connection, so that a storm of new TLS connections
+ * does not monopolize the threads that serve the already established connections.</p>
+ * <p>This executor has at most {@link #getMaxThreads() maxThreads} threads and queues at most
+ * {@link #getMaxQueued() maxQueued} tasks; when the queue is full the handshake is rejected and
+ * the connection is closed.</p>
+ * <p>This executor also collects statistics about the handshakes of the connections it is set on.</p>
+ */
+@ManagedObject("TLS handshake executor")
+public class SslHandshakeExecutor extends ContainerLifeCycle implements Executor
+{
+    private static final Logger LOG = Log.getLogger(SslHandshakeExecutor.class);
+
+    private final LongAdder _started = new LongAdder();
+    private final LongAdder _succeeded = new LongAdder();
+    private final LongAdder _failed = new LongAdder();
+    private final LongAdder _rejected = new LongAdder();
+    private final LongAdder _tasks = new LongAdder();
+    private final HistogramStatistic _durations = new HistogramStatistic();
+    private final QueuedThreadPool _threadPool;
+    private final int _maxQueued;
+    private volatile long _statsStartNanos = System.nanoTime();
+
+    public SslHandshakeExecutor()
+    {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() / 2), 1024);
+    }
+
+    /**
+     * @param maxThreads the max number of threads running handshake tasks
+     * @param maxQueued the max number of handshake tasks waiting for a thread
+     */
+    public SslHandshakeExecutor(int maxThreads, int maxQueued)
+    {
+        if (maxThreads <= 0)
+            throw new IllegalArgumentException("Invalid maxThreads " + maxThreads);
+        if (maxQueued <= 0)
+            throw new IllegalArgumentException("Invalid maxQueued " + maxQueued);
+        _maxQueued = maxQueued;
+        _threadPool = new QueuedThreadPool(maxThreads, 1, 60000, new BlockingArrayQueue<>(Math.min(maxQueued, 64), 64, maxQueued));
+        _threadPool.setName("ssl-handshake-" + hashCode());
+        addBean(_threadPool);
+    }
+
+    @ManagedAttribute("The max number of threads running handshake tasks")
+    public int getMaxThreads()
+    {
+        return _threadPool.getMaxThreads();
+    }
+
+    @ManagedAttribute("The max number of handshake tasks waiting for a thread")
+    public int getMaxQueued()
+    {
+        return _maxQueued;
+    }
+
+    @ManagedAttribute("The number of handshake tasks waiting for a thread")
+    public int getQueued()
+    {
+        return _threadPool.getQueueSize();
+    }
+
+    /**
+     * <p>Executes the given handshake task.</p>
+     *
+     * @param task the handshake task
+     * @throws RejectedExecutionException if too many tasks are queued
+     */
+    @Override
+    public void execute(Runnable task)
+    {
+        try
+        {
+            _threadPool.execute(task);
+            _tasks.increment();
+        }
+        catch (RejectedExecutionException x)
+        {
+            _rejected.increment();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Rejected {}", task);
+            throw x;
+        }
+    }
+
+    protected void onHandshakeStarted()
+    {
+        _started.increment();
+    }
+
+    protected void onHandshakeSucceeded(long durationNanos)
+    {
+        _succeeded.increment();
+        _durations.record(TimeUnit.NANOSECONDS.toMicros(durationNanos));
+    }
+
+    protected void onHandshakeFailed(long durationNanos)
+    {
+        _failed.increment();
+        _durations.record(TimeUnit.NANOSECONDS.toMicros(durationNanos));
+    }
+
+    @ManagedAttribute("The number of handshakes started")
+    public long getHandshakesStarted()
+    {
+        return _started.longValue();
+    }
+
+    @ManagedAttribute("The number of handshakes succeeded")
+    public long getHandshakesSucceeded()
+    {
+        return _succeeded.longValue();
+    }
+
+    @ManagedAttribute("The number of handshakes failed, including the rejected ones")
+    public long getHandshakesFailed()
+    {
+        return _failed.longValue();
+    }
+
+    @ManagedAttribute("The number of handshakes rejected because too many tasks were queued")
+    public long getHandshakesRejected()
+    {
+        return _rejected.longValue();
+    }
+
+    @ManagedAttribute("The number of handshake tasks executed")
+    public long getTasksExecuted()
+    {
+        return _tasks.longValue();
+    }
+
+    @ManagedAttribute("The rate of started handshakes per second since the statistics were reset")
+    public double getHandshakeRate()
+    {
+        long elapsed = System.nanoTime() - _statsStartNanos;
+        return elapsed <= 0 ? 0 : getHandshakesStarted() * (double)TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    @ManagedAttribute("The mean handshake duration in µs")
+    public double getHandshakeDurationMean()
+    {
+        return _durations.getMean();
+    }
+
+    @ManagedAttribute("The 99th percentile of the handshake duration in µs")
+    public long getHandshakeDuration99()
+    {
+        return _durations.getValueAtPercentile(99);
+    }
+
+    @ManagedAttribute("The max handshake duration in µs")
+    public long getHandshakeDurationMax()
+    {
+        return _durations.getMax();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        _started.reset();
+        _succeeded.reset();
+        _failed.reset();
+        _rejected.reset();
+        _tasks.reset();
+        _durations.reset();
+        _statsStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,threads=%d,queued=%d/%d}",
+                getClass().getSimpleName(), hashCode(), getState(), getMaxThreads(), getQueued(), getMaxQueued());
+    }
+}
@@ -20,6 +20,7 @@ package org.eclipse.jetty.io;
 
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -169,4 +170,59 @@ public class ArrayByteBufferPoolTest
         assertEquals(2, bucket.size());
     }
 
+    @Test
+    public void testMaxMemory() throws Exception
+    {
+        ArrayByteBufferPool bufferPool = new ArrayByteBufferPool(-1,1024,16*1024);
+        bufferPool.setMaxDirectMemory(4*1024);
+
+        ByteBuffer small1 = bufferPool.acquire(1024, true);
+        ByteBuffer small2 = bufferPool.acquire(1024, true);
+        ByteBuffer large = bufferPool.acquire(3*1024, true);
+        ByteBuffer heap = bufferPool.acquire(8*1024, false);
+
+        bufferPool.release(small1);
+        bufferPool.release(small2);
+        assertEquals(2*1024, bufferPool.getDirectMemory());
+
+        // Releasing the large buffer exceeds the max memory,
+        // so buffers are evicted from the least recently used bucket.
+        Thread.sleep(1);
+        bufferPool.release(large);
+        assertEquals(4*1024, bufferPool.getDirectMemory());
+        assertEquals(2, bufferPool.getDirectByteBufferCount());
+        assertEquals(3*1024, bufferPool.getDirectMemoryByCapacity().get(3*1024).longValue());
+
+        // Heap memory is not bounded.
+        bufferPool.release(heap);
+        assertEquals(8*1024, bufferPool.getHeapMemory());
+
+        bufferPool.acquire(3*1024, true);
+        assertEquals(1024, bufferPool.getDirectMemory());
+
+        bufferPool.clear();
+        assertEquals(0, bufferPool.getDirectMemory());
+        assertEquals(0, bufferPool.getHeapMemory());
+    }
+
+    @Test
+    public void testSweepIdleBuckets() throws Exception
+    {
+        ArrayByteBufferPool bufferPool = new ArrayByteBufferPool(-1,1024,16*1024);
+        bufferPool.setMaxIdleTime(50);
+
+        bufferPool.release(bufferPool.acquire(1024, true));
+        bufferPool.release(bufferPool.acquire(2048, false));
+
+        assertFalse(bufferPool.sweep());
+        assertEquals(1, bufferPool.getDirectByteBufferCount());
+        assertEquals(1, bufferPool.getHeapByteBufferCount());
+
+        Thread.sleep(100);
+        bufferPool.release(bufferPool.acquire(2048, false));
+
+        assertFalse(bufferPool.sweep());
+        assertEquals(0, bufferPool.getDirectMemory());
+        assertEquals(2048, bufferPool.getHeapMemory());
+    }
 }
@@ -0,0 +1,91 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+public class ArraySelectedKeysTransportTest
+{
+    @Test
+    public void testSelectedKeys() throws Exception
+    {
+        try (Selector selector = Selector.open();
+             ServerSocketChannel server1 = ServerSocketChannel.open();
+             ServerSocketChannel server2 = ServerSocketChannel.open())
+        {
+            server1.configureBlocking(false);
+            server2.configureBlocking(false);
+            SelectionKey key1 = server1.register(selector, SelectionKey.OP_ACCEPT);
+            SelectionKey key2 = server2.register(selector, SelectionKey.OP_ACCEPT);
+
+            ArraySelectedKeysTransport.SelectedKeys keys = new ArraySelectedKeysTransport.SelectedKeys();
+            assertTrue(keys.isEmpty());
+            for (int i = 0; i < 1500; ++i)
+                keys.add(i % 2 == 0 ? key1 : key2);
+            assertEquals(1500, keys.size());
+
+            Iterator<SelectionKey> iterator = keys.iterator();
+            assertSame(key1, iterator.next());
+            assertSame(key2, iterator.next());
+
+            assertTrue(keys.remove(key1));
+            assertEquals(1499, keys.size());
+            assertSame(key2, keys.iterator().next());
+
+            keys.clear();
+            assertEquals(0, keys.size());
+            assertFalse(keys.iterator().hasNext());
+        }
+    }
+
+    @Test
+    public void testSelect() throws Exception
+    {
+        // The selected keys may not be replaced on this JVM, but the selector must work anyway.
+        try (Selector selector = new ArraySelectedKeysTransport().newSelector();
+             ServerSocketChannel server = ServerSocketChannel.open())
+        {
+            server.bind(new InetSocketAddress("localhost", 0));
+            server.configureBlocking(false);
+            SelectionKey key = server.register(selector, SelectionKey.OP_ACCEPT);
+
+            try (SocketChannel client = SocketChannel.open(server.getLocalAddress()))
+            {
+                assertEquals(1, selector.select(5000));
+                assertEquals(1, selector.selectedKeys().size());
+                assertSame(key, selector.selectedKeys().iterator().next());
+                selector.selectedKeys().clear();
+                server.accept().close();
+                assertEquals(0, selector.selectNow());
+            }
+        }
+    }
+}
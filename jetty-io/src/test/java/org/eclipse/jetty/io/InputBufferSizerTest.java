@@ -0,0 +1,98 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+public class InputBufferSizerTest
+{
+    @Test
+    public void testSizes() throws Exception
+    {
+        InputBufferSizer sizer = new InputBufferSizer(512, 6000);
+        assertEquals(512, sizer.getMinSize());
+        assertEquals(6000, sizer.getMaxSize());
+        assertEquals("{512=0, 1024=0, 2048=0, 4096=0, 6000=0}", sizer.getFillsBySize().toString());
+    }
+
+    @Test
+    public void testGrowOnFullBuffer() throws Exception
+    {
+        InputBufferSizer.Predictor predictor = new InputBufferSizer(512, 16384).newPredictor();
+        assertEquals(512, predictor.getSize());
+
+        predictor.filled(512, 512);
+        assertEquals(2048, predictor.getSize());
+        predictor.filled(2048, 2048);
+        assertEquals(8192, predictor.getSize());
+        predictor.filled(8192, 8192);
+        assertEquals(16384, predictor.getSize());
+        predictor.filled(16384, 16384);
+        assertEquals(16384, predictor.getSize());
+    }
+
+    @Test
+    public void testShrinkOnSmallFills() throws Exception
+    {
+        InputBufferSizer sizer = new InputBufferSizer(512, 4096);
+        InputBufferSizer.Predictor predictor = sizer.newPredictor();
+        predictor.filled(512, 512);
+        predictor.filled(2048, 2048);
+        assertEquals(4096, predictor.getSize());
+
+        // A single small fill does not shrink.
+        predictor.filled(200, 4096);
+        assertEquals(4096, predictor.getSize());
+        // A fill that would not fit in the smaller size resets the shrinking.
+        predictor.filled(3000, 4096);
+        predictor.filled(200, 4096);
+        assertEquals(4096, predictor.getSize());
+
+        predictor.filled(200, 4096);
+        assertEquals(2048, predictor.getSize());
+        predictor.filled(200, 2048);
+        predictor.filled(200, 2048);
+        assertEquals(1024, predictor.getSize());
+        predictor.filled(200, 1024);
+        predictor.filled(200, 1024);
+        assertEquals(512, predictor.getSize());
+        predictor.filled(200, 512);
+        predictor.filled(200, 512);
+        assertEquals(512, predictor.getSize());
+
+        Map<Integer, Long> fills = sizer.getFillsBySize();
+        assertEquals(3L, fills.get(512).longValue());
+        assertEquals(2L, fills.get(1024).longValue());
+        assertEquals(3L, fills.get(2048).longValue());
+        assertEquals(4L, fills.get(4096).longValue());
+    }
+
+    @Test
+    public void testPoolRoundedCapacity() throws Exception
+    {
+        InputBufferSizer.Predictor predictor = new InputBufferSizer(512, 4096).newPredictor();
+        // The pool returned a larger buffer that was not filled.
+        predictor.filled(700, 1024);
+        assertEquals(512, predictor.getSize());
+    }
+}
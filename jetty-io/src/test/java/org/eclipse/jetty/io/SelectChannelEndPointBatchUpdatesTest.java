@@ -0,0 +1,85 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs the {@link SelectChannelEndPointTest} tests with batched selector updates.
+ */
+public class SelectChannelEndPointBatchUpdatesTest extends SelectChannelEndPointTest
+{
+    @Before
+    @Override
+    public void startManager() throws Exception
+    {
+        _manager.setBatchUpdates(true);
+        super.startManager();
+    }
+
+    @Test
+    public void testSelectorStatistics() throws Exception
+    {
+        ManagedSelector selector = _manager.getBean(ManagedSelector.class);
+        assertTrue(selector.isBatchUpdates());
+
+        try (Socket client = newClient())
+        {
+            client.setSoTimeout(60000);
+            SocketChannel server = _connector.accept();
+            server.configureBlocking(false);
+            _manager.accept(server);
+
+            for (int i = 0; i < 10; ++i)
+            {
+                client.getOutputStream().write("Hello".getBytes(StandardCharsets.UTF_8));
+                for (char c : "Hello".toCharArray())
+                    assertEquals(c, (char)client.getInputStream().read());
+            }
+        }
+
+        long selects = 0;
+        for (ManagedSelector s : _manager.getBeans(ManagedSelector.class))
+        {
+            selects += s.getSelects();
+        }
+        assertThat(selects, greaterThan(0L));
+
+        long actions = 0;
+        long wakeups = 0;
+        for (ManagedSelector s : _manager.getBeans(ManagedSelector.class))
+        {
+            actions += s.getActionsRun();
+            wakeups += s.getWakeups();
+        }
+        // At least the accept and the interest updates ran as actions.
+        assertThat(actions, greaterThan(0L));
+        assertThat(wakeups, greaterThan(0L));
+    }
+}
@@ -0,0 +1,88 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.thread.ExecutorPartition;
+import org.eclipse.jetty.util.thread.ReservedThreadExecutor;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs the {@link SelectChannelEndPointTest} tests with partitioned selector threads.
+ */
+public class SelectChannelEndPointPartitionedTest extends SelectChannelEndPointTest
+{
+    private final Set<Integer> _boundPartitions = ConcurrentHashMap.newKeySet();
+
+    @Before
+    @Override
+    public void startManager() throws Exception
+    {
+        _manager.setPartitioned(true);
+        _manager.setPartitionThreads(2);
+        _manager.setThreadAffinity(_boundPartitions::add);
+        super.startManager();
+    }
+
+    @Test
+    public void testPartitions() throws Exception
+    {
+        assertEquals(null, _manager.getBean(ReservedThreadExecutor.class));
+        assertEquals(_manager.getSelectorCount(), _manager.getBeans(ExecutorPartition.class).size());
+
+        // The partition threads bind themselves when they start running.
+        long wait = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (_boundPartitions.size() < _manager.getSelectorCount() && System.nanoTime() < wait)
+            Thread.sleep(1);
+        assertEquals(_manager.getSelectorCount(), _boundPartitions.size());
+
+        try (Socket client = newClient())
+        {
+            client.setSoTimeout(60000);
+            SocketChannel server = _connector.accept();
+            server.configureBlocking(false);
+            _manager.accept(server);
+
+            for (int i = 0; i < 10; ++i)
+            {
+                client.getOutputStream().write("Hello".getBytes(StandardCharsets.UTF_8));
+                for (char c : "Hello".toCharArray())
+                    assertEquals(c, (char)client.getInputStream().read());
+            }
+        }
+
+        for (ExecutorPartition partition : _manager.getBeans(ExecutorPartition.class))
+        {
+            assertTrue(partition.isStarted());
+            assertThat(partition.getReservedThreadExecutor().getPreallocated(), greaterThan(0));
+        }
+    }
+}
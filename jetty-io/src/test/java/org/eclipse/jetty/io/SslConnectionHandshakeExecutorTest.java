@@ -0,0 +1,79 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.io.ssl.SslHandshakeExecutor;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs the {@link SslConnectionTest} tests with the delegated tasks
+ * offloaded to a {@link SslHandshakeExecutor}.
+ */
+public class SslConnectionHandshakeExecutorTest extends SslConnectionTest
+{
+    @Before
+    public void startHandshakeExecutor() throws Exception
+    {
+        _handshakeExecutor = new SslHandshakeExecutor(2, 16);
+        _handshakeExecutor.start();
+    }
+
+    @After
+    public void stopHandshakeExecutor() throws Exception
+    {
+        _handshakeExecutor.stop();
+    }
+
+    @Test
+    public void testHandshakeStatistics() throws Exception
+    {
+        try (Socket client = newClient())
+        {
+            client.setSoTimeout(10000);
+
+            SocketChannel server = _connector.accept();
+            server.configureBlocking(false);
+            _manager.accept(server);
+
+            client.getOutputStream().write("Hello".getBytes(StandardCharsets.UTF_8));
+            byte[] buffer = new byte[1024];
+            int len = client.getInputStream().read(buffer);
+            Assert.assertEquals("Hello", new String(buffer, 0, len, StandardCharsets.UTF_8));
+        }
+
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (_handshakeExecutor.getHandshakesSucceeded() == 0 && System.nanoTime() < end)
+            Thread.sleep(10);
+
+        Assert.assertEquals(1, _handshakeExecutor.getHandshakesStarted());
+        Assert.assertEquals(1, _handshakeExecutor.getHandshakesSucceeded());
+        Assert.assertEquals(0, _handshakeExecutor.getHandshakesFailed());
+        Assert.assertEquals(0, _handshakeExecutor.getHandshakesRejected());
+        Assert.assertTrue(_handshakeExecutor.getTasksExecuted() > 0);
+        Assert.assertTrue(_handshakeExecutor.getHandshakeDurationMax() > 0);
+    }
+}
@@ -38,6 +38,7 @@ import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLSocket;
 
 import org.eclipse.jetty.io.ssl.SslConnection;
+import org.eclipse.jetty.io.ssl.SslHandshakeExecutor;
 import org.eclipse.jetty.toolchain.test.MavenTestingUtils;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.FutureCallback;
@@ -74,6 +75,7 @@ public class SslConnectionTest
 
     };
     protected Scheduler _scheduler = new TimerScheduler();
+    protected SslHandshakeExecutor _handshakeExecutor;
     protected SelectorManager _manager = new SelectorManager(_threadPool, _scheduler)
     {
         @Override
@@ -84,6 +86,7 @@ public class SslConnectionTest
             SslConnection sslConnection = new SslConnection(__byteBufferPool, getExecutor(), endpoint, engine);
             sslConnection.setRenegotiationAllowed(__sslCtxFactory.isRenegotiationAllowed());
             sslConnection.setRenegotiationLimit(__sslCtxFactory.getRenegotiationLimit());
+            sslConnection.setHandshakeExecutor(_handshakeExecutor);
             Connection appConnection = new TestConnection(sslConnection.getDecryptedEndPoint());
             sslConnection.getDecryptedEndPoint().setConnection(appConnection);
             return sslConnection;
@@ -0,0 +1,144 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jetty.io.ByteBufferPool.Bucket;
+import org.eclipse.jetty.util.BufferUtil;
+import org.junit.Test;
+
+public class ThreadLocalByteBufferPoolTest
+{
+    private static int pooled(ArrayByteBufferPool pool, boolean direct)
+    {
+        int pooled=0;
+        for (Bucket bucket : pool.bucketsFor(direct))
+            pooled+=bucket.size();
+        return pooled;
+    }
+
+    @Test
+    public void testAcquireReleaseAcquire() throws Exception
+    {
+        ArrayByteBufferPool delegate = new ArrayByteBufferPool(0,100,1000);
+        ThreadLocalByteBufferPool bufferPool = new ThreadLocalByteBufferPool(delegate,100,1000,4);
+
+        ByteBuffer buffer1 = bufferPool.acquire(150,true);
+        assertTrue(buffer1.isDirect());
+        assertEquals(200,buffer1.capacity());
+        assertEquals(0,buffer1.remaining());
+        BufferUtil.append(buffer1,(byte)1);
+        bufferPool.release(buffer1);
+
+        assertEquals(1,bufferPool.cached(200,true));
+        assertEquals(0,pooled(delegate,true));
+
+        ByteBuffer buffer2 = bufferPool.acquire(199,true);
+        assertSame(buffer1,buffer2);
+        assertEquals(0,buffer2.remaining());
+        ByteBuffer buffer3 = bufferPool.acquire(199,false);
+        assertNotSame(buffer1,buffer3);
+        assertEquals(0,bufferPool.cached(200,true));
+    }
+
+    @Test
+    public void testSpillInBatches() throws Exception
+    {
+        ArrayByteBufferPool delegate = new ArrayByteBufferPool(0,100,1000);
+        ThreadLocalByteBufferPool bufferPool = new ThreadLocalByteBufferPool(delegate,100,1000,4);
+
+        List<ByteBuffer> buffers = new ArrayList<>();
+        for (int i=0;i<5;i++)
+            buffers.add(bufferPool.acquire(512,false));
+        buffers.forEach(bufferPool::release);
+
+        // The fifth release spilled half of the magazine.
+        assertEquals(3,bufferPool.cached(600,false));
+        assertEquals(2,pooled(delegate,false));
+
+        bufferPool.clear();
+        assertEquals(0,bufferPool.cached(600,false));
+        assertEquals(5,pooled(delegate,false));
+    }
+
+    @Test
+    public void testMaxThreadMemory() throws Exception
+    {
+        ArrayByteBufferPool delegate = new ArrayByteBufferPool(0,100,1000);
+        ThreadLocalByteBufferPool bufferPool = new ThreadLocalByteBufferPool(delegate,100,1000,4,1000);
+
+        List<ByteBuffer> buffers = new ArrayList<>();
+        for (int i=0;i<3;i++)
+            buffers.add(bufferPool.acquire(300,true));
+        buffers.add(bufferPool.acquire(400,false));
+        buffers.forEach(bufferPool::release);
+
+        // The heap buffer would exceed the memory cached by this thread.
+        assertEquals(3,bufferPool.cached(300,true));
+        assertEquals(0,bufferPool.cached(400,false));
+        assertEquals(1,pooled(delegate,false));
+
+        // Memory is available again once cached buffers are acquired.
+        bufferPool.acquire(300,true);
+        bufferPool.release(bufferPool.acquire(400,false));
+        assertEquals(1,bufferPool.cached(400,false));
+    }
+
+    @Test
+    public void testUncachedSizes() throws Exception
+    {
+        ArrayByteBufferPool delegate = new ArrayByteBufferPool(0,100,1000);
+        ThreadLocalByteBufferPool bufferPool = new ThreadLocalByteBufferPool(delegate,100,1000,4);
+
+        ByteBuffer large = bufferPool.acquire(1001,true);
+        bufferPool.release(large);
+        assertEquals(0,pooled(delegate,true));
+
+        ByteBuffer odd = ByteBuffer.allocateDirect(150);
+        bufferPool.release(odd);
+        assertEquals(1,pooled(delegate,true));
+        assertEquals(0,bufferPool.cached(200,true));
+    }
+
+    @Test
+    public void testMagazinesArePerThread() throws Exception
+    {
+        ThreadLocalByteBufferPool bufferPool = new ThreadLocalByteBufferPool(new ArrayByteBufferPool(0,100,1000),100,1000,4);
+
+        ByteBuffer buffer = bufferPool.acquire(100,false);
+        bufferPool.release(buffer);
+
+        AtomicReference<ByteBuffer> other = new AtomicReference<>();
+        Thread thread = new Thread(()->other.set(bufferPool.acquire(100,false)));
+        thread.start();
+        thread.join();
+
+        assertNotSame(buffer,other.get());
+        assertSame(buffer,bufferPool.acquire(100,false));
+    }
+}
@@ -117,6 +117,100 @@ public class WriteFlusherTest
         Assert.assertTrue(flusher.isIdle());
     }
 
+    @Test
+    public void testCoalescedWrite() throws Exception
+    {
+        ByteArrayEndPoint endPoint = new ByteArrayEndPoint(new byte[0], 10);
+
+        AtomicBoolean incompleteFlush = new AtomicBoolean();
+        WriteFlusher flusher = new WriteFlusher(endPoint)
+        {
+            @Override
+            protected void onIncompleteFlush()
+            {
+                incompleteFlush.set(true);
+            }
+        };
+        ArrayByteBufferPool bufferPool = new ArrayByteBufferPool();
+        WriteCoalescer coalescer = new WriteCoalescer(bufferPool, 8, 16);
+        flusher.setWriteCoalescer(coalescer);
+
+        ByteBuffer large = BufferUtil.toBuffer("brown cow jumped over the moon!");
+        ByteBuffer[] buffers = {BufferUtil.toBuffer("How "), BufferUtil.toBuffer("now "), large, BufferUtil.toBuffer("!")};
+        FutureCallback callback = new FutureCallback();
+        flusher.write(callback, buffers);
+
+        // The small buffers are consumed immediately.
+        Assert.assertTrue(BufferUtil.isEmpty(buffers[0]));
+        Assert.assertTrue(BufferUtil.isEmpty(buffers[1]));
+        Assert.assertFalse(callback.isDone());
+        Assert.assertTrue(incompleteFlush.get());
+        Assert.assertEquals("How now br", endPoint.takeOutputString());
+
+        while (!callback.isDone())
+        {
+            incompleteFlush.set(false);
+            flusher.completeWrite();
+            endPoint.takeOutputString();
+        }
+        Assert.assertTrue(flusher.isIdle());
+
+        // The aggregate buffer has been released to the pool.
+        Assert.assertEquals(1, bufferPool.getDirectByteBufferCount());
+        Assert.assertEquals(1, coalescer.getCoalescedWrites());
+        Assert.assertEquals(2, coalescer.getCoalescedBuffers());
+        Assert.assertEquals(1, coalescer.getSavedBuffers());
+
+        // A single small buffer is not coalesced.
+        endPoint.setGrowOutput(true);
+        callback = new FutureCallback();
+        flusher.write(callback, BufferUtil.toBuffer("a"), BufferUtil.toBuffer("brown cow jumped over the moon!"));
+        Assert.assertTrue(callback.isDone());
+        Assert.assertEquals(1, coalescer.getCoalescedWrites());
+    }
+
+    @Test
+    public void testCoalesceFailure() throws Exception
+    {
+        ByteArrayEndPoint endPoint = new ByteArrayEndPoint(new byte[0], 10);
+        WriteFlusher flusher = new WriteFlusher(endPoint)
+        {
+            @Override
+            protected void onIncompleteFlush()
+            {
+            }
+        };
+        ArrayByteBufferPool bufferPool = new ArrayByteBufferPool()
+        {
+            @Override
+            public ByteBuffer acquire(int size, boolean direct)
+            {
+                throw new IllegalStateException("explicitly_thrown_by_test");
+            }
+        };
+        flusher.setWriteCoalescer(new WriteCoalescer(bufferPool, 8, 16));
+
+        FutureCallback callback = new FutureCallback();
+        flusher.write(callback, BufferUtil.toBuffer("How "), BufferUtil.toBuffer("now "));
+        Assert.assertTrue(callback.isDone());
+        try
+        {
+            callback.get();
+            Assert.fail();
+        }
+        catch (ExecutionException x)
+        {
+            Assert.assertThat(x.getCause(), Matchers.instanceOf(IllegalStateException.class));
+        }
+
+        // The flusher is not left WRITING.
+        Assert.assertTrue(flusher.isIdle());
+        callback = new FutureCallback();
+        flusher.write(callback, BufferUtil.toBuffer("brown cow"));
+        Assert.assertTrue(callback.isDone());
+        Assert.assertEquals("brown cow", endPoint.takeOutputString());
+    }
+
     @Test
     public void testCompleteBlocking() throws Exception
     {
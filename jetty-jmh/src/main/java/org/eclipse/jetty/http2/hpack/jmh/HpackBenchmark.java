@@ -0,0 +1,123 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.http2.hpack.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HostPortHttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpScheme;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.hpack.HpackDecoder;
+import org.eclipse.jetty.http2.hpack.HpackEncoder;
+import org.eclipse.jetty.util.BufferUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Measures the {@link HpackEncoder} and {@link HpackDecoder} on the requests and responses
+ * exchanged by a browser over a single HTTP/2 connection, so that the dynamic tables are
+ * in the steady state reached after the first few streams.</p>
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+public class HpackBenchmark
+{
+    private MetaData.Request request;
+    private MetaData.Response response;
+    private HpackEncoder encoder;
+    private HpackDecoder decoder;
+    private ByteBuffer buffer;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        HttpFields requestFields = new HttpFields();
+        requestFields.add(HttpHeader.CACHE_CONTROL, "max-age=0");
+        requestFields.add("upgrade-insecure-requests", "1");
+        requestFields.add(HttpHeader.USER_AGENT, "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/60.0.3112.113 Safari/537.36");
+        requestFields.add(HttpHeader.ACCEPT, "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,image/apng,*/*;q=0.8");
+        requestFields.add(HttpHeader.REFERER, "https://www.example.com/context/path/index.html");
+        requestFields.add(HttpHeader.ACCEPT_ENCODING, "gzip, deflate, br");
+        requestFields.add(HttpHeader.ACCEPT_LANGUAGE, "en-US,en;q=0.9");
+        requestFields.add(HttpHeader.COOKIE, "JSESSIONID=node01hqnv2cbt8mrw1p0p4h4x0k3q50.node0; _ga=GA1.2.1234567890.1500000000");
+        request = new MetaData.Request("GET", HttpScheme.HTTPS, new HostPortHttpField("www.example.com"),
+                "/context/path/page.html?query=value", HttpVersion.HTTP_2, requestFields);
+
+        HttpFields responseFields = new HttpFields();
+        responseFields.add(HttpHeader.DATE, "Tue, 05 Sep 2017 10:11:12 GMT");
+        responseFields.add(HttpHeader.CONTENT_TYPE, "text/html;charset=utf-8");
+        responseFields.add(HttpHeader.CONTENT_LENGTH, "12345");
+        responseFields.add(HttpHeader.LAST_MODIFIED, "Mon, 04 Sep 2017 09:10:11 GMT");
+        responseFields.add(HttpHeader.ETAG, "W/\"2a3b-15e5c2a8e40\"");
+        responseFields.add(HttpHeader.CACHE_CONTROL, "private, max-age=60");
+        responseFields.add("x-content-type-options", "nosniff");
+        response = new MetaData.Response(HttpVersion.HTTP_2, 200, responseFields);
+
+        encoder = new HpackEncoder();
+        decoder = new HpackDecoder(4096, 8192);
+        buffer = BufferUtil.allocate(8192);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void testEncodeResponse(Blackhole blackhole)
+    {
+        BufferUtil.clearToFill(buffer);
+        encoder.encode(buffer, response);
+        blackhole.consume(buffer.position());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void testEncodeDecodeRequest(Blackhole blackhole)
+    {
+        // The decoder must decode every block produced by the encoder to keep the dynamic tables in sync.
+        BufferUtil.clearToFill(buffer);
+        encoder.encode(buffer, request);
+        BufferUtil.flipToFlush(buffer, 0);
+        blackhole.consume(decoder.decode(buffer));
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+                .include(HpackBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
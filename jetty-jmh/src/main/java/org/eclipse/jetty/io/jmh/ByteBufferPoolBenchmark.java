@@ -0,0 +1,115 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.io.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.MappedByteBufferPool;
+import org.eclipse.jetty.io.ThreadLocalByteBufferPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Measures the cost of an acquire/release pair on the {@link ByteBufferPool} implementations,
+ * using the buffer sizes that the HTTP/1.1 and HTTP/2 connections typically acquire.</p>
+ */
+@State(Scope.Benchmark)
+@Threads(4)
+@Fork(1)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+public class ByteBufferPoolBenchmark
+{
+    // Request header buffer, response header buffer, chunk buffer, output aggregate, HTTP/2 frame.
+    private static final int[] SIZES = {8192, 8192, 12, 32768, 16393};
+
+    @Param({"ARRAY", "MAPPED", "THREAD_LOCAL"})
+    public String type;
+
+    @Param({"true", "false"})
+    public boolean direct;
+
+    private ByteBufferPool pool;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        switch (type)
+        {
+            case "ARRAY":
+                pool = new ArrayByteBufferPool();
+                break;
+            case "MAPPED":
+                pool = new MappedByteBufferPool();
+                break;
+            case "THREAD_LOCAL":
+                pool = new ThreadLocalByteBufferPool();
+                break;
+            default:
+                throw new IllegalStateException("Unknown pool type " + type);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void testAcquireRelease()
+    {
+        for (int size : SIZES)
+        {
+            ByteBuffer buffer = pool.acquire(size, direct);
+            pool.release(buffer);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void testAcquireAllReleaseAll()
+    {
+        ByteBuffer[] buffers = new ByteBuffer[SIZES.length];
+        for (int i = 0; i < SIZES.length; ++i)
+            buffers[i] = pool.acquire(SIZES[i], direct);
+        for (ByteBuffer buffer : buffers)
+            pool.release(buffer);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+                .include(ByteBufferPoolBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,164 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.jmh;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.ArrayTernaryTrie;
+import org.eclipse.jetty.util.ArrayTrie;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.TreeTrie;
+import org.eclipse.jetty.util.Trie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Compares the {@link Trie} implementations on the lookups performed by the HTTP parser:
+ * a best match of the header lines of a browser request, held in a heap or direct buffer,
+ * against a trie of the well known header names and header fields.</p>
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+public class TrieBenchmark
+{
+    private static final String[] KEYS =
+    {
+        "Accept", "Accept-Charset", "Accept-Encoding", "Accept-Language", "Authorization",
+        "Cache-Control", "Connection", "Content-Length", "Content-Type", "Cookie",
+        "Host", "If-Modified-Since", "If-None-Match", "Origin", "Pragma", "Referer",
+        "Upgrade-Insecure-Requests", "User-Agent", "X-Forwarded-For", "X-Requested-With",
+        "Connection: close", "Connection: keep-alive", "Accept-Encoding: gzip, deflate, br",
+        "Accept-Language: en-US,en;q=0.9", "Cache-Control: no-cache", "Cache-Control: max-age=0",
+        "Pragma: no-cache", "Upgrade-Insecure-Requests: 1", "Content-Type: application/json"
+    };
+
+    // Header lines captured from a desktop browser navigating to a page.
+    private static final String[] LINES =
+    {
+        "Host: www.example.com",
+        "Connection: keep-alive",
+        "Cache-Control: max-age=0",
+        "Upgrade-Insecure-Requests: 1",
+        "User-Agent: Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/60.0.3112.113 Safari/537.36",
+        "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,image/apng,*/*;q=0.8",
+        "Referer: https://www.example.com/index.html",
+        "Accept-Encoding: gzip, deflate, br",
+        "Accept-Language: en-US,en;q=0.9",
+        "Cookie: JSESSIONID=node01hqnv2cbt8mrw1p0p4h4x0k3q50.node0; _ga=GA1.2.1234567890.1500000000",
+        "If-None-Match: W/\"2a3b-15e5c2a8e40\"",
+        "If-Modified-Since: Tue, 05 Sep 2017 10:11:12 GMT"
+    };
+
+    @Param({"ARRAY", "TERNARY", "TREE"})
+    public String type;
+
+    @Param({"true", "false"})
+    public boolean direct;
+
+    private Trie<String> trie;
+    private ByteBuffer buffer;
+    private int[] offsets;
+    private int[] lengths;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        switch (type)
+        {
+            case "ARRAY":
+                trie = new ArrayTrie<>(2048);
+                break;
+            case "TERNARY":
+                trie = new ArrayTernaryTrie<>(true, 2048);
+                break;
+            case "TREE":
+                trie = new TreeTrie<>();
+                break;
+            default:
+                throw new IllegalStateException("Unknown trie type " + type);
+        }
+        for (String key : KEYS)
+        {
+            if (!trie.put(key, key))
+                throw new IllegalStateException("Trie full");
+        }
+
+        List<Integer> offsets = new ArrayList<>();
+        StringBuilder block = new StringBuilder();
+        for (String line : LINES)
+        {
+            offsets.add(block.length());
+            block.append(line).append("\r\n");
+        }
+        byte[] bytes = block.toString().getBytes(StandardCharsets.ISO_8859_1);
+        buffer = direct ? BufferUtil.allocateDirect(bytes.length) : BufferUtil.allocate(bytes.length);
+        BufferUtil.append(buffer, bytes, 0, bytes.length);
+        this.offsets = new int[LINES.length];
+        this.lengths = new int[LINES.length];
+        for (int i = 0; i < LINES.length; ++i)
+        {
+            this.offsets[i] = offsets.get(i);
+            this.lengths[i] = bytes.length - offsets.get(i);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void testGetBest(Blackhole blackhole)
+    {
+        for (int i = 0; i < offsets.length; ++i)
+            blackhole.consume(trie.getBest(buffer, offsets[i], lengths[i]));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public void testGet(Blackhole blackhole)
+    {
+        for (String key : KEYS)
+            blackhole.consume(trie.get(key));
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+                .include(TrieBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
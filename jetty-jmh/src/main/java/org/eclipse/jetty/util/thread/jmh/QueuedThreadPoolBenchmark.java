@@ -0,0 +1,103 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.thread.jmh;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Measures the latency of dispatching jobs to a {@link QueuedThreadPool}, from the call
+ * to {@link QueuedThreadPool#execute(Runnable)} until the job has run, with several
+ * threads submitting jobs concurrently as selectors and request handlers do.</p>
+ */
+@State(Scope.Benchmark)
+@Threads(4)
+@Fork(1)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+public class QueuedThreadPoolBenchmark
+{
+    @Param({"8", "200"})
+    public int maxThreads;
+
+    @Param({"1", "16"})
+    public int jobs;
+
+    private QueuedThreadPool threadPool;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception
+    {
+        threadPool = new QueuedThreadPool(maxThreads, Math.min(8, maxThreads));
+        threadPool.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+    {
+        threadPool.stop();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void testDispatch() throws Exception
+    {
+        CountDownLatch latch = new CountDownLatch(jobs);
+        for (int i = 0; i < jobs; ++i)
+        {
+            threadPool.execute(() ->
+            {
+                Blackhole.consumeCPU(100);
+                latch.countDown();
+            });
+        }
+        if (!latch.await(10, TimeUnit.SECONDS))
+            throw new IllegalStateException("Jobs not run");
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+                .include(QueuedThreadPoolBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
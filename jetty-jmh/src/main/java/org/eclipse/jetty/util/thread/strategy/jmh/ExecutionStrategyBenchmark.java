@@ -0,0 +1,148 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.thread.strategy.jmh;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.thread.ExecutionStrategy;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.strategy.EatWhatYouKill;
+import org.eclipse.jetty.util.thread.strategy.ExecuteProduceConsume;
+import org.eclipse.jetty.util.thread.strategy.ProduceExecuteConsume;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Measures the time taken by the {@link ExecutionStrategy} implementations to produce
+ * and consume a burst of tasks, such as the tasks produced by a selector for a batch
+ * of selected keys.</p>
+ * <p>Each task simulates the CPU cost of parsing a request and generating a response.</p>
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+public class ExecutionStrategyBenchmark
+{
+    @Param({"EWYK", "EPC", "PEC"})
+    public String strategyName;
+
+    @Param({"16", "128"})
+    public int tasks;
+
+    @Param({"100", "1000"})
+    public int work;
+
+    private QueuedThreadPool threadPool;
+    private BurstProducer producer;
+    private ExecutionStrategy strategy;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception
+    {
+        threadPool = new QueuedThreadPool(200, 8);
+        threadPool.start();
+        producer = new BurstProducer();
+        switch (strategyName)
+        {
+            case "EWYK":
+                strategy = new EatWhatYouKill(producer, threadPool);
+                break;
+            case "EPC":
+                strategy = new ExecuteProduceConsume(producer, threadPool);
+                break;
+            case "PEC":
+                strategy = new ProduceExecuteConsume(producer, threadPool);
+                break;
+            default:
+                throw new IllegalStateException("Unknown strategy " + strategyName);
+        }
+        LifeCycle.start(strategy);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+    {
+        LifeCycle.stop(strategy);
+        threadPool.stop();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public void testProduceBurst() throws Exception
+    {
+        CountDownLatch latch = producer.reset(tasks);
+        strategy.produce();
+        if (!latch.await(10, TimeUnit.SECONDS))
+            throw new IllegalStateException("Tasks not consumed");
+    }
+
+    private class BurstProducer implements ExecutionStrategy.Producer
+    {
+        private final AtomicInteger remaining = new AtomicInteger();
+        private volatile CountDownLatch latch;
+
+        private CountDownLatch reset(int count)
+        {
+            CountDownLatch result = new CountDownLatch(count);
+            latch = result;
+            remaining.set(count);
+            return result;
+        }
+
+        @Override
+        public Runnable produce()
+        {
+            if (remaining.getAndDecrement() <= 0)
+                return null;
+            CountDownLatch latch = this.latch;
+            return () ->
+            {
+                Blackhole.consumeCPU(work);
+                latch.countDown();
+            };
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+                .include(ExecutionStrategyBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -25,6 +25,7 @@ import java.util.List;
 import org.eclipse.jetty.io.AbstractConnection;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.InputBufferSizer;
 import org.eclipse.jetty.util.ArrayUtil;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
@@ -37,7 +38,9 @@ import org.eclipse.jetty.util.ssl.SslContextFactory;
  * <li>Protocol identification</li>
  * <li>Configuration of new Connections:
  *     <ul>
- *     <li>Setting inputbuffer size</li>
+ *     <li>Setting inputbuffer size, or an {@link InputBufferSizer} that adapts it
+ *     between the {@link #setMinInputBufferSize(int) min input buffer size} and the
+ *     {@link #setInputBufferSize(int) input buffer size}</li>
  *     <li>Calling {@link Connection#addListener(Connection.Listener)} for all
  *     Connection.Listener instances found as beans on the {@link Connector}
  *     and this {@link ConnectionFactory}</li>
@@ -50,6 +53,8 @@ public abstract class AbstractConnectionFactory extends ContainerLifeCycle imple
     private final String _protocol;
     private final List<String> _protocols;
     private int _inputbufferSize = 8192;
+    private int _minInputBufferSize = -1;
+    private InputBufferSizer _inputBufferSizer;
 
     protected AbstractConnectionFactory(String protocol)
     {
@@ -87,9 +92,49 @@ public abstract class AbstractConnectionFactory extends ContainerLifeCycle imple
         _inputbufferSize=size;
     }
 
+    @ManagedAttribute("The minimum buffer size used to read from the network, or -1 if the buffer size is not adaptive")
+    public int getMinInputBufferSize()
+    {
+        return _minInputBufferSize;
+    }
+
+    /**
+     * <p>Sets the minimum size of the buffers used to read from the network.</p>
+     * <p>When the minimum size is positive and less than the {@link #getInputBufferSize() input buffer size},
+     * each connection adapts the size of its input buffers between the two sizes, according to the bytes
+     * that it actually reads, using an {@link InputBufferSizer} that is added as a bean of this factory
+     * when it is started.</p>
+     *
+     * @param size the minimum input buffer size, or -1 to always use the input buffer size
+     */
+    public void setMinInputBufferSize(int size)
+    {
+        _minInputBufferSize=size;
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        if (_minInputBufferSize>0 && _minInputBufferSize<_inputbufferSize)
+        {
+            _inputBufferSizer=new InputBufferSizer(_minInputBufferSize,_inputbufferSize);
+            addBean(_inputBufferSizer);
+        }
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+        removeBean(_inputBufferSizer);
+        _inputBufferSizer=null;
+    }
+
     protected AbstractConnection configure(AbstractConnection connection, Connector connector, EndPoint endPoint)
     {
         connection.setInputBufferSize(getInputBufferSize());
+        connection.setInputBufferSizer(_inputBufferSizer);
 
         // Add Connection.Listeners from Connector
         if (connector instanceof ContainerLifeCycle)
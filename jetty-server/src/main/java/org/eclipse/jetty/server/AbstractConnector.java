@@ -37,8 +37,10 @@ import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 
+import org.eclipse.jetty.io.AbstractConnection;
 import org.eclipse.jetty.io.ArrayByteBufferPool;
 import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.ssl.SslConnection;
 import org.eclipse.jetty.util.FutureCallback;
@@ -53,6 +55,7 @@ import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.eclipse.jetty.util.thread.Locker;
 import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
 import org.eclipse.jetty.util.thread.Scheduler;
+import org.eclipse.jetty.util.thread.VirtualThreadPool;
 
 /**
  * <p>An abstract implementation of {@link Connector} that provides a {@link ConnectionFactory} mechanism
@@ -594,7 +597,7 @@ public abstract class AbstractConnector extends ContainerLifeCycle implements Co
         }
     }
 
-    private class Acceptor implements Runnable
+    private class Acceptor implements VirtualThreadPool.PlatformJob
     {
         private final int _id;
         private String _name;
@@ -702,6 +705,27 @@ public abstract class AbstractConnector extends ContainerLifeCycle implements Co
         return _immutableEndPoints;
     }
 
+    /**
+     * <p>Returns the total capacity of the buffers retained by the connections of this connector.</p>
+     * <p>Idle connections return their buffers to the {@link ByteBufferPool}, so this value
+     * only accounts for the connections that are reading, writing or have pending data.</p>
+     *
+     * @return the total capacity in bytes of the buffers retained by the connections
+     * @see AbstractConnection#getRetainedBufferBytes()
+     */
+    @ManagedAttribute("The total capacity of the buffers retained by the connections")
+    public long getRetainedBufferBytes()
+    {
+        long retained = 0;
+        for (EndPoint endPoint : getConnectedEndPoints())
+        {
+            Connection connection = endPoint.getConnection();
+            if (connection instanceof AbstractConnection)
+                retained += ((AbstractConnection)connection).getRetainedBufferBytes();
+        }
+        return retained;
+    }
+
     protected void onEndPointOpened(EndPoint endp)
     {
         _endpoints.add(endp);
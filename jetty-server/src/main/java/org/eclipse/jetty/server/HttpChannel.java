@@ -21,6 +21,7 @@ package org.eclipse.jetty.server;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -758,6 +759,40 @@ public class HttpChannel implements Runnable, HttpOutput.Interceptor
         }
     }
 
+    /**
+     * <p>Non-Blocking send of a whole response whose content is a region of a file, committing the response.</p>
+     * <p>The file bytes are transferred directly to the network if the transport supports it,
+     * bypassing the {@link HttpOutput.Interceptor} chain.</p>
+     * @param file the file to transfer the content from
+     * @param position the position in the file of the first content byte
+     * @param count the number of content bytes, which must be the response content length
+     * @param callback Callback when complete or failed
+     * @return false if the transfer is not possible, in which case the callback is not notified
+     * and the content must be written normally
+     */
+    public boolean transfer(FileChannel file, long position, long count, Callback callback)
+    {
+        if (_request.isHead() || !_transport.isTransferSupported())
+            return false;
+
+        MetaData.Response info = _response.newResponseMetaData();
+        int status = info.getStatus();
+        if (status<200 || status==HttpStatus.NO_CONTENT_204 || status==HttpStatus.NOT_MODIFIED_304 ||
+            info.getContentLength()!=count || info.getTrailerSupplier()!=null)
+            return false;
+
+        if (!_committed.compareAndSet(false, true))
+            return false;
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("transfer info={} file={} position={} count={} callback={}",info,file,position,count,callback);
+
+        commit(info);
+        _written+=count;
+        _transport.transfer(info, file, position, count, new CommitCallback(callback));
+        return true;
+    }
+
     protected void commit (MetaData.Response info)
     {
         _committedMetaData=info;
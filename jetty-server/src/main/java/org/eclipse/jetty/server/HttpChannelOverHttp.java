@@ -107,7 +107,10 @@ public class HttpChannelOverHttp extends HttpChannel implements HttpParser.Reque
     public boolean startRequest(String method, String uri, HttpVersion version)
     {
         _metadata.setMethod(method);
-        _metadata.getURI().parseRequestTarget(method, uri);
+        if (getHttpConfiguration().isLazyRequestParsing())
+            _metadata.getURI().parseRequestTargetLazily(method, uri);
+        else
+            _metadata.getURI().parseRequestTarget(method, uri);
         _metadata.setHttpVersion(version);
         _unknownExpectation = false;
         _expect100Continue = false;
@@ -119,7 +122,6 @@ public class HttpChannelOverHttp extends HttpChannel implements HttpParser.Reque
     public void parsedHeader(HttpField field)
     {
         HttpHeader header = field.getHeader();
-        String value = field.getValue();
         if (header != null)
         {
             switch (header)
@@ -140,7 +142,7 @@ public class HttpChannelOverHttp extends HttpChannel implements HttpParser.Reque
                 {
                     if (_metadata.getHttpVersion() == HttpVersion.HTTP_1_1)
                     {
-                        HttpHeaderValue expect = HttpHeaderValue.CACHE.get(value);
+                        HttpHeaderValue expect = HttpHeaderValue.CACHE.get(field.getValue());
                         switch (expect == null ? HttpHeaderValue.UNKNOWN : expect)
                         {
                             case CONTINUE:
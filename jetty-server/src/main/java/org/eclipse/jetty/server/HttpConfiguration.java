@@ -24,6 +24,7 @@ import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.eclipse.jetty.http.CookieCompliance;
+import org.eclipse.jetty.http.HttpFieldCache;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.HttpScheme;
 import org.eclipse.jetty.util.Jetty;
@@ -53,9 +54,13 @@ public class HttpConfiguration
     private final Trie<Boolean> _formEncodedMethods = new TreeTrie<>();
     private int _outputBufferSize=32*1024;
     private int _outputAggregationSize=_outputBufferSize/4;
+    private int _pipelineAggregationSize;
+    private long _pipelineAggregationMaxDelay=10;
     private int _requestHeaderSize=8*1024;
     private int _responseHeaderSize=8*1024;
     private int _headerCacheSize=512;
+    private HttpFieldCache _httpFieldCache;
+    private boolean _lazyRequestParsing;
     private int _securePort;
     private long _idleTimeout=-1;
     private long _blockingTimeout=-1;
@@ -112,9 +117,13 @@ public class HttpConfiguration
             _formEncodedMethods.put(s,Boolean.TRUE);
         _outputBufferSize=config._outputBufferSize;
         _outputAggregationSize=config._outputAggregationSize;
+        _pipelineAggregationSize=config._pipelineAggregationSize;
+        _pipelineAggregationMaxDelay=config._pipelineAggregationMaxDelay;
         _requestHeaderSize=config._requestHeaderSize;
         _responseHeaderSize=config._responseHeaderSize;
         _headerCacheSize=config._headerCacheSize;
+        _httpFieldCache=config._httpFieldCache;
+        _lazyRequestParsing=config._lazyRequestParsing;
         _secureScheme=config._secureScheme;
         _securePort=config._securePort;
         _idleTimeout=config._idleTimeout;
@@ -171,6 +180,20 @@ public class HttpConfiguration
         return _outputAggregationSize;
     }
 
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("The maximum size in bytes of the responses to pipelined requests aggregated in a single write")
+    public int getPipelineAggregationSize()
+    {
+        return _pipelineAggregationSize;
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("The maximum time in ms that the response to a pipelined request may be delayed by aggregation")
+    public long getPipelineAggregationMaxDelay()
+    {
+        return _pipelineAggregationMaxDelay;
+    }
+
     /* ------------------------------------------------------------ */
     @ManagedAttribute("The maximum allowed size in bytes for a HTTP request header")
     public int getRequestHeaderSize()
@@ -192,6 +215,20 @@ public class HttpConfiguration
         return _headerCacheSize;
     }
 
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("The HTTP field cache shared by all connections")
+    public HttpFieldCache getHttpFieldCache()
+    {
+        return _httpFieldCache;
+    }
+
+    /* ------------------------------------------------------------ */
+    @ManagedAttribute("Whether header values and request targets are decoded on first access")
+    public boolean isLazyRequestParsing()
+    {
+        return _lazyRequestParsing;
+    }
+
     /* ------------------------------------------------------------ */
     @ManagedAttribute("The port to which Integral or Confidential security constraints are redirected")
     public int getSecurePort()
@@ -380,6 +417,36 @@ public class HttpConfiguration
         _outputAggregationSize = outputAggregationSize;
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * Set the max size of the responses to pipelined HTTP/1.1 requests that are aggregated in a single write.
+     * <p>When a persistent response is completed while the next pipelined request has already been
+     * received, the response is copied into an aggregate buffer rather than written, and it is
+     * written together with the responses of the following pipelined requests. The aggregate buffer is
+     * written when it would exceed this size, when it is older than the
+     * {@link #setPipelineAggregationMaxDelay(long) max delay}, and whenever the connection stops
+     * handling requests that have already been received (eg the next request is incomplete or is
+     * handled asynchronously).</p>
+     * @param pipelineAggregationSize the max size in bytes of the aggregated responses, or 0 (the default) to write every response
+     */
+    public void setPipelineAggregationSize(int pipelineAggregationSize)
+    {
+        _pipelineAggregationSize = pipelineAggregationSize;
+    }
+
+    /* ------------------------------------------------------------ */
+    /**
+     * Set the max time that the response to a pipelined request may be held in the aggregate buffer.
+     * <p>The aggregated responses are written once the first of them has been held for this time,
+     * even if the handling of the following pipelined requests has not completed.</p>
+     * @param pipelineAggregationMaxDelay the max delay in ms (default 10)
+     * @see #setPipelineAggregationSize(int)
+     */
+    public void setPipelineAggregationMaxDelay(long pipelineAggregationMaxDelay)
+    {
+        _pipelineAggregationMaxDelay = pipelineAggregationMaxDelay;
+    }
+
     /* ------------------------------------------------------------ */
     /** Set the maximum size of a request header.
      * <p>Larger headers will allow for more and/or larger cookies plus larger form content encoded 
@@ -413,6 +480,31 @@ public class HttpConfiguration
         _headerCacheSize = headerCacheSize;
     }
 
+    /* ------------------------------------------------------------ */
+    /** Set the HTTP field cache shared by the parsers of all connections.
+     * <p>Unlike the per connection header cache, the shared cache also avoids
+     * the allocation of frequently received fields by short lived connections.</p>
+     * @param httpFieldCache The shared field cache, or null (the default) for none.
+     */
+    public void setHttpFieldCache(HttpFieldCache httpFieldCache)
+    {
+        _httpFieldCache = httpFieldCache;
+    }
+
+    /* ------------------------------------------------------------ */
+    /** Set whether the request is parsed lazily.
+     * <p>When true, the values of the header fields that are not interpreted by the
+     * parser are only decoded to Strings when first accessed, and the path, param and
+     * query of origin-form request targets are only split when first accessed, so that
+     * requests that are routed on a few fields do not pay for the others.</p>
+     * <p>Lazy field values are not used when a shared {@link HttpFieldCache} is configured.</p>
+     * @param lazyRequestParsing True to decode header values and request targets on first access.
+     */
+    public void setLazyRequestParsing(boolean lazyRequestParsing)
+    {
+        _lazyRequestParsing = lazyRequestParsing;
+    }
+
     /* ------------------------------------------------------------ */
     /** Set the TCP/IP port used for CONFIDENTIAL and INTEGRAL redirections.
      * @param securePort the secure port to redirect to.
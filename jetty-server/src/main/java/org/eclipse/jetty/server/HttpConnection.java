@@ -20,8 +20,10 @@ package org.eclipse.jetty.server;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.WritePendingException;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.jetty.http.HttpCompliance;
@@ -44,6 +46,7 @@ import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.IteratingCallback;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.thread.Scheduler;
 
 /**
  * <p>A {@link Connection} that handles the HTTP protocol.</p>
@@ -71,6 +74,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
     private final BlockingReadCallback _blockingReadCallback = new BlockingReadCallback();
     private final AsyncReadCallback _asyncReadCallback = new AsyncReadCallback();
     private final SendCallback _sendCallback = new SendCallback();
+    private final PipelineAggregator _pipeline = new PipelineAggregator();
     private final boolean _recordHttpComplianceViolations;
 
     /**
@@ -129,7 +133,10 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
 
     protected HttpParser newHttpParser(HttpCompliance compliance)
     {
-        return new HttpParser(newRequestHandler(), getHttpConfiguration().getRequestHeaderSize(), compliance);
+        HttpParser parser = new HttpParser(newRequestHandler(), getHttpConfiguration().getRequestHeaderSize(), compliance);
+        parser.setHttpFieldCache(getHttpConfiguration().getHttpFieldCache());
+        parser.setLazyFieldValues(getHttpConfiguration().isLazyRequestParsing());
+        return parser;
     }
 
     protected HttpParser.RequestHandler newRequestHandler()
@@ -241,6 +248,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
                 // Handle closed parser.
                 if (_parser.isClose() || _parser.isClosed())
                 {
+                    _pipeline.flush();
                     close();
                     break;
                 }
@@ -267,6 +275,8 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
         }
         finally
         {
+            // No more received requests are being handled, so write any aggregated responses.
+            _pipeline.flush();
             setCurrentConnection(last);
             if (LOG.isDebugEnabled())
                 LOG.debug("{} onFillable exit {} {}", this, _channel.getState(),BufferUtil.toDetailString(_requestBuffer));
@@ -326,6 +336,8 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
                 // tell parser
                 if (filled < 0)
                     _parser.atEOF();
+                else
+                    onFilled(_requestBuffer,filled);
 
                 if (LOG.isDebugEnabled())
                     LOG.debug("{} filled {} {}",this,filled,BufferUtil.toDetailString(_requestBuffer));
@@ -360,6 +372,21 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
         return handle;
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * @return true if the response being sent may be aggregated with the responses
+     * of the pipelined requests that have already been received.
+     */
+    private boolean isPipelineAggregating()
+    {
+        return _config.getPipelineAggregationSize()>0 &&
+            _config.getPipelineAggregationMaxDelay()>0 &&
+            getCurrentConnection()==this &&
+            BufferUtil.hasContent(_requestBuffer) &&
+            _generator.isPersistent() &&
+            _channel.getResponse().getStatus()!=HttpStatus.SWITCHING_PROTOCOLS_101;
+    }
+
     /* ------------------------------------------------------------ */
     @Override
     public void onCompleted()
@@ -490,6 +517,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
     public void onClose()
     {
         _sendCallback.close();
+        _pipeline.close();
         super.onClose();
     }
 
@@ -522,6 +550,27 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
             _sendCallback.iterate();
     }
 
+    @Override
+    public boolean isTransferSupported()
+    {
+        return getEndPoint().isTransferSupported();
+    }
+
+    @Override
+    public void transfer(MetaData.Response info, FileChannel file, long position, long count, Callback callback)
+    {
+        // If we are still expecting a 100 continues when we commit
+        if (_channel.isExpecting100Continue())
+            // then we can't be persistent
+            _generator.setPersistent(false);
+
+        if (_sendCallback.reset(info,false,null,true,callback))
+        {
+            _sendCallback.transfer(file,position,count);
+            _sendCallback.iterate();
+        }
+    }
+
 
     HttpInput.Content newContent(ByteBuffer c)
     {
@@ -552,11 +601,15 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
 
     public void asyncReadFillInterested()
     {
+        // Do not delay the aggregated responses while waiting for the request content.
+        _pipeline.flush();
         getEndPoint().fillInterested(_asyncReadCallback);
     }
 
     public void blockingReadFillInterested()
     {
+        // Do not delay the aggregated responses while waiting for the request content.
+        _pipeline.flush();
         getEndPoint().fillInterested(_blockingReadCallback);
     }
 
@@ -565,6 +618,12 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
         _blockingReadCallback.failed(e);
     }
 
+    @Override
+    public long getRetainedBufferBytes()
+    {
+        return capacityOf(_requestBuffer,_chunk,_sendCallback._header);
+    }
+
     @Override
     public String toConnectionString()
     {
@@ -647,6 +706,11 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
         private Callback _callback;
         private ByteBuffer _header;
         private boolean _shutdownOut;
+        private FileChannel _file;
+        private long _position;
+        private long _count;
+        private ByteBuffer _pipelined;
+        private boolean _flushPending;
 
         private SendCallback()
         {
@@ -670,6 +734,8 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
                 _callback = callback;
                 _header = null;
                 _shutdownOut = false;
+                _file = null;
+                _flushPending = false;
                 return true;
             }
 
@@ -680,12 +746,28 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
             return false;
         }
 
+        private void transfer(FileChannel file, long position, long count)
+        {
+            _file = file;
+            _position = position;
+            _count = count;
+        }
+
         @Override
         public Action process() throws Exception
         {
             if (_callback==null)
                 throw new IllegalStateException();
 
+            releasePipelined();
+
+            // Resume the flush that waited for the responses to previous pipelined requests to be written.
+            if (_flushPending)
+            {
+                _flushPending = false;
+                return flush();
+            }
+
             ByteBuffer chunk = _chunk;
             while (true)
             {
@@ -724,42 +806,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
                     }
                     case FLUSH:
                     {
-                        // Don't write the chunk or the content if this is a HEAD response, or any other type of response that should have no content
-                        if (_head || _generator.isNoContent())
-                        {
-                            BufferUtil.clear(chunk);
-                            BufferUtil.clear(_content);
-                        }
-
-                        // If we have a header
-                        if (BufferUtil.hasContent(_header))
-                        {
-                            if (BufferUtil.hasContent(_content))
-                            {
-                                if (BufferUtil.hasContent(chunk))
-                                    getEndPoint().write(this, _header, chunk, _content);
-                                else
-                                    getEndPoint().write(this, _header, _content);
-                            }
-                            else
-                                getEndPoint().write(this, _header);
-                        }
-                        else if (BufferUtil.hasContent(chunk))
-                        {
-                            if (BufferUtil.hasContent(_content))
-                                getEndPoint().write(this, chunk, _content);
-                            else
-                                getEndPoint().write(this, chunk);
-                        }
-                        else if (BufferUtil.hasContent(_content))
-                        {
-                            getEndPoint().write(this, _content);
-                        }
-                        else
-                        {
-                            succeeded(); // nothing to write
-                        }
-                        return Action.SCHEDULED;
+                        return flush();
                     }
                     case SHUTDOWN_OUT:
                     {
@@ -782,6 +829,84 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
             }
         }
 
+        private Action flush() throws Exception
+        {
+            // Responses to previous pipelined requests must be written first,
+            // either by waiting for their flush or by writing them with this response.
+            if (_pipeline.waitForFlushOrTake(this))
+            {
+                _flushPending = true;
+                return Action.SCHEDULED;
+            }
+
+            ByteBuffer chunk = _chunk;
+
+            // Don't write the chunk or the content if this is a HEAD response, or any other type of response that should have no content
+            if (_head || _generator.isNoContent())
+            {
+                BufferUtil.clear(chunk);
+                BufferUtil.clear(_content);
+            }
+
+            // If we have a file region, transfer it after the header
+            if (_file!=null)
+            {
+                FileChannel file = _file;
+                _file = null;
+                if (!_head && !_generator.isNoContent())
+                {
+                    if (_generator.isChunking())
+                        throw new IllegalStateException("Cannot transfer chunked content");
+                    getEndPoint().transfer(this, file, _position, _count, pipelined(_header));
+                    return Action.SCHEDULED;
+                }
+            }
+
+            // If the next pipelined request has already been received, aggregate the
+            // last write of the response to be written with the following responses.
+            if (_lastContent && isPipelineAggregating() && _pipeline.aggregate(_pipelined, _header, chunk, _content))
+            {
+                _pipelined = null;
+                succeeded();
+                return Action.SCHEDULED;
+            }
+
+            ByteBuffer[] buffers = pipelined(_header, chunk, _content);
+            if (buffers.length>0)
+                getEndPoint().write(this, buffers);
+            else
+                succeeded(); // nothing to write
+            return Action.SCHEDULED;
+        }
+
+        /**
+         * @param buffers the buffers to write
+         * @return the buffers with content, preceded by the aggregated responses of previous pipelined requests, if any
+         */
+        private ByteBuffer[] pipelined(ByteBuffer... buffers)
+        {
+            int length = _pipelined==null?0:1;
+            for (ByteBuffer buffer : buffers)
+                if (BufferUtil.hasContent(buffer))
+                    length++;
+            ByteBuffer[] result = new ByteBuffer[length];
+            int i = 0;
+            if (_pipelined!=null)
+                result[i++] = _pipelined;
+            for (ByteBuffer buffer : buffers)
+                if (BufferUtil.hasContent(buffer))
+                    result[i++] = buffer;
+            return result;
+        }
+
+        private void releasePipelined()
+        {
+            ByteBuffer p=_pipelined;
+            _pipelined=null;
+            if (p!=null)
+                _bufferPool.release(p);
+        }
+
         private void releaseHeader()
         {
             ByteBuffer h=_header;
@@ -794,6 +919,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
         protected void onCompleteSuccess()
         {
             releaseHeader();
+            releasePipelined();
             _callback.succeeded();
             if (_shutdownOut)
                 getEndPoint().shutdownOutput();
@@ -803,6 +929,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
         public void onCompleteFailure(final Throwable x)
         {
             releaseHeader();
+            releasePipelined();
             failedCallback(_callback,x);
             if (_shutdownOut)
                 getEndPoint().shutdownOutput();
@@ -814,4 +941,188 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
             return String.format("%s[i=%s,cb=%s]",super.toString(),_info,_callback);
         }
     }
+
+    /**
+     * <p>Aggregates the responses to pipelined requests that are completed while the
+     * connection is handling the requests that have already been received, so that
+     * they are written in a single write, either together with the next response or
+     * when the connection stops handling the received requests.</p>
+     * <p>The aggregated responses are also written when the first of them has been
+     * held for the {@link HttpConfiguration#getPipelineAggregationMaxDelay() max delay},
+     * so that a slow request does not delay the responses to the requests before it.</p>
+     * <p>A response that is sent while the aggregated responses are being written
+     * waits for the write to complete, so that the order of the responses is preserved
+     * and a failure to write the aggregated responses fails the response.</p>
+     */
+    private class PipelineAggregator implements Callback, Runnable
+    {
+        private ByteBuffer _aggregate;
+        private ByteBuffer _flushing;
+        private Callback _waiter;
+        private long _started;
+        private Scheduler.Task _timeout;
+
+        /**
+         * @param taken the aggregated responses previously taken by the caller, or null
+         * @param buffers the buffers to aggregate
+         * @return true if the buffers were aggregated with the taken responses, false if they would
+         * exceed the aggregation size or the taken responses have been held for the max delay
+         */
+        private boolean aggregate(ByteBuffer taken, ByteBuffer... buffers)
+        {
+            int size = _config.getPipelineAggregationSize();
+            long maxDelay = _config.getPipelineAggregationMaxDelay();
+            int length = 0;
+            for (ByteBuffer buffer : buffers)
+                length += BufferUtil.length(buffer);
+            if (BufferUtil.length(taken)+length>size)
+                return false;
+
+            long now = System.nanoTime();
+            long delay = maxDelay;
+            if (taken!=null)
+            {
+                synchronized (this)
+                {
+                    delay -= TimeUnit.NANOSECONDS.toMillis(now-_started);
+                }
+                if (delay<=0)
+                    return false;
+            }
+
+            ByteBuffer aggregate = taken==null?_bufferPool.acquire(size, HEADER_BUFFER_DIRECT):taken;
+            for (ByteBuffer buffer : buffers)
+                if (BufferUtil.hasContent(buffer))
+                    BufferUtil.append(aggregate, buffer);
+
+            synchronized (this)
+            {
+                _aggregate = aggregate;
+                if (taken==null)
+                    _started = now;
+                if (_timeout==null)
+                    _timeout = getConnector().getScheduler().schedule(this, delay, TimeUnit.MILLISECONDS);
+            }
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} aggregated {} pipelined bytes", HttpConnection.this, length);
+            return true;
+        }
+
+        /**
+         * <p>Either waits for the aggregated responses being written, or takes the aggregated
+         * responses, if any, so that they are written by the callback together with its response.</p>
+         * <p>This is a single atomic operation, so that the aggregated responses cannot be flushed
+         * concurrently with the response of the callback.</p>
+         * @param callback the callback to complete when the aggregated responses have been written
+         * @return true if the aggregated responses are being written and the callback will be completed,
+         * false if the aggregated responses, if any, have been taken by the callback
+         */
+        private boolean waitForFlushOrTake(SendCallback callback)
+        {
+            synchronized (this)
+            {
+                if (_flushing!=null)
+                {
+                    _waiter = callback;
+                    return true;
+                }
+                callback._pipelined = _aggregate;
+                _aggregate = null;
+                return false;
+            }
+        }
+
+        /**
+         * Writes the aggregated responses, if any.
+         */
+        private void flush()
+        {
+            ByteBuffer aggregate;
+            synchronized (this)
+            {
+                aggregate = _aggregate;
+                if (aggregate==null)
+                    return;
+                _aggregate = null;
+                _flushing = aggregate;
+            }
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} flush pipelined {}", HttpConnection.this, BufferUtil.toDetailString(aggregate));
+            getEndPoint().write(this, aggregate);
+        }
+
+        @Override
+        public void run()
+        {
+            synchronized (this)
+            {
+                _timeout = null;
+                if (_aggregate==null)
+                    return;
+                // The aggregate may have been started after this timeout was scheduled.
+                long delay = _config.getPipelineAggregationMaxDelay()-TimeUnit.NANOSECONDS.toMillis(System.nanoTime()-_started);
+                if (delay>0)
+                {
+                    _timeout = getConnector().getScheduler().schedule(this, delay, TimeUnit.MILLISECONDS);
+                    return;
+                }
+            }
+            flush();
+        }
+
+        private Callback flushed()
+        {
+            ByteBuffer flushed;
+            Callback waiter;
+            synchronized (this)
+            {
+                flushed = _flushing;
+                _flushing = null;
+                waiter = _waiter;
+                _waiter = null;
+            }
+            if (flushed!=null)
+                _bufferPool.release(flushed);
+            return waiter;
+        }
+
+        @Override
+        public void succeeded()
+        {
+            Callback waiter = flushed();
+            if (waiter!=null)
+                waiter.succeeded();
+        }
+
+        @Override
+        public void failed(Throwable x)
+        {
+            Callback waiter = flushed();
+            if (waiter!=null)
+                waiter.failed(x);
+            else
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Failed to write pipelined responses", x);
+                getEndPoint().close();
+            }
+        }
+
+        private void close()
+        {
+            ByteBuffer aggregate;
+            Scheduler.Task timeout;
+            synchronized (this)
+            {
+                aggregate = _aggregate;
+                _aggregate = null;
+                timeout = _timeout;
+                _timeout = null;
+            }
+            if (timeout!=null)
+                timeout.cancel();
+            if (aggregate!=null)
+                _bufferPool.release(aggregate);
+        }
+    }
 }
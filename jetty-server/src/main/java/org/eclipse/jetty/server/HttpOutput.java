@@ -22,6 +22,7 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritePendingException;
 import java.util.concurrent.atomic.AtomicReference;
@@ -756,6 +757,31 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         }
     }
 
+    /**
+     * Blocking send of a file region as the whole content.
+     *
+     * @param file     The file to send the content from
+     * @param position The position in the file of the first content byte
+     * @param count    The number of content bytes
+     * @throws IOException if the send fails
+     * @see #sendContent(FileChannel, long, long, Callback)
+     */
+    public void sendContent(FileChannel file, long position, long count) throws IOException
+    {
+        try (Blocker blocker = _writeBlocker.acquire())
+        {
+            sendContent(file, position, count, blocker);
+            blocker.block();
+        }
+        catch (Throwable failure)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug(failure);
+            abort(failure);
+            throw failure;
+        }
+    }
+
     /**
      * Asynchronous send of whole content.
      *
@@ -827,39 +853,8 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         if (LOG.isDebugEnabled())
             LOG.debug("sendContent(http={},{})", httpContent, callback);
 
-        if (BufferUtil.hasContent(_aggregate))
-        {
-            callback.failed(new IOException("cannot sendContent() after write()"));
-            return;
-        }
-        if (_channel.isCommitted())
-        {
-            callback.failed(new IOException("cannot sendContent(), output already committed"));
+        if (!pendSendContent(callback))
             return;
-        }
-
-        while (true)
-        {
-            switch (_state.get())
-            {
-                case OPEN:
-                    if (!_state.compareAndSet(OutputState.OPEN, OutputState.PENDING))
-                        continue;
-                    break;
-
-                case ERROR:
-                    callback.failed(new EofException(_onError));
-                    return;
-
-                case CLOSED:
-                    callback.failed(new EofException("Closed"));
-                    return;
-
-                default:
-                    throw new IllegalStateException();
-            }
-            break;
-        }
 
         ByteBuffer buffer = _channel.useDirectBuffers() ? httpContent.getDirectBuffer() : null;
         if (buffer == null)
@@ -877,7 +872,11 @@ public class HttpOutput extends ServletOutputStream implements Runnable
             if (rbc != null)
             {
                 // Close of the rbc is done by the async sendContent
-                sendContent(rbc, callback);
+                long length = httpContent.getContentLengthValue();
+                if (rbc instanceof FileChannel && length >= 0)
+                    sendContent((FileChannel)rbc, 0, length, Long.MAX_VALUE, callback);
+                else
+                    sendContent(rbc, callback);
                 return;
             }
 
@@ -897,6 +896,111 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         }
     }
 
+    /**
+     * <p>Asynchronous send of a file region as the whole content.</p>
+     * <p>If the response is not intercepted and the transport supports it, the file bytes are
+     * transferred to the network without being copied through user space buffers, otherwise
+     * they are read and written in buffers of size {@link #getBufferSize()}.</p>
+     * <p>The response content length must have been set to {@code count}.
+     * The file will be closed after sending all content.</p>
+     *
+     * @param file     The file to send the content from
+     * @param position The position in the file of the first content byte
+     * @param count    The number of content bytes
+     * @param callback The callback to use to notify success or failure
+     */
+    public void sendContent(FileChannel file, long position, long count, Callback callback)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("sendContent(file={},{},{},{})", file, position, count, callback);
+
+        if (!pendSendContent(callback))
+        {
+            close(file);
+            return;
+        }
+        sendContent(file, position, count, count, callback);
+    }
+
+    private void sendContent(FileChannel file, long position, long count, long limit, Callback callback)
+    {
+        if (_interceptor == _channel && _channel.transfer(file, position, count, new Callback.Nested(callback)
+        {
+            @Override
+            public void succeeded()
+            {
+                HttpOutput.this.close(file);
+                closed();
+                super.succeeded();
+            }
+
+            @Override
+            public void failed(Throwable x)
+            {
+                abort(x);
+                HttpOutput.this.close(file);
+                super.failed(x);
+            }
+        }))
+            return;
+
+        try
+        {
+            file.position(position);
+            new ReadableByteChannelWritingCB(file, limit, callback).iterate();
+        }
+        catch (Throwable x)
+        {
+            abort(x);
+            close(file);
+            callback.failed(x);
+        }
+    }
+
+    /**
+     * Moves the output to the PENDING state for a sendContent() operation.
+     *
+     * @param callback The callback to fail if the content cannot be sent
+     * @return true if the content can be sent
+     */
+    private boolean pendSendContent(Callback callback)
+    {
+        if (BufferUtil.hasContent(_aggregate))
+        {
+            callback.failed(new IOException("cannot sendContent() after write()"));
+            return false;
+        }
+        if (_channel.isCommitted())
+        {
+            callback.failed(new IOException("cannot sendContent(), output already committed"));
+            return false;
+        }
+
+        while (true)
+        {
+            switch (_state.get())
+            {
+                case OPEN:
+                    if (!_state.compareAndSet(OutputState.OPEN, OutputState.PENDING))
+                        continue;
+                    break;
+
+                case ERROR:
+                    callback.failed(new EofException(_onError));
+                    return false;
+
+                case CLOSED:
+                    callback.failed(new EofException("Closed"));
+                    return false;
+
+                default:
+                    throw new IllegalStateException();
+            }
+            break;
+        }
+        return true;
+    }
+
     public int getBufferSize()
     {
         return _bufferSize;
@@ -1312,12 +1416,19 @@ public class HttpOutput extends ServletOutputStream implements Runnable
     {
         private final ReadableByteChannel _in;
         private final ByteBuffer _buffer;
+        private long _remaining;
         private boolean _eof;
 
         public ReadableByteChannelWritingCB(ReadableByteChannel in, Callback callback)
+        {
+            this(in, Long.MAX_VALUE, callback);
+        }
+
+        public ReadableByteChannelWritingCB(ReadableByteChannel in, long count, Callback callback)
         {
             super(callback);
             _in = in;
+            _remaining = count;
             _buffer = _channel.getByteBufferPool().acquire(getBufferSize(), _channel.useDirectBuffers());
         }
 
@@ -1336,10 +1447,15 @@ public class HttpOutput extends ServletOutputStream implements Runnable
                 return Action.SUCCEEDED;
             }
 
-            // Read from stream until buffer full or EOF
+            // Read from stream until buffer full, EOF or all the content read
             BufferUtil.clearToFill(_buffer);
+            if (_buffer.remaining() > _remaining)
+                _buffer.limit(_buffer.position() + (int)_remaining);
             while (_buffer.hasRemaining() && !_eof)
                 _eof = (_in.read(_buffer)) < 0;
+            _remaining -= _buffer.position();
+            if (_remaining == 0)
+                _eof = true;
 
             // write what we have
             BufferUtil.flipToFlush(_buffer, 0);
@@ -19,6 +19,7 @@
 package org.eclipse.jetty.server;
 
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.util.Callback;
@@ -39,6 +40,27 @@ public interface HttpTransport
      */
     void send(MetaData.Response info, boolean head, ByteBuffer content, boolean lastContent, Callback callback);
 
+    /**
+     * @return true if {@link #transfer(MetaData.Response, FileChannel, long, long, Callback)} is supported by this transport
+     */
+    default boolean isTransferSupported()
+    {
+        return false;
+    }
+
+    /** Asynchronous call to send a whole response whose content is a region of a file over the transport,
+     * transferring the file bytes without copying them through user space buffers if possible.
+     * @param info The header info to send, which must have a content length equal to the count.
+     * @param file The file to transfer the content from, which is not closed by this method.
+     * @param position The position in the file of the first content byte.
+     * @param count The number of content bytes.
+     * @param callback The Callback instance that success or failure of the transfer is notified on
+     */
+    default void transfer(MetaData.Response info, FileChannel file, long position, long count, Callback callback)
+    {
+        callback.failed(new UnsupportedOperationException());
+    }
+
     /**
      * @return true if responses can be pushed over this transport
      */
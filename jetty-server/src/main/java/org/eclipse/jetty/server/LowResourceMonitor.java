@@ -18,14 +18,26 @@
 
 package org.eclipse.jetty.server;
 
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.eclipse.jetty.io.AbstractByteBufferPool;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.ManagedSelector;
+import org.eclipse.jetty.io.ssl.SslConnection;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.annotation.Name;
@@ -52,6 +64,15 @@ import org.eclipse.jetty.util.thread.ThreadPool;
  * greater than {@link #getMaxMemory()}</li>
  * <li>If {@link #setMaxConnections(int)} is non zero then low resources is dected if the total number
  * of connections exceeds {@link #getMaxConnections()}</li>
+ * <li>If {@link #setMaxQueueLatency(long)} is non zero then low resources is detected if a probe job
+ * waits in the server thread pool queue for longer than {@link #getMaxQueueLatency()}</li>
+ * <li>If {@link #setMaxSelectorLag(long)} is non zero then low resources is detected if a probe action
+ * submitted to a {@link ManagedSelector} of a {@link ServerConnector} waits for longer than
+ * {@link #getMaxSelectorLag()}</li>
+ * <li>If {@link #setMaxBufferPoolMemory(long)} is non zero then low resources is detected if the bytes
+ * retained by the {@link AbstractByteBufferPool}s of the connectors exceed {@link #getMaxBufferPoolMemory()}</li>
+ * <li>If {@link #setMaxGcTimePercent(int)} is non zero then low resources is detected if the percentage
+ * of the last period spent in garbage collection exceeds {@link #getMaxGcTimePercent()}</li>
  * </ul>
  * <p>
  * Once low resources state is detected, the cause is logged and all existing connections returned
@@ -60,11 +81,45 @@ import org.eclipse.jetty.util.thread.ThreadPool;
  * resources state persists for more than {@link #getMaxLowResourcesTime()}, then the
  * {@link #getLowResourcesIdleTimeout()} to all connections again.  Once the low resources state is
  * cleared, the idle timeout is reset to the connector default given by {@link Connector#getIdleTimeout()}.
+ * <p>
+ * The response to low resources is graded in {@link Stage}s. The first stage applies the low resources
+ * idle timeout as described above; if the low resources state persists for {@link #getStageEscalationTime()}
+ * (or one period if 0), the next stage is entered, up to {@link #getMaxStage()}, which by default is
+ * {@link Stage#IDLE_TIMEOUT}. The further stages are, cumulatively:
+ * <ul>
+ * <li>{@link Stage#SHED_KEEP_ALIVE}: persistent connections are disabled on the monitored HTTP/1 connectors,
+ * so that connections are closed after the current response</li>
+ * <li>{@link Stage#REFUSE_STREAMS}: the connections implementing {@link Listener}, such as HTTP/2
+ * connections, refuse new streams</li>
+ * <li>{@link Stage#PAUSE_ACCEPTS}: the monitored connectors stop accepting new connections</li>
+ * </ul>
+ * Once the low resources state is no longer detected, the stages are left one per period, so that
+ * the server does not oscillate between overload and normal operation.
  */
 @ManagedObject ("Monitor for low resource conditions and activate a low resource mode if detected")
 public class LowResourceMonitor extends AbstractLifeCycle
 {
     private static final Logger LOG = Log.getLogger(LowResourceMonitor.class);
+
+    /**
+     * The graded responses to low resources, each stage including the previous ones.
+     */
+    public enum Stage
+    {
+        NORMAL, IDLE_TIMEOUT, SHED_KEEP_ALIVE, REFUSE_STREAMS, PAUSE_ACCEPTS
+    }
+
+    /**
+     * <p>A {@link Connection} that reacts to the changes of the low resources {@link Stage}.</p>
+     */
+    public interface Listener
+    {
+        /**
+         * @param stage the new low resources stage
+         */
+        void onLowResourcesStage(Stage stage);
+    }
+
     private final Server _server;
     private Scheduler _scheduler;
     private Connector[] _monitoredConnectors;
@@ -74,10 +129,24 @@ public class LowResourceMonitor extends AbstractLifeCycle
     private int _lowResourcesIdleTimeout=1000;
     private int _maxLowResourcesTime=0;
     private boolean _monitorThreads=true;
+    private long _maxQueueLatency;
+    private long _maxSelectorLag;
+    private long _maxBufferPoolMemory;
+    private int _maxGcTimePercent;
+    private Stage _maxStage=Stage.IDLE_TIMEOUT;
+    private int _stageEscalationTime;
     private final AtomicBoolean _low = new AtomicBoolean();
+    private final Probe _threadPoolProbe = new Probe();
+    private final Map<ManagedSelector,Probe> _selectorProbes = new HashMap<>();
+    private final Map<HttpConfiguration,Boolean> _persistentConnections = new HashMap<>();
+    private final Set<AbstractConnector> _pausedConnectors = new HashSet<>();
+    private volatile Stage _stage=Stage.NORMAL;
     private String _cause;
     private String _reasons;
     private long _lowStarted;
+    private long _stageStarted;
+    private long _lastGcTime=-1;
+    private long _lastGcCheck;
 
     private final Runnable _monitor = new Runnable()
     {
@@ -219,6 +288,112 @@ public class LowResourceMonitor extends AbstractLifeCycle
         _maxLowResourcesTime = maxLowResourcesTimeMS;
     }
 
+    @ManagedAttribute("The max time in ms that a probe job can wait in the server thread pool queue before low resources is triggered")
+    public long getMaxQueueLatency()
+    {
+        return _maxQueueLatency;
+    }
+
+    /**
+     * @param maxQueueLatencyMS The max time in ms a job waits in the server thread pool queue before low resources is triggered, or 0 to not monitor it
+     */
+    public void setMaxQueueLatency(long maxQueueLatencyMS)
+    {
+        _maxQueueLatency = maxQueueLatencyMS;
+    }
+
+    @ManagedAttribute("The max time in ms that a probe action can wait for a selector before low resources is triggered")
+    public long getMaxSelectorLag()
+    {
+        return _maxSelectorLag;
+    }
+
+    /**
+     * @param maxSelectorLagMS The max time in ms an action waits to be run by a selector before low resources is triggered, or 0 to not monitor it
+     */
+    public void setMaxSelectorLag(long maxSelectorLagMS)
+    {
+        _maxSelectorLag = maxSelectorLagMS;
+    }
+
+    @ManagedAttribute("The max bytes retained by the connectors buffer pools before low resources is triggered")
+    public long getMaxBufferPoolMemory()
+    {
+        return _maxBufferPoolMemory;
+    }
+
+    /**
+     * @param maxBufferPoolMemory The max bytes retained by the buffer pools before low resources is triggered, or 0 to not monitor it
+     */
+    public void setMaxBufferPoolMemory(long maxBufferPoolMemory)
+    {
+        _maxBufferPoolMemory = maxBufferPoolMemory;
+    }
+
+    @ManagedAttribute("The max percentage of a period spent in garbage collection before low resources is triggered")
+    public int getMaxGcTimePercent()
+    {
+        return _maxGcTimePercent;
+    }
+
+    /**
+     * @param maxGcTimePercent The max percentage of a period spent in garbage collection before low resources is triggered, or 0 to not monitor it
+     */
+    public void setMaxGcTimePercent(int maxGcTimePercent)
+    {
+        _maxGcTimePercent = maxGcTimePercent;
+    }
+
+    @ManagedAttribute("The current low resources stage")
+    public String getStage()
+    {
+        return _stage.name();
+    }
+
+    /**
+     * @return the current low resources stage
+     */
+    public Stage getLowResourcesStage()
+    {
+        return _stage;
+    }
+
+    @ManagedAttribute("The highest low resources stage that can be entered")
+    public String getMaxStage()
+    {
+        return _maxStage.name();
+    }
+
+    /**
+     * @param maxStage The name of the highest {@link Stage} that can be entered
+     */
+    public void setMaxStage(String maxStage)
+    {
+        setMaxStage(Stage.valueOf(maxStage));
+    }
+
+    /**
+     * @param maxStage The highest {@link Stage} that can be entered
+     */
+    public void setMaxStage(Stage maxStage)
+    {
+        _maxStage = maxStage;
+    }
+
+    @ManagedAttribute("The time in ms a low resources stage persists before the next stage is entered, or 0 for one period")
+    public int getStageEscalationTime()
+    {
+        return _stageEscalationTime;
+    }
+
+    /**
+     * @param stageEscalationTimeMS The time in ms a low resources stage persists before the next stage is entered, or 0 for one period
+     */
+    public void setStageEscalationTime(int stageEscalationTimeMS)
+    {
+        _stageEscalationTime = stageEscalationTimeMS;
+    }
+
     @Override
     protected void doStart() throws Exception
     {
@@ -240,6 +415,10 @@ public class LowResourceMonitor extends AbstractLifeCycle
         if (_scheduler instanceof LRMScheduler)
             _scheduler.stop();
         super.doStop();
+        // Do not leave connectors paused or without persistent connections.
+        if (_stage.compareTo(Stage.IDLE_TIMEOUT)>0)
+            setStage(Stage.IDLE_TIMEOUT);
+        _selectorProbes.clear();
     }
 
     protected Connector[] getMonitoredOrServerConnectors()
@@ -291,6 +470,63 @@ public class LowResourceMonitor extends AbstractLifeCycle
             cause+="M";
         }
 
+        long now=System.nanoTime();
+
+        if (_maxQueueLatency>0)
+        {
+            long latency=TimeUnit.NANOSECONDS.toMillis(_threadPoolProbe.getLag(now));
+            if (latency>_maxQueueLatency)
+            {
+                reasons=low(reasons,"Max queue latency exceeded: "+latency+">"+_maxQueueLatency);
+                cause+="Q";
+            }
+            _threadPoolProbe.submit(serverThreads);
+        }
+
+        if (_maxSelectorLag>0)
+        {
+            long maxLag=0;
+            for (ManagedSelector selector : getMonitoredSelectors())
+            {
+                Probe probe=_selectorProbes.computeIfAbsent(selector,s->new Probe());
+                maxLag=Math.max(maxLag,probe.getLag(now));
+                probe.submit(selector);
+            }
+            long lag=TimeUnit.NANOSECONDS.toMillis(maxLag);
+            if (lag>_maxSelectorLag)
+            {
+                reasons=low(reasons,"Max selector lag exceeded: "+lag+">"+_maxSelectorLag);
+                cause+="L";
+            }
+        }
+
+        if (_maxBufferPoolMemory>0)
+        {
+            long retained=getBufferPoolMemory();
+            if (retained>_maxBufferPoolMemory)
+            {
+                reasons=low(reasons,"Max buffer pool memory exceeded: "+retained+">"+_maxBufferPoolMemory);
+                cause+="B";
+            }
+        }
+
+        if (_maxGcTimePercent>0)
+        {
+            long gcTime=getGcTime();
+            if (_lastGcTime>=0)
+            {
+                long elapsed=TimeUnit.NANOSECONDS.toMillis(now-_lastGcCheck);
+                long percent=elapsed>0?100*(gcTime-_lastGcTime)/elapsed:0;
+                if (percent>_maxGcTimePercent)
+                {
+                    reasons=low(reasons,"Max GC time exceeded: "+percent+"%>"+_maxGcTimePercent+"%");
+                    cause+="G";
+                }
+            }
+            _lastGcTime=gcTime;
+            _lastGcCheck=now;
+        }
+
         if (reasons!=null)
         {
             // Log the reasons if there is any change in the cause
@@ -305,24 +541,169 @@ public class LowResourceMonitor extends AbstractLifeCycle
             {
                 _reasons=reasons;
                 _lowStarted=System.currentTimeMillis();
-                setLowResources();
+                setStage(Stage.IDLE_TIMEOUT);
+            }
+            else
+            {
+                _reasons=reasons;
+                // Too long in the current stage?
+                if (_stage.compareTo(_maxStage)<0 && TimeUnit.NANOSECONDS.toMillis(now-_stageStarted)>=_stageEscalationTime)
+                    setStage(Stage.values()[_stage.ordinal()+1]);
             }
 
             // Too long in low resources state?
             if (_maxLowResourcesTime>0 && (System.currentTimeMillis()-_lowStarted)>_maxLowResourcesTime)
                 setLowResources();
         }
-        else
+        else if (_low.get())
         {
-            if (_low.compareAndSet(true,false))
+            Stage stage=Stage.values()[_stage.ordinal()-1];
+            if (stage==Stage.NORMAL && _low.compareAndSet(true,false))
             {
                 LOG.info("Low Resources cleared");
                 _reasons=null;
                 _lowStarted=0;
                 _cause=null;
-                clearLowResources();
             }
+            setStage(stage);
         }
+
+        // Connections opened since the stage was entered must also refuse new streams.
+        if (_stage.compareTo(Stage.REFUSE_STREAMS)>=0)
+            notifyListeners(_stage);
+    }
+
+    private void setStage(Stage stage)
+    {
+        Stage old=_stage;
+        if (old==stage)
+            return;
+        _stage=stage;
+        _stageStarted=System.nanoTime();
+        if (stage.compareTo(Stage.IDLE_TIMEOUT)>0 || old.compareTo(Stage.IDLE_TIMEOUT)>0)
+            LOG.info("Low Resources stage {}",stage);
+
+        if (entered(old,stage,Stage.IDLE_TIMEOUT))
+            setLowResources();
+        else if (left(old,stage,Stage.IDLE_TIMEOUT))
+            clearLowResources();
+
+        if (entered(old,stage,Stage.SHED_KEEP_ALIVE))
+            shedKeepAlive();
+        else if (left(old,stage,Stage.SHED_KEEP_ALIVE))
+            restoreKeepAlive();
+
+        if (entered(old,stage,Stage.PAUSE_ACCEPTS))
+            pauseAccepts();
+        else if (left(old,stage,Stage.PAUSE_ACCEPTS))
+            resumeAccepts();
+
+        notifyListeners(stage);
+    }
+
+    private void notifyListeners(Stage stage)
+    {
+        for(Connector connector : getMonitoredOrServerConnectors())
+        {
+            for (EndPoint endPoint : connector.getConnectedEndPoints())
+            {
+                Connection connection=endPoint.getConnection();
+                // Protocols such as HTTP/2 over TLS sit on the decrypted end point.
+                while (connection instanceof SslConnection)
+                    connection=((SslConnection)connection).getDecryptedEndPoint().getConnection();
+                if (connection instanceof Listener)
+                    ((Listener)connection).onLowResourcesStage(stage);
+            }
+        }
+    }
+
+    private static boolean entered(Stage old, Stage stage, Stage threshold)
+    {
+        return old.compareTo(threshold)<0 && stage.compareTo(threshold)>=0;
+    }
+
+    private static boolean left(Stage old, Stage stage, Stage threshold)
+    {
+        return old.compareTo(threshold)>=0 && stage.compareTo(threshold)<0;
+    }
+
+    protected void shedKeepAlive()
+    {
+        for(Connector connector : getMonitoredOrServerConnectors())
+        {
+            for (ConnectionFactory factory : connector.getConnectionFactories())
+            {
+                if (factory instanceof HttpConfiguration.ConnectionFactory)
+                {
+                    HttpConfiguration configuration=((HttpConfiguration.ConnectionFactory)factory).getHttpConfiguration();
+                    if (!_persistentConnections.containsKey(configuration))
+                    {
+                        _persistentConnections.put(configuration,configuration.isPersistentConnectionsEnabled());
+                        configuration.setPersistentConnectionsEnabled(false);
+                    }
+                }
+            }
+        }
+    }
+
+    protected void restoreKeepAlive()
+    {
+        for (Map.Entry<HttpConfiguration,Boolean> entry : _persistentConnections.entrySet())
+            entry.getKey().setPersistentConnectionsEnabled(entry.getValue());
+        _persistentConnections.clear();
+    }
+
+    protected void pauseAccepts()
+    {
+        for(Connector connector : getMonitoredOrServerConnectors())
+        {
+            if (connector instanceof AbstractConnector)
+            {
+                AbstractConnector abstractConnector=(AbstractConnector)connector;
+                if (abstractConnector.isAccepting() && _pausedConnectors.add(abstractConnector))
+                    abstractConnector.setAccepting(false);
+            }
+        }
+    }
+
+    protected void resumeAccepts()
+    {
+        for (AbstractConnector connector : _pausedConnectors)
+            connector.setAccepting(true);
+        _pausedConnectors.clear();
+    }
+
+    private Collection<ManagedSelector> getMonitoredSelectors()
+    {
+        Set<ManagedSelector> selectors=new HashSet<>();
+        for(Connector connector : getMonitoredOrServerConnectors())
+        {
+            if (connector instanceof ServerConnector)
+                selectors.addAll(((ServerConnector)connector).getSelectorManager().getBeans(ManagedSelector.class));
+        }
+        _selectorProbes.keySet().retainAll(selectors);
+        return selectors;
+    }
+
+    private long getBufferPoolMemory()
+    {
+        Set<ByteBufferPool> pools=new HashSet<>();
+        long retained=0;
+        for(Connector connector : getMonitoredOrServerConnectors())
+        {
+            ByteBufferPool pool=connector.getByteBufferPool();
+            if (pool instanceof AbstractByteBufferPool && pools.add(pool))
+                retained+=((AbstractByteBufferPool)pool).getHeapMemory()+((AbstractByteBufferPool)pool).getDirectMemory();
+        }
+        return retained;
+    }
+
+    private static long getGcTime()
+    {
+        long time=0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            time+=Math.max(0,gc.getCollectionTime());
+        return time;
     }
 
     protected void setLowResources()
@@ -354,4 +735,52 @@ public class LowResourceMonitor extends AbstractLifeCycle
     private static class LRMScheduler extends ScheduledExecutorScheduler
     {
     }
+
+    /**
+     * A job that measures how long it waits before being run.
+     */
+    private static class Probe implements Runnable
+    {
+        private volatile long _submitted;
+        private volatile long _lag;
+
+        private void submit(Executor executor)
+        {
+            // Do not submit again while the previous probe is still waiting.
+            if (_submitted!=0)
+                return;
+            _submitted=System.nanoTime();
+            try
+            {
+                executor.execute(this);
+            }
+            catch (RejectedExecutionException e)
+            {
+                LOG.ignore(e);
+                _submitted=0;
+            }
+        }
+
+        private void submit(ManagedSelector selector)
+        {
+            if (_submitted!=0)
+                return;
+            _submitted=System.nanoTime();
+            selector.submit(this);
+        }
+
+        private long getLag(long now)
+        {
+            long submitted=_submitted;
+            long lag=_lag;
+            return submitted==0?lag:Math.max(lag,now-submitted);
+        }
+
+        @Override
+        public void run()
+        {
+            _lag=System.nanoTime()-_submitted;
+            _submitted=0;
+        }
+    }
 }
@@ -24,6 +24,7 @@ import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadPendingException;
 import java.nio.channels.WritePendingException;
 import java.nio.charset.StandardCharsets;
@@ -678,6 +679,18 @@ public class ProxyConnectionFactory extends AbstractConnectionFactory
             _endp.write(callback,buffers);
         }
 
+        @Override
+        public boolean isTransferSupported()
+        {
+            return _endp.isTransferSupported();
+        }
+
+        @Override
+        public void transfer(Callback callback, FileChannel file, long position, long count, ByteBuffer... buffers) throws WritePendingException
+        {
+            _endp.transfer(callback,file,position,count,buffers);
+        }
+
         public Connection getConnection()
         {
             return _endp.getConnection();
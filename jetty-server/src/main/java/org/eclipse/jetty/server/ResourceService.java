@@ -27,6 +27,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.List;
@@ -757,7 +759,21 @@ public class ResourceService
                     response.addDateHeader(HttpHeader.DATE.asString(),System.currentTimeMillis());
                 response.setHeader(HttpHeader.CONTENT_RANGE.asString(),
                         singleSatisfiableRange.toHeaderRangeString(content_length));
-                content.getResource().writeTo(out,singleSatisfiableRange.getFirst(content_length),singleLength);
+                long first = singleSatisfiableRange.getFirst(content_length);
+
+                // do a bypass write of the file region if we can
+                if (!written && out instanceof HttpOutput)
+                {
+                    ReadableByteChannel channel = content.getReadableByteChannel();
+                    if (channel instanceof FileChannel)
+                    {
+                        ((HttpOutput)out).sendContent((FileChannel)channel,first,singleLength);
+                        return true;
+                    }
+                    if (channel!=null)
+                        channel.close();
+                }
+                content.getResource().writeTo(out,first,singleLength);
                 return true;
             }
 
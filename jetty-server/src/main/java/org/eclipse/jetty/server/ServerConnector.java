@@ -40,7 +40,8 @@ import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.ManagedSelector;
 import org.eclipse.jetty.io.SelectorManager;
-import org.eclipse.jetty.io.SocketChannelEndPoint;
+import org.eclipse.jetty.io.SelectorTransport;
+import org.eclipse.jetty.io.WriteCoalescer;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
@@ -88,6 +89,8 @@ public class ServerConnector extends AbstractNetworkConnector
     private volatile int _acceptQueueSize = 0;
     private volatile boolean _reuseAddress = true;
     private volatile int _lingerTime = -1;
+    private volatile int _writeCoalescingThreshold = -1;
+    private volatile WriteCoalescer _writeCoalescer;
 
     /**
      * <p>Construct a ServerConnector with a private instance of {@link HttpConnectionFactory} as the only factory.</p>
@@ -235,6 +238,13 @@ public class ServerConnector extends AbstractNetworkConnector
     @Override
     protected void doStart() throws Exception
     {
+        int threshold = _writeCoalescingThreshold;
+        if (threshold>0)
+        {
+            _writeCoalescer = new WriteCoalescer(getByteBufferPool(), threshold, Math.max(4096, 2 * threshold));
+            addBean(_writeCoalescer);
+        }
+
         super.doStart();
 
         if (getAcceptors()==0)
@@ -244,6 +254,14 @@ public class ServerConnector extends AbstractNetworkConnector
         }
     }
 
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+        removeBean(_writeCoalescer);
+        _writeCoalescer = null;
+    }
+
     @Override
     public boolean isOpen()
     {
@@ -417,6 +435,26 @@ public class ServerConnector extends AbstractNetworkConnector
         return _acceptChannel;
     }
 
+    /**
+     * @return the transport that creates the selectors and endpoints of this connector
+     */
+    public SelectorTransport getSelectorTransport()
+    {
+        return _manager.getSelectorTransport();
+    }
+
+    /**
+     * <p>Sets the transport that creates the selectors and endpoints of this connector,
+     * for example an {@link org.eclipse.jetty.io.ArraySelectedKeysTransport}.</p>
+     * <p>The transport must be set before this connector is started.</p>
+     *
+     * @param transport the selector transport, or null for the default JDK NIO transport
+     */
+    public void setSelectorTransport(SelectorTransport transport)
+    {
+        _manager.setSelectorTransport(transport);
+    }
+
     @Override
     @ManagedAttribute("local port")
     public int getLocalPort()
@@ -426,8 +464,9 @@ public class ServerConnector extends AbstractNetworkConnector
 
     protected ChannelEndPoint newEndPoint(SocketChannel channel, ManagedSelector selectSet, SelectionKey key) throws IOException
     {
-        SocketChannelEndPoint endpoint = new SocketChannelEndPoint(channel, selectSet, key, getScheduler());
+        ChannelEndPoint endpoint = _manager.getSelectorTransport().newEndPoint(channel, selectSet, key, getScheduler());
         endpoint.setIdleTimeout(getIdleTimeout());
+        endpoint.setWriteCoalescer(_writeCoalescer);
         return endpoint;
     }
 
@@ -467,6 +506,28 @@ public class ServerConnector extends AbstractNetworkConnector
         _acceptQueueSize = acceptQueueSize;
     }
 
+    /**
+     * @return the max remaining bytes of the buffers that are coalesced by writes, or -1 if writes are not coalesced
+     */
+    @ManagedAttribute("The max size of the buffers coalesced by writes, or -1 to not coalesce")
+    public int getWriteCoalescingThreshold()
+    {
+        return _writeCoalescingThreshold;
+    }
+
+    /**
+     * <p>Sets the max remaining bytes of the buffers that the endpoints of this connector coalesce
+     * into a pooled aggregate buffer when they perform a gathering write.</p>
+     * <p>This setting must be set before this connector is started.</p>
+     *
+     * @param threshold the max size of the coalesced buffers, or -1 to not coalesce writes
+     * @see WriteCoalescer
+     */
+    public void setWriteCoalescingThreshold(int threshold)
+    {
+        _writeCoalescingThreshold = threshold;
+    }
+
     /**
      * @return whether the server socket reuses addresses
      * @see ServerSocket#getReuseAddress()
@@ -28,6 +28,7 @@ import org.eclipse.jetty.io.AbstractConnection;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.ssl.SslConnection;
+import org.eclipse.jetty.io.ssl.SslHandshakeExecutor;
 import org.eclipse.jetty.io.ssl.SslHandshakeListener;
 import org.eclipse.jetty.util.annotation.Name;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
@@ -37,6 +38,7 @@ public class SslConnectionFactory extends AbstractConnectionFactory
 {
     private final SslContextFactory _sslContextFactory;
     private final String _nextProtocol;
+    private SslHandshakeExecutor _handshakeExecutor;
 
     public SslConnectionFactory()
     {
@@ -66,6 +68,25 @@ public class SslConnectionFactory extends AbstractConnectionFactory
         return _nextProtocol;
     }
 
+    public SslHandshakeExecutor getHandshakeExecutor()
+    {
+        return _handshakeExecutor;
+    }
+
+    /**
+     * <p>Sets the executor that runs the CPU intensive tasks of the TLS handshakes,
+     * so that they do not delay the processing of the established connections.</p>
+     *
+     * @param handshakeExecutor the handshake executor, or null to run the handshake
+     * tasks in the threads that read from the connections
+     * @see SslConnection#setHandshakeExecutor(SslHandshakeExecutor)
+     */
+    public void setHandshakeExecutor(SslHandshakeExecutor handshakeExecutor)
+    {
+        updateBean(_handshakeExecutor, handshakeExecutor);
+        _handshakeExecutor = handshakeExecutor;
+    }
+
     @Override
     protected void doStart() throws Exception
     {
@@ -88,6 +109,7 @@ public class SslConnectionFactory extends AbstractConnectionFactory
         SslConnection sslConnection = newSslConnection(connector, endPoint, engine);
         sslConnection.setRenegotiationAllowed(_sslContextFactory.isRenegotiationAllowed());
         sslConnection.setRenegotiationLimit(_sslContextFactory.getRenegotiationLimit());
+        sslConnection.setHandshakeExecutor(_handshakeExecutor);
         configure(sslConnection, connector, endPoint);
 
         ConnectionFactory next = connector.getConnectionFactory(_nextProtocol);
@@ -0,0 +1,581 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.handler;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.annotation.Name;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+import org.eclipse.jetty.util.thread.Locker;
+
+/**
+ * <p>Handler to limit the number of concurrent requests, with a limit that adapts to the observed latency.</p>
+ * <p>Each request holds a permit while it is handled, including any asynchronous processing.
+ * The number of permits is the limit computed by an {@link Algorithm} from the latency and
+ * the concurrency of the completed requests:</p>
+ * <ul>
+ * <li>{@link GradientAlgorithm}, the default, compares the latency of each request to a long term
+ * average and shrinks the limit when the latency grows, for example because a downstream
+ * dependency slows down, and grows it again when the latency recovers;</li>
+ * <li>{@link AIMDAlgorithm} increases the limit additively while it is used, and decreases it
+ * multiplicatively when a request takes longer than a timeout.</li>
+ * </ul>
+ * <p>Requests in excess of the limit are asynchronously suspended, up to {@link #getMaxQueued()} requests,
+ * until a permit is available or {@link #getMaxQueueTime()} elapses; requests that cannot be queued
+ * or that time out in the queue are rejected with a 503 status.</p>
+ */
+@ManagedObject("Limits the concurrent requests with an adaptive limit")
+public class ConcurrencyLimitHandler extends HandlerWrapper
+{
+    private static final Logger LOG = Log.getLogger(ConcurrencyLimitHandler.class);
+
+    private final static String PERMIT = "o.e.j.s.h.CLH.PERMIT";
+    private final static String REJECTED = "o.e.j.s.h.CLH.REJECTED";
+
+    private final Locker _locker = new Locker();
+    private final Deque<QueueListener> _queue = new ArrayDeque<>();
+    private final LongAdder _rejected = new LongAdder();
+    private final LongAdder _requests = new LongAdder();
+    private final Algorithm _algorithm;
+    private int _inflight;
+    private int _maxQueued = 1024;
+    private long _maxQueueTime = 30000;
+
+    public ConcurrencyLimitHandler()
+    {
+        this(new GradientAlgorithm());
+    }
+
+    public ConcurrencyLimitHandler(@Name("algorithm") Algorithm algorithm)
+    {
+        _algorithm = algorithm;
+    }
+
+    public Algorithm getAlgorithm()
+    {
+        return _algorithm;
+    }
+
+    @ManagedAttribute("The current concurrency limit")
+    public int getLimit()
+    {
+        return _algorithm.getLimit();
+    }
+
+    @ManagedAttribute("The number of requests holding a permit")
+    public int getInflight()
+    {
+        try (Locker.Lock lock = _locker.lock())
+        {
+            return _inflight;
+        }
+    }
+
+    @ManagedAttribute("The number of requests waiting for a permit")
+    public int getQueued()
+    {
+        try (Locker.Lock lock = _locker.lock())
+        {
+            return _queue.size();
+        }
+    }
+
+    @ManagedAttribute("The number of requests rejected")
+    public long getRejected()
+    {
+        return _rejected.sum();
+    }
+
+    @ManagedAttribute("The number of requests completed with a permit")
+    public long getRequests()
+    {
+        return _requests.sum();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        _rejected.reset();
+        _requests.reset();
+    }
+
+    @ManagedAttribute("The max number of requests waiting for a permit")
+    public int getMaxQueued()
+    {
+        return _maxQueued;
+    }
+
+    /**
+     * @param maxQueued the max number of requests waiting for a permit, or 0 to reject all the requests in excess of the limit
+     */
+    public void setMaxQueued(int maxQueued)
+    {
+        _maxQueued = maxQueued;
+    }
+
+    @ManagedAttribute("The max time in ms a request waits for a permit")
+    public long getMaxQueueTime()
+    {
+        return _maxQueueTime;
+    }
+
+    /**
+     * @param maxQueueTime the max time in ms a request waits for a permit before being rejected
+     */
+    public void setMaxQueueTime(long maxQueueTime)
+    {
+        _maxQueueTime = maxQueueTime;
+    }
+
+    @Override
+    public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+    {
+        if (baseRequest.getAttribute(REJECTED)!=null)
+        {
+            baseRequest.removeAttribute(REJECTED);
+            reject(baseRequest,response);
+            return;
+        }
+
+        Permit permit = (Permit)baseRequest.getAttribute(PERMIT);
+        if (permit==null)
+        {
+            try (Locker.Lock lock = _locker.lock())
+            {
+                if (_inflight<_algorithm.getLimit())
+                {
+                    permit = new Permit();
+                    _inflight++;
+                }
+                else if (_queue.size()<_maxQueued)
+                {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Queued {}",baseRequest);
+                    AsyncContext async = baseRequest.startAsync();
+                    async.setTimeout(_maxQueueTime);
+                    QueueListener queued = new QueueListener(baseRequest,async);
+                    async.addListener(queued);
+                    _queue.addLast(queued);
+                    return;
+                }
+            }
+            if (permit==null)
+            {
+                reject(baseRequest,response);
+                return;
+            }
+            baseRequest.setAttribute(PERMIT,permit);
+        }
+
+        try
+        {
+            super.handle(target,baseRequest,request,response);
+        }
+        finally
+        {
+            if (baseRequest.isAsyncStarted())
+            {
+                // Hold the permit until the asynchronous processing completes.
+                if (permit._listening.compareAndSet(false,true))
+                    baseRequest.getAsyncContext().addListener(permit);
+            }
+            else
+            {
+                release(permit);
+            }
+        }
+    }
+
+    protected void reject(Request baseRequest, HttpServletResponse response) throws IOException
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Rejected {}",baseRequest);
+        _rejected.increment();
+        baseRequest.setHandled(true);
+        if (!response.isCommitted())
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    }
+
+    private void release(Permit permit)
+    {
+        if (!permit._released.compareAndSet(false,true))
+            return;
+
+        long latency = System.nanoTime()-permit._started;
+        _requests.increment();
+        List<QueueListener> granted = null;
+        try (Locker.Lock lock = _locker.lock())
+        {
+            _algorithm.update(latency,_inflight);
+            _inflight--;
+            while (_inflight<_algorithm.getLimit())
+            {
+                QueueListener queued = _queue.pollFirst();
+                if (queued==null)
+                    break;
+                if (!queued.grant())
+                    continue;
+                _inflight++;
+                if (granted==null)
+                    granted = new ArrayList<>();
+                granted.add(queued);
+            }
+        }
+
+        if (granted!=null)
+        {
+            for (QueueListener queued : granted)
+                queued.dispatch();
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,limit=%d,inflight=%d,queued=%d}",getClass().getSimpleName(),hashCode(),getState(),getLimit(),getInflight(),getQueued());
+    }
+
+    private class Permit implements AsyncListener
+    {
+        private final long _started = System.nanoTime();
+        private final AtomicBoolean _listening = new AtomicBoolean();
+        private final AtomicBoolean _released = new AtomicBoolean();
+
+        @Override
+        public void onComplete(AsyncEvent event) throws IOException
+        {
+            release(this);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException
+        {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) throws IOException
+        {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) throws IOException
+        {
+            // Keep listening across asynchronous cycles.
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+    private enum QueueState
+    {
+        QUEUED, GRANTED, EXPIRED, DISPATCHED
+    }
+
+    /**
+     * <p>A queued request, that is either granted a permit by {@link #release(Permit)}
+     * or expired by its timeout or completion; the state transitions ensure that
+     * exactly one side wins, and that a granted request is dispatched exactly once.</p>
+     */
+    private class QueueListener implements AsyncListener
+    {
+        private final AtomicReference<QueueState> _state = new AtomicReference<>(QueueState.QUEUED);
+        private final Request _request;
+        private final AsyncContext _async;
+        private volatile Permit _permit;
+
+        private QueueListener(Request request, AsyncContext async)
+        {
+            _request = request;
+            _async = async;
+        }
+
+        /**
+         * @return whether the permit was granted, false if the request has expired
+         */
+        private boolean grant()
+        {
+            _permit = new Permit();
+            return _state.compareAndSet(QueueState.QUEUED,QueueState.GRANTED);
+        }
+
+        private void dispatch()
+        {
+            if (!_state.compareAndSet(QueueState.GRANTED,QueueState.DISPATCHED))
+                return;
+            Permit permit = _permit;
+            try
+            {
+                _request.setAttribute(PERMIT,permit);
+                _async.dispatch();
+            }
+            catch (Throwable x)
+            {
+                LOG.warn("Could not dispatch {}",_request,x);
+                release(permit);
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException
+        {
+            if (_state.compareAndSet(QueueState.QUEUED,QueueState.EXPIRED))
+            {
+                try (Locker.Lock lock = _locker.lock())
+                {
+                    _queue.remove(this);
+                }
+                _request.setAttribute(REJECTED,Boolean.TRUE);
+                _async.dispatch();
+            }
+            else
+            {
+                // The permit was granted concurrently, dispatch now as
+                // the request must be dispatched before the timeout returns.
+                dispatch();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) throws IOException
+        {
+            if (_state.compareAndSet(QueueState.QUEUED,QueueState.EXPIRED))
+            {
+                try (Locker.Lock lock = _locker.lock())
+                {
+                    _queue.remove(this);
+                }
+            }
+            else if (_state.compareAndSet(QueueState.GRANTED,QueueState.EXPIRED))
+            {
+                // Release the permit granted but never used.
+                release(_permit);
+            }
+        }
+
+        @Override
+        public void onError(AsyncEvent event) throws IOException
+        {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) throws IOException
+        {
+        }
+    }
+
+    /**
+     * <p>An algorithm that computes the concurrency limit from the completed requests.</p>
+     * <p>Implementations are called with the handler lock held, so they need not be thread safe,
+     * except for {@link #getLimit()} that may also be called to report the limit.</p>
+     */
+    public interface Algorithm
+    {
+        /**
+         * @return the current concurrency limit
+         */
+        int getLimit();
+
+        /**
+         * @param latency the nanoseconds the completed request held its permit
+         * @param inflight the number of requests holding a permit, including the completed one
+         */
+        void update(long latency, int inflight);
+    }
+
+    /**
+     * <p>An additive increase, multiplicative decrease algorithm.</p>
+     * <p>The limit is increased by one when a request completes within the timeout while at least
+     * half of the permits are used, and multiplied by the backoff ratio when a request takes longer
+     * than the timeout.</p>
+     */
+    @ManagedObject("Additive increase, multiplicative decrease concurrency limit")
+    public static class AIMDAlgorithm implements Algorithm
+    {
+        private final int _minLimit;
+        private final int _maxLimit;
+        private final double _backoffRatio;
+        private final long _timeout;
+        private volatile int _limit;
+
+        public AIMDAlgorithm()
+        {
+            this(20,1,1000,0.9,5000);
+        }
+
+        /**
+         * @param initialLimit the initial limit
+         * @param minLimit the min limit
+         * @param maxLimit the max limit
+         * @param backoffRatio the ratio the limit is multiplied by when a request times out, between 0.5 and 1
+         * @param timeout the time in ms after which a request is considered as timed out
+         */
+        public AIMDAlgorithm(@Name("initialLimit") int initialLimit, @Name("minLimit") int minLimit, @Name("maxLimit") int maxLimit, @Name("backoffRatio") double backoffRatio, @Name("timeout") long timeout)
+        {
+            if (minLimit<=0 || maxLimit<minLimit)
+                throw new IllegalArgumentException("Invalid limits "+minLimit+"-"+maxLimit);
+            if (backoffRatio<0.5 || backoffRatio>=1.0)
+                throw new IllegalArgumentException("Invalid backoff ratio "+backoffRatio);
+            _minLimit = minLimit;
+            _maxLimit = maxLimit;
+            _backoffRatio = backoffRatio;
+            _timeout = TimeUnit.MILLISECONDS.toNanos(timeout);
+            _limit = Math.max(minLimit,Math.min(maxLimit,initialLimit));
+        }
+
+        @Override
+        @ManagedAttribute("The current concurrency limit")
+        public int getLimit()
+        {
+            return _limit;
+        }
+
+        @Override
+        public void update(long latency, int inflight)
+        {
+            int limit = _limit;
+            if (latency>_timeout)
+                limit = (int)(limit*_backoffRatio);
+            else if (inflight*2>=limit)
+                limit = limit+1;
+            _limit = Math.max(_minLimit,Math.min(_maxLimit,limit));
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s{limit=%d,%d-%d}",getClass().getSimpleName(),_limit,_minLimit,_maxLimit);
+        }
+    }
+
+    /**
+     * <p>A gradient algorithm that adjusts the limit with the ratio between a long term average
+     * of the latency and the latency of the last request.</p>
+     * <p>When the latency grows above the long term average times the tolerance, the limit shrinks
+     * proportionally (by half at most per update); otherwise the limit grows by the square root of
+     * the limit, to allow for some queueing. The changes are smoothed, and the long term average
+     * drifts towards recent latencies when they are much lower, so that the algorithm recovers
+     * after a latency increase that lasted long enough to be averaged in.</p>
+     */
+    @ManagedObject("Gradient concurrency limit")
+    public static class GradientAlgorithm implements Algorithm
+    {
+        private final int _minLimit;
+        private final int _maxLimit;
+        private final double _tolerance;
+        private final double _smoothing;
+        private final int _window;
+        private double _longLatency;
+        private double _estimatedLimit;
+        private volatile int _limit;
+
+        public GradientAlgorithm()
+        {
+            this(20,1,1000,1.5,0.2,600);
+        }
+
+        /**
+         * @param initialLimit the initial limit
+         * @param minLimit the min limit
+         * @param maxLimit the max limit
+         * @param tolerance the ratio to the long term latency above which the limit shrinks, at least 1
+         * @param smoothing the weight of a new estimate in the limit, between 0 and 1
+         * @param window the number of requests of the long term latency average
+         */
+        public GradientAlgorithm(@Name("initialLimit") int initialLimit, @Name("minLimit") int minLimit, @Name("maxLimit") int maxLimit, @Name("tolerance") double tolerance, @Name("smoothing") double smoothing, @Name("window") int window)
+        {
+            if (minLimit<=0 || maxLimit<minLimit)
+                throw new IllegalArgumentException("Invalid limits "+minLimit+"-"+maxLimit);
+            if (tolerance<1.0)
+                throw new IllegalArgumentException("Invalid tolerance "+tolerance);
+            if (smoothing<=0.0 || smoothing>1.0)
+                throw new IllegalArgumentException("Invalid smoothing "+smoothing);
+            if (window<=0)
+                throw new IllegalArgumentException("Invalid window "+window);
+            _minLimit = minLimit;
+            _maxLimit = maxLimit;
+            _tolerance = tolerance;
+            _smoothing = smoothing;
+            _window = window;
+            _limit = Math.max(minLimit,Math.min(maxLimit,initialLimit));
+            _estimatedLimit = _limit;
+        }
+
+        @Override
+        @ManagedAttribute("The current concurrency limit")
+        public int getLimit()
+        {
+            return _limit;
+        }
+
+        @ManagedAttribute("The long term average latency in µs")
+        public long getLongLatency()
+        {
+            return TimeUnit.NANOSECONDS.toMicros((long)_longLatency);
+        }
+
+        @Override
+        public void update(long latency, int inflight)
+        {
+            double shortLatency = Math.max(1,latency);
+            if (_longLatency==0)
+                _longLatency = shortLatency;
+            else
+                _longLatency += (shortLatency-_longLatency)/_window;
+
+            // Drift down faster if the latency is now much lower.
+            if (_longLatency>2*shortLatency)
+                _longLatency = (_longLatency+shortLatency)/2;
+
+            // Do not grow the limit if it is not used.
+            if (inflight*2<_estimatedLimit && shortLatency<=_longLatency*_tolerance)
+                return;
+
+            double gradient = Math.max(0.5,Math.min(1.0,_tolerance*_longLatency/shortLatency));
+            double newLimit = _estimatedLimit*gradient+Math.sqrt(_estimatedLimit);
+            newLimit = _estimatedLimit*(1-_smoothing)+newLimit*_smoothing;
+            _estimatedLimit = Math.max(_minLimit,Math.min(_maxLimit,newLimit));
+            _limit = (int)_estimatedLimit;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s{limit=%d,%d-%d,latency=%dµs}",getClass().getSimpleName(),_limit,_minLimit,_maxLimit,getLongLatency());
+        }
+    }
+}
@@ -23,11 +23,19 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Deque;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
 
 import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
@@ -45,11 +53,15 @@ import org.eclipse.jetty.util.IncludeExcludeSet;
 import org.eclipse.jetty.util.InetAddressSet;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.annotation.Name;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.thread.Locker;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.eclipse.jetty.util.thread.ThreadPool;
 
 
 /**
@@ -70,8 +82,21 @@ import org.eclipse.jetty.util.thread.Locker;
  * </ul>
  * Requests in excess of the limit will be asynchronously suspended until
  * a thread is available.  
+ * <p>When the server thread pool is {@link ThreadPool#isLowOnThreads() low on threads},
+ * requests are also suspended while other requests are waiting, and the permits released
+ * by completed requests are granted to the waiting remotes with a deficit round robin,
+ * so that a single noisy remote cannot starve the others.
+ * Each remote receives a share proportional to its weight, which may be configured
+ * per IP address or range with {@link #setWeight(String, int)} or per request header value
+ * with {@link #setHeaderWeight(String, String, int)}, and is otherwise 1.</p>
+ * <p>A permit is acquired and released holding only the lock of its remote, unless requests
+ * are waiting; the fair scheduling of the waiting requests holds the lock of the handler.</p>
+ * <p>Remotes without active or waiting requests are forgotten after the
+ * {@link #setIdleTimeout(long) idle timeout}, by a task run periodically by the server
+ * {@link Scheduler}.</p>
  * <p>This is a simpler alternative to DosFilter</p>
  */
+@ManagedObject("Limits the threads per remote IP address")
 public class ThreadLimitHandler extends HandlerWrapper
 {
     private static final Logger LOG = Log.getLogger(ThreadLimitHandler.class);
@@ -82,7 +107,20 @@ public class ThreadLimitHandler extends HandlerWrapper
     private final String _forwardedHeader;
     private final IncludeExcludeSet<String, InetAddress> _includeExcludeSet = new IncludeExcludeSet<>(InetAddressSet.class);
     private final ConcurrentMap<String, Remote> _remotes = new ConcurrentHashMap<>();
+    private final List<Weight> _weights = new CopyOnWriteArrayList<>();
+    private final Locker _locker = new Locker();
+    private final Deque<Remote> _waiting = new ArrayDeque<>();
+    private final AtomicInteger _waitingRemotes = new AtomicInteger();
+    private final AtomicInteger _permits = new AtomicInteger();
+    private final LongAdder _expired = new LongAdder();
+    private int _queued;
+    private volatile ThreadPool _threadPool;
+    private Scheduler _scheduler;
+    private boolean _ownScheduler;
+    private Scheduler.Task _sweeper;
     private volatile boolean _enabled;
+    private volatile long _idleTimeout = 60000;
+    private volatile int _topRemotes = 10;
     private int _threadLimit=10;
 
     public ThreadLimitHandler()
@@ -106,10 +144,35 @@ public class ThreadLimitHandler extends HandlerWrapper
     @Override
     protected void doStart() throws Exception
     {
+        _threadPool = getServer()==null?null:getServer().getThreadPool();
+        _scheduler = getServer()==null?null:getServer().getBean(Scheduler.class);
+        if (_scheduler==null)
+        {
+            _scheduler = new ScheduledExecutorScheduler();
+            _ownScheduler = true;
+            _scheduler.start();
+        }
+        scheduleSweep();
         super.doStart();
         LOG.info(String.format("ThreadLimitHandler enable=%b limit=%d include=%s",_enabled,_threadLimit,_includeExcludeSet));
     }
 
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+        synchronized (this)
+        {
+            if (_sweeper!=null)
+                _sweeper.cancel();
+            _sweeper = null;
+        }
+        if (_ownScheduler)
+            _scheduler.stop();
+        _ownScheduler = false;
+        _scheduler = null;
+    }
+
     @ManagedAttribute("true if this handler is enabled")
     public boolean isEnabled()
     {
@@ -135,6 +198,152 @@ public class ThreadLimitHandler extends HandlerWrapper
         _threadLimit = threadLimit;
     }
     
+    @ManagedAttribute("The time in ms after which a remote without requests is forgotten")
+    public long getIdleTimeout()
+    {
+        return _idleTimeout;
+    }
+
+    /**
+     * @param idleTimeout the time in ms after which a remote without active or waiting requests is forgotten
+     */
+    public void setIdleTimeout(long idleTimeout)
+    {
+        if (idleTimeout<=0)
+            throw new IllegalArgumentException("idleTimeout must be >0");
+        _idleTimeout = idleTimeout;
+    }
+
+    @ManagedAttribute("The number of remotes reported by the top remotes attributes")
+    public int getTopRemotes()
+    {
+        return _topRemotes;
+    }
+
+    public void setTopRemotes(int topRemotes)
+    {
+        _topRemotes = topRemotes;
+    }
+
+    /**
+     * <p>Sets the weight of the remotes matching an IP pattern.</p>
+     * <p>When the thread pool is low on threads, a remote with a weight of 2 is granted
+     * twice as many permits as a remote with a weight of 1.</p>
+     *
+     * @param inetAddressPattern an IP address, range or CIDR, as accepted by {@link InetAddressSet}
+     * @param weight the weight of the matching remotes
+     */
+    @ManagedOperation("Sets the weight of the remotes matching an IP pattern")
+    public void setWeight(@Name("inetAddressPattern") String inetAddressPattern, @Name("weight") int weight)
+    {
+        InetAddressSet set = new InetAddressSet();
+        set.add(inetAddressPattern);
+        setWeight(inetAddressPattern,weight,false,(ip,request)->
+        {
+            try
+            {
+                return set.test(InetAddress.getByName(ip));
+            }
+            catch(Exception e)
+            {
+                LOG.ignore(e);
+                return false;
+            }
+        });
+    }
+
+    /**
+     * <p>Sets the weight of the remotes whose first request has a header with the given value.</p>
+     * <p>Header weights take precedence over IP weights.</p>
+     *
+     * @param header the name of the header
+     * @param value the value of the header
+     * @param weight the weight of the matching remotes
+     */
+    @ManagedOperation("Sets the weight of the remotes with a request header value")
+    public void setHeaderWeight(@Name("header") String header, @Name("value") String value, @Name("weight") int weight)
+    {
+        setWeight(header+": "+value,weight,true,(ip,request)->value.equals(request.getHttpFields().get(header)));
+    }
+
+    private void setWeight(String name, int weight, boolean first, Weight.Matcher matcher)
+    {
+        if (weight<=0)
+            throw new IllegalArgumentException("weight must be >0");
+        _weights.removeIf(w->w._name.equals(name));
+        Weight rule = new Weight(name,weight,matcher);
+        // Header weights are checked before IP weights.
+        if (first)
+            _weights.add(0,rule);
+        else
+            _weights.add(rule);
+    }
+
+    @ManagedAttribute("The number of remotes tracked")
+    public int getRemoteCount()
+    {
+        return _remotes.size();
+    }
+
+    @ManagedAttribute("The number of requests using a permit")
+    public int getActiveRequests()
+    {
+        return _permits.get();
+    }
+
+    @ManagedAttribute("The number of requests waiting for a permit")
+    public int getQueuedRequests()
+    {
+        try (Locker.Lock lock = _locker.lock())
+        {
+            return _queued;
+        }
+    }
+
+    @ManagedAttribute("The number of remotes forgotten after the idle timeout")
+    public long getExpiredRemotes()
+    {
+        return _expired.sum();
+    }
+
+    @ManagedAttribute("The remotes with the most waiting requests")
+    public List<String> getTopQueuedRemotes()
+    {
+        return top(r->r._queue.size());
+    }
+
+    @ManagedAttribute("The remotes with the most active requests")
+    public List<String> getTopActiveRemotes()
+    {
+        return top(r->r._permits);
+    }
+
+    private List<String> top(ToIntFunction<Remote> count)
+    {
+        // The counts change under the remote locks, so they are snapshot
+        // before sorting, otherwise the sort may see an inconsistent order.
+        List<RemoteCount> counts = new ArrayList<>();
+        for (Remote remote : _remotes.values())
+        {
+            try (Locker.Lock lock = remote._locker.lock())
+            {
+                int c = count.applyAsInt(remote);
+                if (c>0)
+                    counts.add(new RemoteCount(remote.describe(),c));
+            }
+        }
+        counts.sort(Comparator.comparingInt((RemoteCount rc)->rc._count).reversed());
+
+        List<String> result = new ArrayList<>();
+        for (RemoteCount rc : counts)
+        {
+            if (result.size()>=_topRemotes)
+                break;
+            result.add(rc._remote);
+        }
+        return result;
+    }
+
     @ManagedOperation("Include IP in thread limits")
     public void include(String inetAddressPattern)
     {
@@ -179,7 +388,7 @@ public class ThreadLimitHandler extends HandlerWrapper
                     else
                     {
                         // No, then lets try to acquire one
-                        CompletableFuture<Closeable> future_permit=remote.acquire();
+                        CompletableFuture<Closeable> future_permit=acquire(remote);
 
                         // Did we get a permit?
                         if (future_permit.isDone())
@@ -223,6 +432,207 @@ public class ThreadLimitHandler extends HandlerWrapper
         }
     }
     
+    /**
+     * @param ip the remote IP
+     * @param baseRequest the first request of the remote
+     * @return the weight of the remote in the fair share of the permits
+     */
+    protected int getWeight(String ip, Request baseRequest)
+    {
+        for (Weight weight : _weights)
+        {
+            if (weight._matcher.matches(ip,baseRequest))
+                return weight._weight;
+        }
+        return 1;
+    }
+
+    /**
+     * @return whether the thread pool is low on threads, so that permits are granted fairly
+     */
+    protected boolean isLowOnThreads()
+    {
+        ThreadPool threadPool = _threadPool;
+        return threadPool!=null && threadPool.isLowOnThreads();
+    }
+
+    private CompletableFuture<Closeable> acquire(Remote remote)
+    {
+        long now = System.nanoTime();
+
+        // Fast path, when there is no fair scheduling to respect.
+        if (_waitingRemotes.get()==0 || !isLowOnThreads())
+        {
+            try (Locker.Lock lock = remote._locker.lock())
+            {
+                if (!remote._expired && remote._permits<remote._limit)
+                {
+                    remote._permits++;
+                    _permits.incrementAndGet();
+                    remote._lastUsed = now;
+                    return remote._permitted;
+                }
+            }
+        }
+
+        try (Locker.Lock lock = _locker.lock())
+        {
+            // The remote may have been forgotten since it was looked up.
+            try (Locker.Lock remoteLock = remote._locker.lock())
+            {
+                if (remote._expired)
+                {
+                    Remote current = _remotes.putIfAbsent(remote._ip,remote);
+                    if (current==null)
+                        remote._expired = false;
+                    else
+                        remote = current;
+                }
+            }
+            return acquireLocked(remote,now);
+        }
+    }
+
+    private CompletableFuture<Closeable> acquireLocked(Remote remote, long now)
+    {
+        CompletableFuture<Closeable> pass;
+        try (Locker.Lock remoteLock = remote._locker.lock())
+        {
+            remote._lastUsed = now;
+
+            // Do we have available passes, and no other remote waiting for a scarce thread?
+            if (remote._permits<remote._limit && (_waiting.isEmpty() || _permits.get()==0 || !isLowOnThreads()))
+            {
+                // Yes - increment the allocated passes
+                remote._permits++;
+                _permits.incrementAndGet();
+                // return the already completed future
+                return remote._permitted;
+            }
+
+            // No pass available, so queue a new future
+            pass = new CompletableFuture<>();
+            remote._queue.addLast(pass);
+            _queued++;
+            if (!remote._waiting)
+            {
+                remote._waiting = true;
+                _waiting.addLast(remote);
+                _waitingRemotes.incrementAndGet();
+            }
+        }
+
+        // All the permits may have been released by the fast path before the
+        // waiting remote was visible, in which case nobody else will schedule.
+        if (_permits.get()==0)
+            schedule();
+        return pass;
+    }
+
+    private void release(Remote remote)
+    {
+        // Fast path, when no request is waiting.
+        try (Locker.Lock lock = remote._locker.lock())
+        {
+            // reduce the allocated passes
+            remote._permits--;
+            _permits.decrementAndGet();
+            remote._lastUsed = System.nanoTime();
+            if (_waitingRemotes.get()==0)
+                return;
+        }
+
+        try (Locker.Lock lock = _locker.lock())
+        {
+            schedule();
+        }
+    }
+
+    private void schedule()
+    {
+        // When low on threads, a released permit is granted to a single waiting request.
+        int budget = isLowOnThreads()?1:Integer.MAX_VALUE;
+        int skipped = 0;
+        while (budget>0 && !_waiting.isEmpty() && skipped<=_waiting.size())
+        {
+            Remote remote = _waiting.peekFirst();
+            try (Locker.Lock remoteLock = remote._locker.lock())
+            {
+                if (remote._queue.isEmpty())
+                {
+                    _waiting.pollFirst();
+                    _waitingRemotes.decrementAndGet();
+                    remote._waiting = false;
+                    remote._deficit = 0;
+                    continue;
+                }
+
+                if (remote._permits>=remote._limit)
+                {
+                    // This remote cannot use more threads, try the next one.
+                    _waiting.addLast(_waiting.pollFirst());
+                    skipped++;
+                    continue;
+                }
+
+                // Deficit round robin: a remote is granted up to its weight of permits per round.
+                if (remote._deficit<=0)
+                    remote._deficit += remote._weight;
+
+                CompletableFuture<Closeable> pass = remote._queue.pollFirst();
+                _queued--;
+                if (pass.complete(remote))
+                {
+                    remote._permits++;
+                    _permits.incrementAndGet();
+                    budget--;
+                    skipped = 0;
+                    if (--remote._deficit<=0)
+                        _waiting.addLast(_waiting.pollFirst());
+                }
+                // Otherwise somebody else must have completed/failed that future pass,
+                // so let's try for another.
+            }
+        }
+    }
+
+    private void scheduleSweep()
+    {
+        synchronized (this)
+        {
+            if (isStopping() || isStopped())
+                return;
+            _sweeper = _scheduler.schedule(this::sweep,Math.max(1,_idleTimeout/2),TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void sweep()
+    {
+        try
+        {
+            long now = System.nanoTime();
+            long idleTimeout = TimeUnit.MILLISECONDS.toNanos(_idleTimeout);
+            for (Remote remote : _remotes.values())
+            {
+                try (Locker.Lock lock = remote._locker.lock())
+                {
+                    if (remote._permits==0 && remote._queue.isEmpty() && now-remote._lastUsed>idleTimeout)
+                    {
+                        if (_remotes.remove(remote._ip,remote))
+                        {
+                            remote._expired = true;
+                            _expired.increment();
+                        }
+                    }
+                }
+            }
+        }
+        finally
+        {
+            scheduleSweep();
+        }
+    }
+
     protected int getThreadLimit(String ip)
     {
         if (!_includeExcludeSet.isEmpty())
@@ -261,7 +671,7 @@ public class ThreadLimitHandler extends HandlerWrapper
         remote = _remotes.get(ip);
         if (remote==null)
         {
-            Remote r = new Remote(ip,limit);
+            Remote r = new Remote(ip,limit,getWeight(ip,baseRequest));
             remote = _remotes.putIfAbsent(ip,r);
             if (remote==null)
                 remote = r;
@@ -331,66 +741,31 @@ public class ThreadLimitHandler extends HandlerWrapper
 
     private final class Remote implements Closeable
     {
+        // The fields below are guarded by the remote lock, except _waiting
+        // and _deficit that are guarded by the handler lock.
+        private final Locker _locker = new Locker();
         private final String _ip;
         private final int _limit;
-        private final Locker _locker = new Locker();
-        private int _permits;
-        private Deque<CompletableFuture<Closeable>> _queue = new ArrayDeque<>();
+        private final int _weight;
+        private final Deque<CompletableFuture<Closeable>> _queue = new ArrayDeque<>();
         private final CompletableFuture<Closeable> _permitted = CompletableFuture.completedFuture(this);
+        private int _permits;
+        private int _deficit;
+        private boolean _waiting;
+        private boolean _expired;
+        private long _lastUsed = System.nanoTime();
         
-        public Remote(String ip, int limit)
+        public Remote(String ip, int limit, int weight)
         {
             _ip=ip;
             _limit=limit;
-        }
-        
-        public CompletableFuture<Closeable> acquire()
-        {
-            try(Locker.Lock lock = _locker.lock())
-            {
-                // Do we have available passes?
-                if (_permits<_limit)
-                {
-                    // Yes - increment the allocated passes
-                    _permits++;
-                    // return the already completed future
-                    return _permitted; // TODO is it OK to share/reuse this?
-                }
-                
-                // No pass available, so queue a new future 
-                CompletableFuture<Closeable> pass = new CompletableFuture<Closeable>();
-                _queue.addLast(pass);
-                return pass;
-            }
+            _weight=weight;
         }
         
         @Override
         public void close() throws IOException
         {
-            try(Locker.Lock lock = _locker.lock())
-            {
-                // reduce the allocated passes
-                _permits--;
-                while(true)
-                {
-                    // Are there any future passes waiting?
-                    CompletableFuture<Closeable> permit = _queue.pollFirst();
-                    
-                    // No - we are done
-                    if (permit==null)
-                        break;
-                    
-                    // Yes - if we can complete them, we are done
-                    if (permit.complete(this))
-                    {
-                        _permits++;
-                        break;
-                    }
-                    
-                    // Somebody else must have completed/failed that future pass,
-                    // so let's try for another.
-                }
-            }
+            release(this);
         }
         
         @Override
@@ -398,9 +773,47 @@ public class ThreadLimitHandler extends HandlerWrapper
         {
             try(Locker.Lock lock = _locker.lock())
             {
-                return String.format("R[ip=%s,p=%d,l=%d,q=%d]",_ip,_permits,_limit,_queue.size());
+                return describe();
             }
         }
+
+        // Called with the remote lock held.
+        private String describe()
+        {
+            return String.format("R[ip=%s,p=%d,l=%d,w=%d,q=%d]",_ip,_permits,_limit,_weight,_queue.size());
+        }
+    }
+
+    private static final class RemoteCount
+    {
+        private final String _remote;
+        private final int _count;
+
+        private RemoteCount(String remote, int count)
+        {
+            _remote=remote;
+            _count=count;
+        }
+    }
+
+    private static final class Weight
+    {
+        private final String _name;
+        private final int _weight;
+        private final Matcher _matcher;
+
+        private Weight(String name, int weight, Matcher matcher)
+        {
+            _name = name;
+            _weight = weight;
+            _matcher = matcher;
+        }
+
+        @FunctionalInterface
+        private interface Matcher
+        {
+            boolean matches(String ip, Request request);
+        }
     }
 
     private final class RFC7239 extends QuotedCSV
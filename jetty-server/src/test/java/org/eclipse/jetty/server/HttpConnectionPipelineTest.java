@@ -0,0 +1,223 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.IO;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HttpConnectionPipelineTest
+{
+    private Server _server;
+    private LocalConnector _connector;
+    private HttpConfiguration _config;
+    private final List<String> _written = new CopyOnWriteArrayList<>();
+    private final AtomicReference<AsyncContext> _async = new AtomicReference<>();
+    private final CountDownLatch _suspended = new CountDownLatch(1);
+
+    @Before
+    public void init() throws Exception
+    {
+        _server = new Server();
+        _config = new HttpConfiguration();
+        _config.setPipelineAggregationSize(4096);
+        _config.setSendDateHeader(false);
+        _config.setSendServerVersion(false);
+        _connector = new LocalConnector(_server,new HttpConnectionFactory(_config));
+        _server.addConnector(_connector);
+        _server.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                // Record what has been written to the endpoint before this request is handled.
+                EndPoint endPoint = baseRequest.getHttpChannel().getEndPoint();
+                _written.add(((LocalConnector.LocalEndPoint)endPoint).getOutputString());
+
+                if (target.startsWith("/slow"))
+                {
+                    // Wait for the response to the previous request to be written by the max delay.
+                    long end = System.nanoTime()+TimeUnit.SECONDS.toNanos(5);
+                    while (!((LocalConnector.LocalEndPoint)endPoint).getOutputString().contains("/one") && System.nanoTime()<end)
+                        Thread.yield();
+                    _written.add(((LocalConnector.LocalEndPoint)endPoint).getOutputString());
+                }
+
+                if (target.startsWith("/async"))
+                {
+                    _async.set(request.startAsync());
+                    _suspended.countDown();
+                    return;
+                }
+
+                String content = IO.toString(request.getInputStream());
+                response.setContentType("text/plain");
+                response.getWriter().print(target+content);
+            }
+        });
+        _server.start();
+    }
+
+    @After
+    public void destroy() throws Exception
+    {
+        _server.stop();
+    }
+
+    @Test
+    public void testPipelinedResponsesAggregated() throws Exception
+    {
+        _config.setPipelineAggregationMaxDelay(TimeUnit.SECONDS.toMillis(10));
+
+        String responses = _connector.getResponses(
+            "GET /one HTTP/1.1\r\nHost: localhost\r\n\r\n"+
+            "POST /two HTTP/1.1\r\nHost: localhost\r\nContent-Length: 4\r\n\r\nbody"+
+            "GET /three HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+
+        int one = responses.indexOf("/one");
+        int two = responses.indexOf("/twobody");
+        int three = responses.indexOf("/three");
+        assertTrue(one>0 && two>one && three>two);
+
+        // No response was written before the last request was handled.
+        assertThat(_written.size(),is(3));
+        for (int i=0;i<_written.size();i++)
+            assertThat(_written.get(i),is(""));
+    }
+
+    @Test
+    public void testAggregationMaxDelayWithSlowRequest() throws Exception
+    {
+        _config.setPipelineAggregationMaxDelay(50);
+
+        String responses = _connector.getResponses(
+            "GET /one HTTP/1.1\r\nHost: localhost\r\n\r\n"+
+            "GET /slow HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+
+        assertTrue(responses.indexOf("/slow")>responses.indexOf("/one"));
+
+        // The response to the first request was written while the slow request was being handled.
+        assertThat(_written.size(),is(3));
+        assertThat(_written.get(1),is(""));
+        assertThat(_written.get(2),containsString("/one"));
+    }
+
+    @Test
+    public void testAggregationSizeExceeded() throws Exception
+    {
+        _config.setPipelineAggregationSize(16);
+
+        String responses = _connector.getResponses(
+            "GET /one HTTP/1.1\r\nHost: localhost\r\n\r\n"+
+            "GET /two HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+
+        assertTrue(responses.indexOf("/two")>responses.indexOf("/one"));
+        assertThat(_written.get(1),containsString("/one"));
+    }
+
+    @Test
+    public void testAggregationDisabled() throws Exception
+    {
+        _config.setPipelineAggregationSize(0);
+
+        _connector.getResponses(
+            "GET /one HTTP/1.1\r\nHost: localhost\r\n\r\n"+
+            "GET /two HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+
+        assertThat(_written.get(1),containsString("/one"));
+    }
+
+    @Test
+    public void testIncompletePipelinedRequestFlushes() throws Exception
+    {
+        LocalConnector.LocalEndPoint endPoint = _connector.executeRequest(
+            "GET /one HTTP/1.1\r\nHost: localhost\r\n\r\n"+
+            "GET /two HTTP/1.1\r\nHost: loc");
+
+        String response = endPoint.getResponse(false,5,TimeUnit.SECONDS);
+        assertThat(response,containsString("/one"));
+
+        endPoint.addInputAndExecute(BufferUtil.toBuffer("alhost\r\nConnection: close\r\n\r\n"));
+        response = endPoint.getResponse(false,5,TimeUnit.SECONDS);
+        assertThat(response,containsString("/two"));
+    }
+
+    @Test
+    public void testPipelinedBodyNotYetReceivedFlushes() throws Exception
+    {
+        LocalConnector.LocalEndPoint endPoint = _connector.executeRequest(
+            "GET /one HTTP/1.1\r\nHost: localhost\r\n\r\n"+
+            "POST /two HTTP/1.1\r\nHost: localhost\r\nContent-Length: 4\r\nConnection: close\r\n\r\nbo");
+
+        String response = endPoint.getResponse(false,5,TimeUnit.SECONDS);
+        assertThat(response,containsString("/one"));
+
+        endPoint.addInputAndExecute(BufferUtil.toBuffer("dy"));
+        response = endPoint.getResponse(false,5,TimeUnit.SECONDS);
+        assertThat(response,containsString("/twobody"));
+    }
+
+    @Test
+    public void testAsyncPipelinedRequestFlushes() throws Exception
+    {
+        LocalConnector.LocalEndPoint endPoint = _connector.executeRequest(
+            "GET /one HTTP/1.1\r\nHost: localhost\r\n\r\n"+
+            "GET /async HTTP/1.1\r\nHost: localhost\r\n\r\n"+
+            "GET /three HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+
+        assertTrue(_suspended.await(5,TimeUnit.SECONDS));
+        String response = endPoint.getResponse(false,5,TimeUnit.SECONDS);
+        assertThat(response,containsString("/one"));
+        assertThat(response,not(containsString("/three")));
+
+        AsyncContext async = _async.get();
+        async.getResponse().getWriter().print("/async");
+        async.complete();
+
+        response = endPoint.getResponse(false,5,TimeUnit.SECONDS);
+        assertThat(response,containsString("/async"));
+        response = endPoint.getResponse(false,5,TimeUnit.SECONDS);
+        assertThat(response,containsString("/three"));
+        assertThat(endPoint.getResponse(false,5,TimeUnit.SECONDS),nullValue());
+    }
+}
@@ -46,6 +46,7 @@ import org.eclipse.jetty.http.HttpCompliance;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpParser;
 import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.io.InputBufferSizer;
 import org.eclipse.jetty.server.LocalConnector.LocalEndPoint;
 import org.eclipse.jetty.server.handler.AbstractHandler;
 import org.eclipse.jetty.server.handler.ErrorHandler;
@@ -1036,6 +1037,35 @@ public class HttpConnectionTest
         }
     }
 
+    @Test
+    public void testAdaptiveInputBufferSize() throws Exception
+    {
+        server.stop();
+        HttpConnectionFactory http = connector.getConnectionFactory(HttpConnectionFactory.class);
+        http.setMinInputBufferSize(256);
+        server.start();
+        InputBufferSizer sizer = http.getBean(InputBufferSizer.class);
+        assertThat(sizer.getMinSize(),equalTo(256));
+        assertThat(sizer.getMaxSize(),equalTo(http.getInputBufferSize()));
+
+        StringBuilder content = new StringBuilder();
+        for (int i=0;i<20000;i++)
+            content.append((char)('a'+i%26));
+        String response=connector.getResponse("POST /R1 HTTP/1.1\r\n"+
+                                              "Host: localhost\r\n"+
+                                              "Content-Type: text/plain\r\n"+
+                                              "Content-Length: "+content.length()+"\r\n"+
+                                              "Connection: close\r\n"+
+                                              "\r\n"+
+                                              content);
+        checkContains(response,0,"HTTP/1.1 200");
+        checkContains(response,0,content.toString());
+
+        // The upload grew the buffers up to the max size.
+        assertThat(sizer.getFillsBySize().get(256),Matchers.greaterThan(0L));
+        assertThat(sizer.getFillsBySize().get(http.getInputBufferSize()),Matchers.greaterThan(0L));
+    }
+
     private int checkContains(String s,int offset,String c)
     {
         Assert.assertThat(s.substring(offset),Matchers.containsString(c));
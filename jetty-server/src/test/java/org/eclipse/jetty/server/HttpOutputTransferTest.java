@@ -0,0 +1,137 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.IO;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HttpOutputTransferTest
+{
+    private Server _server;
+    private ServerConnector _connector;
+    private LocalConnector _local;
+    private File _file;
+    private String _content;
+
+    @Before
+    public void init() throws Exception
+    {
+        StringBuilder builder = new StringBuilder();
+        for (int i=0;i<64*1024;i++)
+            builder.append((char)('a'+i%26));
+        _content = builder.toString();
+        _file = File.createTempFile("transfer",".txt");
+        _file.deleteOnExit();
+        Files.write(_file.toPath(),_content.getBytes(StandardCharsets.ISO_8859_1));
+
+        _server = new Server();
+        _connector = new ServerConnector(_server);
+        _server.addConnector(_connector);
+        _local = new LocalConnector(_server);
+        _server.addConnector(_local);
+        _server.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                long position = Long.parseLong(request.getParameter("position"));
+                long count = Long.parseLong(request.getParameter("count"));
+                response.setContentLengthLong(count);
+                FileChannel file = FileChannel.open(_file.toPath(),StandardOpenOption.READ);
+                ((HttpOutput)response.getOutputStream()).sendContent(file,position,count);
+                assertTrue(!file.isOpen());
+            }
+        });
+        _server.start();
+    }
+
+    @After
+    public void destroy() throws Exception
+    {
+        _server.stop();
+        _file.delete();
+    }
+
+    @Test
+    public void testTransferWholeFile() throws Exception
+    {
+        String response = get(0,_content.length());
+        assertThat(response,containsString("HTTP/1.1 200 OK"));
+        assertThat(response,containsString("Content-Length: "+_content.length()));
+        assertThat(response,endsWith("\r\n\r\n"+_content));
+    }
+
+    @Test
+    public void testTransferFileRegion() throws Exception
+    {
+        String response = get(1000,20000);
+        assertThat(response,containsString("Content-Length: 20000"));
+        assertThat(response,endsWith("\r\n\r\n"+_content.substring(1000,21000)));
+    }
+
+    @Test
+    public void testFileRegionWithoutTransfer() throws Exception
+    {
+        // The LocalConnector does not support transfers, so the region is copied.
+        String response = _local.getResponse("GET /?position=1000&count=20000 HTTP/1.0\r\n\r\n");
+        assertThat(response,containsString("Content-Length: 20000"));
+        assertThat(response,endsWith("\r\n\r\n"+_content.substring(1000,21000)));
+    }
+
+    private String get(long position, long count) throws IOException
+    {
+        try (Socket socket = new Socket("localhost",_connector.getLocalPort()))
+        {
+            OutputStream output = socket.getOutputStream();
+            output.write(("GET /?position="+position+"&count="+count+" HTTP/1.1\r\n"+
+                    "Host: localhost\r\n"+
+                    "Connection: close\r\n"+
+                    "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            output.flush();
+            InputStream input = socket.getInputStream();
+            String response = IO.toString(input,StandardCharsets.ISO_8859_1.name());
+            assertEquals(-1,input.read());
+            return response;
+        }
+    }
+}
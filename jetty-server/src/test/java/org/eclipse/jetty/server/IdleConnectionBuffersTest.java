@@ -0,0 +1,123 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.junit.After;
+import org.junit.Test;
+
+public class IdleConnectionBuffersTest
+{
+    private Server _server;
+    private ServerConnector _connector;
+
+    private void start(SslContextFactory sslContextFactory) throws Exception
+    {
+        _server = new Server();
+        _connector = new ServerConnector(_server, sslContextFactory);
+        _server.addConnector(_connector);
+        _server.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                IO.copy(request.getInputStream(), response.getOutputStream());
+            }
+        });
+        _server.start();
+    }
+
+    @After
+    public void dispose() throws Exception
+    {
+        _server.stop();
+    }
+
+    @Test
+    public void testHttpIdleConnectionRetainsNoBuffers() throws Exception
+    {
+        start(null);
+        try (Socket client = new Socket("localhost", _connector.getLocalPort()))
+        {
+            testIdleConnectionRetainsNoBuffers(client);
+        }
+    }
+
+    @Test
+    public void testHttpsIdleConnectionRetainsNoBuffers() throws Exception
+    {
+        SslContextFactory sslContextFactory = new SslContextFactory();
+        sslContextFactory.setKeyStorePath("src/test/resources/keystore");
+        sslContextFactory.setKeyStorePassword("storepwd");
+        sslContextFactory.setKeyManagerPassword("keypwd");
+        start(sslContextFactory);
+
+        SSLContext context = SSLContext.getInstance("TLSv1.2");
+        context.init(null, SslContextFactory.TRUST_ALL_CERTS, null);
+        try (Socket client = context.getSocketFactory().createSocket("localhost", _connector.getLocalPort()))
+        {
+            testIdleConnectionRetainsNoBuffers(client);
+        }
+    }
+
+    private void testIdleConnectionRetainsNoBuffers(Socket client) throws Exception
+    {
+        String content = "0123456789ABCDEF";
+        OutputStream output = client.getOutputStream();
+        for (int i = 0; i < 3; ++i)
+        {
+            output.write(("POST / HTTP/1.1\r\n" +
+                    "Host: localhost\r\n" +
+                    "Content-Length: " + content.length() + "\r\n" +
+                    "\r\n" +
+                    content).getBytes(StandardCharsets.UTF_8));
+            output.flush();
+
+            HttpTester.Response response = HttpTester.parseResponse(HttpTester.from(client.getInputStream()));
+            assertThat(response.getStatus(), equalTo(HttpStatus.OK_200));
+            assertThat(response.getContent(), equalTo(content));
+
+            // The response may be received before the connection completes the exchange.
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (_connector.getRetainedBufferBytes() > 0 && System.nanoTime() < end)
+                Thread.sleep(10);
+            assertThat(_connector.getConnectedEndPoints().size(), equalTo(1));
+            assertThat(_connector.getRetainedBufferBytes(), equalTo(0L));
+        }
+    }
+}
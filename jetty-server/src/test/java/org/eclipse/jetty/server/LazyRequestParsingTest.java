@@ -0,0 +1,134 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LazyRequestParsingTest
+{
+    private Server _server;
+    private LocalConnector _connector;
+    private final Map<String,Object> _observed = new ConcurrentHashMap<>();
+
+    @Before
+    public void init() throws Exception
+    {
+        _server = new Server();
+        HttpConfiguration config = new HttpConfiguration();
+        config.setLazyRequestParsing(true);
+        _connector = new LocalConnector(_server,new HttpConnectionFactory(config));
+        _server.addConnector(_connector);
+        _server.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                HttpField unread = baseRequest.getHttpFields().getField("X-Unread");
+                HttpURI uri = baseRequest.getHttpURI();
+                // Observe the state before anything is read by this handler.
+                _observed.put("unread.value", String.valueOf(decodedValue(unread)));
+                _observed.put("uri.query", String.valueOf(field(HttpURI.class,"_query",uri)));
+                _observed.put("pathInfo", request.getPathInfo());
+
+                response.getWriter().print("read="+request.getHeader("X-Read"));
+                if (request.getParameter("p")!=null)
+                    response.getWriter().print(" p="+request.getParameter("p"));
+            }
+        });
+        _server.start();
+    }
+
+    @After
+    public void destroy() throws Exception
+    {
+        _server.stop();
+    }
+
+    private static Object decodedValue(HttpField field)
+    {
+        return field(field.getClass(),"_value",field);
+    }
+
+    private static Object field(Class<?> type, String name, Object target)
+    {
+        try
+        {
+            Field field = type.getDeclaredField(name);
+            field.setAccessible(true);
+            return field.get(target);
+        }
+        catch (ReflectiveOperationException x)
+        {
+            throw new AssertionError(x);
+        }
+    }
+
+    @Test
+    public void testUnreadValuesAndQueryAreNotDecoded() throws Exception
+    {
+        String response = _connector.getResponse(
+            "GET /some/path?p=1&q=2 HTTP/1.1\r\n"+
+            "Host: localhost\r\n"+
+            "X-Unread: not decoded\r\n"+
+            "X-Read: decoded\r\n"+
+            "Connection: close\r\n"+
+            "\r\n");
+
+        assertThat(response,containsString("read=decoded p=1"));
+        assertThat(_observed.get("unread.value"),is("null"));
+        assertThat(_observed.get("uri.query"),is("null"));
+        assertThat(_observed.get("pathInfo"),is("/some/path"));
+    }
+
+    @Test
+    public void testEagerWithoutLazyParsing() throws Exception
+    {
+        _connector.getConnectionFactory(HttpConnectionFactory.class).getHttpConfiguration().setLazyRequestParsing(false);
+
+        String response = _connector.getResponse(
+            "GET /some/path?p=1 HTTP/1.1\r\n"+
+            "Host: localhost\r\n"+
+            "X-Unread: decoded\r\n"+
+            "Connection: close\r\n"+
+            "\r\n");
+
+        assertThat(response,containsString("p=1"));
+        assertThat(_observed.get("uri.query"),is("p=1"));
+        assertThat(_observed.get("unread.value"),is("decoded"));
+    }
+}
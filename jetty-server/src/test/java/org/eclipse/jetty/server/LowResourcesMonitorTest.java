@@ -19,16 +19,27 @@
 package org.eclipse.jetty.server;
 
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertThat;
 
+import java.io.File;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+import org.eclipse.jetty.http.HttpCompliance;
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.ssl.SslConnection;
 import org.eclipse.jetty.toolchain.test.AdvancedRunner;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.util.thread.TimerScheduler;
 import org.junit.After;
@@ -197,4 +208,146 @@ public class LowResourcesMonitorTest
         Assert.assertEquals(-1,socket1.getInputStream().read());
 
     }
+
+    @Test
+    public void testGradedStages() throws Exception
+    {
+        // Use a monitor that is not started, so that its stages are only changed by this test.
+        LowResourceMonitor monitor=new LowResourceMonitor(_server);
+        monitor.setMaxStage(LowResourceMonitor.Stage.PAUSE_ACCEPTS);
+        HttpConfiguration configuration=_connector.getConnectionFactory(HttpConnectionFactory.class).getHttpConfiguration();
+        Assert.assertTrue(configuration.isPersistentConnectionsEnabled());
+
+        monitor.setMaxMemory(1);
+        monitor.monitor();
+        assertThat(monitor.getLowResourcesStage(),equalTo(LowResourceMonitor.Stage.IDLE_TIMEOUT));
+        Assert.assertTrue(monitor.isLowOnResources());
+        Assert.assertTrue(configuration.isPersistentConnectionsEnabled());
+
+        monitor.monitor();
+        assertThat(monitor.getLowResourcesStage(),equalTo(LowResourceMonitor.Stage.SHED_KEEP_ALIVE));
+        Assert.assertFalse(configuration.isPersistentConnectionsEnabled());
+
+        monitor.monitor();
+        monitor.monitor();
+        assertThat(monitor.getLowResourcesStage(),equalTo(LowResourceMonitor.Stage.PAUSE_ACCEPTS));
+        Assert.assertFalse(_connector.isAccepting());
+
+        // The max stage is not exceeded.
+        monitor.monitor();
+        assertThat(monitor.getLowResourcesStage(),equalTo(LowResourceMonitor.Stage.PAUSE_ACCEPTS));
+
+        // The stages are left one per period.
+        monitor.setMaxMemory(0);
+        monitor.monitor();
+        assertThat(monitor.getLowResourcesStage(),equalTo(LowResourceMonitor.Stage.REFUSE_STREAMS));
+        Assert.assertTrue(_connector.isAccepting());
+        Assert.assertTrue(monitor.isLowOnResources());
+        monitor.monitor();
+        monitor.monitor();
+        assertThat(monitor.getLowResourcesStage(),equalTo(LowResourceMonitor.Stage.IDLE_TIMEOUT));
+        Assert.assertTrue(configuration.isPersistentConnectionsEnabled());
+        monitor.monitor();
+        assertThat(monitor.getLowResourcesStage(),equalTo(LowResourceMonitor.Stage.NORMAL));
+        Assert.assertFalse(monitor.isLowOnResources());
+    }
+
+    @Test
+    public void testQueueLatency() throws Exception
+    {
+        LowResourceMonitor monitor=new LowResourceMonitor(_server);
+        monitor.setMaxQueueLatency(100);
+        monitor.monitor();
+        Thread.sleep(200);
+        monitor.monitor();
+        Assert.assertFalse(monitor.isLowOnResources());
+
+        // Block all the threads of the pool, so that the probe job waits in the queue.
+        CountDownLatch blocked=new CountDownLatch(1);
+        for (int i=_threadPool.getMaxThreads();i-->0;)
+        {
+            _threadPool.execute(()->
+            {
+                try
+                {
+                    blocked.await();
+                }
+                catch (InterruptedException ignored)
+                {
+                }
+            });
+        }
+        try
+        {
+            monitor.monitor();
+            Thread.sleep(200);
+            monitor.monitor();
+            Assert.assertTrue(monitor.isLowOnResources());
+            assertThat(monitor.getLowResourcesReasons(),containsString("queue latency"));
+        }
+        finally
+        {
+            blocked.countDown();
+        }
+    }
+
+    @Test
+    public void testListenerOverSsl() throws Exception
+    {
+        SslContextFactory sslContextFactory=new SslContextFactory();
+        sslContextFactory.setKeyStorePath(new File("src/test/resources/keystore").getAbsolutePath());
+        sslContextFactory.setKeyStorePassword("OBF:1vny1zlo1x8e1vnw1vn61x8g1zlu1vn4");
+        sslContextFactory.setKeyManagerPassword("OBF:1u2u1wml1z7s1z7a1wnl1u2g");
+
+        BlockingQueue<LowResourceMonitor.Stage> stages=new LinkedBlockingQueue<>();
+        HttpConnectionFactory http=new HttpConnectionFactory()
+        {
+            @Override
+            public Connection newConnection(Connector connector, EndPoint endPoint)
+            {
+                HttpConnection connection=new ListenerConnection(getHttpConfiguration(),connector,endPoint,getHttpCompliance(),stages);
+                return configure(connection,connector,endPoint);
+            }
+        };
+        ServerConnector ssl=new ServerConnector(_server,new SslConnectionFactory(sslContextFactory,http.getProtocol()),http);
+        _server.addConnector(ssl);
+        ssl.start();
+
+        // Use a monitor that is not started, so that its stages are only changed by this test.
+        LowResourceMonitor monitor=new LowResourceMonitor(_server);
+        try (Socket socket=new Socket("localhost",ssl.getLocalPort()))
+        {
+            // The end point is opened before its connection is set.
+            long wait=System.nanoTime()+TimeUnit.SECONDS.toNanos(10);
+            while (ssl.getConnectedEndPoints().stream().noneMatch(endPoint->endPoint.getConnection()!=null) && System.nanoTime()<wait)
+                Thread.sleep(1);
+            assertThat(ssl.getConnectedEndPoints().iterator().next().getConnection(),instanceOf(SslConnection.class));
+
+            monitor.setMaxMemory(1);
+            monitor.monitor();
+            assertThat(stages.poll(5,TimeUnit.SECONDS),equalTo(LowResourceMonitor.Stage.IDLE_TIMEOUT));
+        }
+        finally
+        {
+            ssl.stop();
+            _server.removeConnector(ssl);
+        }
+    }
+
+    private static class ListenerConnection extends HttpConnection implements LowResourceMonitor.Listener
+    {
+        private final BlockingQueue<LowResourceMonitor.Stage> _stages;
+
+        private ListenerConnection(HttpConfiguration config, Connector connector, EndPoint endPoint, HttpCompliance compliance, BlockingQueue<LowResourceMonitor.Stage> stages)
+        {
+            super(config,connector,endPoint,compliance,false);
+            _stages=stages;
+        }
+
+        @Override
+        public void onLowResourcesStage(LowResourceMonitor.Stage stage)
+        {
+            _stages.offer(stage);
+        }
+    }
 }
@@ -0,0 +1,250 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.server.handler;
+
+import static org.hamcrest.Matchers.anyOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConcurrencyLimitHandlerTest
+{
+    private Server _server;
+    private LocalConnector _local;
+
+    @Before
+    public void before() throws Exception
+    {
+        _server = new Server();
+        _local = new LocalConnector(_server);
+        _server.addConnector(_local);
+    }
+
+    @After
+    public void after() throws Exception
+    {
+        _server.stop();
+    }
+
+    @Test
+    public void testQueueAndReject() throws Exception
+    {
+        ConcurrencyLimitHandler handler = new ConcurrencyLimitHandler(new FixedAlgorithm(2));
+        handler.setMaxQueued(1);
+
+        AtomicInteger running = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+        handler.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                running.incrementAndGet();
+                try
+                {
+                    latch.await();
+                }
+                catch (InterruptedException e)
+                {
+                    throw new ServletException(e);
+                }
+            }
+        });
+        _server.setHandler(handler);
+        _server.start();
+
+        LocalConnector.LocalEndPoint[] endPoints = new LocalConnector.LocalEndPoint[3];
+        for (int i=0;i<endPoints.length;i++)
+            endPoints[i] = _local.executeRequest("GET /"+i+" HTTP/1.0\r\n\r\n");
+
+        long wait = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((running.get()<2 || handler.getQueued()<1) && System.nanoTime()<wait)
+            Thread.sleep(1);
+        assertThat(handler.getInflight(),is(2));
+        assertThat(handler.getQueued(),is(1));
+
+        // The limit is reached and the queue is full.
+        assertThat(_local.getResponse("GET /rejected HTTP/1.0\r\n\r\n"),containsString(" 503 "));
+        assertThat(handler.getRejected(),is(1L));
+
+        latch.countDown();
+        for (LocalConnector.LocalEndPoint endPoint : endPoints)
+            assertThat(endPoint.getResponse(),containsString(" 200 "));
+        assertThat(running.get(),is(3));
+        assertThat(handler.getRequests(),is(3L));
+        assertThat(handler.getInflight(),is(0));
+        assertThat(handler.getQueued(),is(0));
+    }
+
+    @Test
+    public void testQueueTimeout() throws Exception
+    {
+        ConcurrencyLimitHandler handler = new ConcurrencyLimitHandler(new FixedAlgorithm(1));
+        handler.setMaxQueueTime(100);
+
+        CountDownLatch latch = new CountDownLatch(1);
+        handler.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                try
+                {
+                    latch.await();
+                }
+                catch (InterruptedException e)
+                {
+                    throw new ServletException(e);
+                }
+            }
+        });
+        _server.setHandler(handler);
+        _server.start();
+
+        LocalConnector.LocalEndPoint endPoint = _local.executeRequest("GET /blocked HTTP/1.0\r\n\r\n");
+        long wait = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (handler.getInflight()<1 && System.nanoTime()<wait)
+            Thread.sleep(1);
+
+        assertThat(_local.getResponse("GET /queued HTTP/1.0\r\n\r\n"),containsString(" 503 "));
+        assertThat(handler.getRejected(),is(1L));
+        assertThat(handler.getQueued(),is(0));
+
+        latch.countDown();
+        assertThat(endPoint.getResponse(),containsString(" 200 "));
+    }
+
+    @Test
+    public void testQueueTimeoutRacesRelease() throws Exception
+    {
+        // Permits are released about when the queued requests expire.
+        ConcurrencyLimitHandler handler = new ConcurrencyLimitHandler(new FixedAlgorithm(1));
+        handler.setMaxQueueTime(5);
+        handler.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                try
+                {
+                    Thread.sleep(5);
+                }
+                catch (InterruptedException e)
+                {
+                    throw new ServletException(e);
+                }
+            }
+        });
+        _server.setHandler(handler);
+        _server.start();
+
+        LocalConnector.LocalEndPoint[] endPoints = new LocalConnector.LocalEndPoint[50];
+        for (int i=0;i<endPoints.length;i++)
+            endPoints[i] = _local.executeRequest("GET /"+i+" HTTP/1.0\r\n\r\n");
+
+        // Every request is either handled or rejected exactly once.
+        for (LocalConnector.LocalEndPoint endPoint : endPoints)
+            assertThat(endPoint.getResponse(),anyOf(containsString(" 200 "),containsString(" 503 ")));
+        assertThat(handler.getRequests()+handler.getRejected(),is((long)endPoints.length));
+        assertThat(handler.getInflight(),is(0));
+        assertThat(handler.getQueued(),is(0));
+    }
+
+    @Test
+    public void testAIMD() throws Exception
+    {
+        ConcurrencyLimitHandler.AIMDAlgorithm algorithm = new ConcurrencyLimitHandler.AIMDAlgorithm(10,1,20,0.5,1000);
+
+        // Not enough requests in flight to grow the limit.
+        algorithm.update(TimeUnit.MILLISECONDS.toNanos(10),2);
+        assertThat(algorithm.getLimit(),is(10));
+
+        for (int i=0;i<20;i++)
+            algorithm.update(TimeUnit.MILLISECONDS.toNanos(10),algorithm.getLimit());
+        assertThat(algorithm.getLimit(),is(20));
+
+        algorithm.update(TimeUnit.MILLISECONDS.toNanos(2000),20);
+        assertThat(algorithm.getLimit(),is(10));
+    }
+
+    @Test
+    public void testGradient() throws Exception
+    {
+        ConcurrencyLimitHandler.GradientAlgorithm algorithm = new ConcurrencyLimitHandler.GradientAlgorithm(20,1,1000,1.5,0.2,100);
+
+        // A stable latency with the limit used grows the limit.
+        for (int i=0;i<50;i++)
+            algorithm.update(TimeUnit.MILLISECONDS.toNanos(10),algorithm.getLimit());
+        int grown = algorithm.getLimit();
+        assertThat(grown,greaterThan(20));
+
+        // A latency increase shrinks the limit.
+        for (int i=0;i<20;i++)
+            algorithm.update(TimeUnit.MILLISECONDS.toNanos(100),algorithm.getLimit());
+        int shrunk = algorithm.getLimit();
+        assertThat(shrunk,lessThan(grown/2));
+
+        // The limit recovers with the latency.
+        for (int i=0;i<50;i++)
+            algorithm.update(TimeUnit.MILLISECONDS.toNanos(10),algorithm.getLimit());
+        assertThat(algorithm.getLimit(),greaterThan(shrunk));
+    }
+
+    private static class FixedAlgorithm implements ConcurrencyLimitHandler.Algorithm
+    {
+        private final int _limit;
+
+        private FixedAlgorithm(int limit)
+        {
+            _limit = limit;
+        }
+
+        @Override
+        public int getLimit()
+        {
+            return _limit;
+        }
+
+        @Override
+        public void update(long latency, int inflight)
+        {
+        }
+    }
+}
@@ -23,7 +23,11 @@ import static org.junit.Assert.assertThat;
 
 import java.io.IOException;
 import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -246,6 +250,111 @@ public class ThreadLimitHandlerTest
         assertThat(count.get(),is(0));
         
     }
-    
-    
+
+    @Test
+    public void testWeightedFairWhenLowOnThreads() throws Exception
+    {
+        ThreadLimitHandler handler = new ThreadLimitHandler("Forwarded")
+        {
+            @Override
+            protected boolean isLowOnThreads()
+            {
+                return true;
+            }
+        };
+        handler.setThreadLimit(2);
+        handler.setWeight("2.2.2.2",2);
+
+        List<String> started = new CopyOnWriteArrayList<>();
+        BlockingQueue<CountDownLatch> running = new LinkedBlockingQueue<>();
+        handler.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                CountDownLatch latch = new CountDownLatch(1);
+                started.add(target.substring(1,2));
+                running.add(latch);
+                try
+                {
+                    latch.await();
+                }
+                catch (InterruptedException e)
+                {
+                    throw new ServletException(e);
+                }
+            }
+        });
+        _server.setHandler(handler);
+        _server.start();
+
+        Socket[] client = new Socket[8];
+        for (int i=0;i<client.length;i++)
+        {
+            // The noisy remote sends its requests first.
+            String remote = i<5?"a":"b";
+            client[i]=new Socket("127.0.0.1",_connector.getLocalPort());
+            client[i].getOutputStream().write(("GET /"+remote+i+" HTTP/1.0\r\nForwarded: for="+("a".equals(remote)?"1.1.1.1":"2.2.2.2")+"\r\n\r\n").getBytes());
+            client[i].getOutputStream().flush();
+            if (i==4)
+                awaitQueued(handler,3);
+        }
+        awaitQueued(handler,6);
+        assertThat(handler.getActiveRequests(),is(2));
+        assertThat(handler.getRemoteCount(),is(2));
+        assertThat(handler.getTopQueuedRemotes().get(0),Matchers.containsString("ip=1.1.1.1"));
+        assertThat(handler.getTopQueuedRemotes().size(),is(2));
+
+        // Each completed request releases a permit to the next remote in round robin,
+        // the remote with weight 2 getting two permits per round.
+        for (int i=0;i<4;i++)
+        {
+            running.poll(10,TimeUnit.SECONDS).countDown();
+            long wait = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (started.size()<3+i && System.nanoTime()<wait)
+                Thread.sleep(1);
+        }
+        assertThat(started,Matchers.contains("a","a","a","b","b","a"));
+
+        while (started.size()<client.length)
+            running.poll(10,TimeUnit.SECONDS).countDown();
+        CountDownLatch latch;
+        while ((latch=running.poll())!=null)
+            latch.countDown();
+        for (Socket socket : client)
+            socket.close();
+    }
+
+    private void awaitQueued(ThreadLimitHandler handler, int queued) throws InterruptedException
+    {
+        long wait = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (handler.getQueuedRequests()<queued && System.nanoTime()<wait)
+            Thread.sleep(1);
+        assertThat(handler.getQueuedRequests(),is(queued));
+    }
+
+    @Test
+    public void testIdleRemotesExpire() throws Exception
+    {
+        ThreadLimitHandler handler = new ThreadLimitHandler("Forwarded");
+        handler.setIdleTimeout(100);
+        _server.setHandler(handler);
+        _server.start();
+
+        _local.getResponse("GET / HTTP/1.0\r\nForwarded: for=1.2.3.4\r\n\r\n");
+        _local.getResponse("GET / HTTP/1.0\r\nForwarded: for=6.6.6.6\r\n\r\n");
+        assertThat(handler.getRemoteCount(),is(2));
+
+        // Idle remotes are forgotten without further requests.
+        long wait = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (handler.getRemoteCount()>0 && System.nanoTime()<wait)
+            Thread.sleep(1);
+        assertThat(handler.getRemoteCount(),is(0));
+
+        _local.getResponse("GET / HTTP/1.0\r\nForwarded: for=6.6.6.6\r\n\r\n");
+        assertThat(handler.getRemoteCount(),is(1));
+        assertThat(handler.getExpiredRemotes(),is(2L));
+        assertThat(handler.getActiveRequests(),is(0));
+    }
 }
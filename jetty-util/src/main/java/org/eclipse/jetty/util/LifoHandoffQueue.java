@@ -0,0 +1,505 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.statistic.HistogramStatistic;
+
+/**
+ * <p>A lock-free, unbounded {@link BlockingQueue} that hands elements directly to the
+ * most recently arrived waiting consumer.</p>
+ * <p>Consumers blocked in {@link #poll(long, TimeUnit)} or {@link #take()} are parked on
+ * a lock-free stack: {@link #offer(Object)} pops the consumer that started waiting last,
+ * which is the most likely to still have a warm CPU cache, and hands it the element
+ * without queueing it. Only when no consumer is waiting, the element is queued in a
+ * lock-free FIFO queue.</p>
+ * <p>This queue is meant to be the job queue of a
+ * {@link org.eclipse.jetty.util.thread.QueuedThreadPool}, where it replaces the locks of
+ * {@link BlockingArrayQueue} with CAS operations and wakes the idle thread that idled last:</p>
+ * <pre>
+ * QueuedThreadPool threadPool = new QueuedThreadPool(200, 8, 60000, new LifoHandoffQueue&lt;&gt;());
+ * </pre>
+ * <p>The time elements wait before being consumed, whether queued or handed off, is recorded
+ * in a histogram reported by this queue.</p>
+ *
+ * @param <E> The element type
+ */
+@ManagedObject("A LIFO handoff blocking queue")
+public class LifoHandoffQueue<E> extends AbstractQueue<E> implements BlockingQueue<E>
+{
+    private static final Object CANCELLED = new Object();
+    private static final Object KICKED = new Object();
+
+    private final AtomicReference<Waiter> _waiters = new AtomicReference<>();
+    private final Queue<Entry<E>> _queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger _size = new AtomicInteger();
+    private final LongAdder _handoffs = new LongAdder();
+    private final LongAdder _queued = new LongAdder();
+    private final HistogramStatistic _latency = new HistogramStatistic();
+
+    @Override
+    public boolean offer(E e)
+    {
+        Objects.requireNonNull(e);
+        long nanos = System.nanoTime();
+        if (handoff(e, nanos))
+            return true;
+        enqueue(new Entry<>(e, nanos));
+        _queued.increment();
+        return true;
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit)
+    {
+        return offer(e);
+    }
+
+    @Override
+    public void put(E e)
+    {
+        offer(e);
+    }
+
+    @Override
+    public E poll()
+    {
+        Entry<E> entry = pollEntry();
+        if (entry == null)
+            return null;
+        _latency.record(System.nanoTime() - entry._nanos);
+        return entry._item;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return await(true, unit.toNanos(timeout));
+    }
+
+    @Override
+    public E take() throws InterruptedException
+    {
+        return await(false, 0);
+    }
+
+    @Override
+    public E peek()
+    {
+        Entry<E> entry = _queue.peek();
+        return entry == null ? null : entry._item;
+    }
+
+    @Override
+    public int size()
+    {
+        return _size.get();
+    }
+
+    @Override
+    public int remainingCapacity()
+    {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c)
+    {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements)
+    {
+        int drained = 0;
+        while (drained < maxElements)
+        {
+            E e = poll();
+            if (e == null)
+                break;
+            c.add(e);
+            ++drained;
+        }
+        return drained;
+    }
+
+    @Override
+    public Iterator<E> iterator()
+    {
+        Iterator<Entry<E>> iterator = _queue.iterator();
+        return new Iterator<E>()
+        {
+            private Entry<E> _last;
+
+            @Override
+            public boolean hasNext()
+            {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public E next()
+            {
+                _last = iterator.next();
+                return _last._item;
+            }
+
+            @Override
+            public void remove()
+            {
+                if (_last == null)
+                    throw new IllegalStateException();
+                if (_queue.remove(_last))
+                    _size.decrementAndGet();
+                _last = null;
+            }
+        };
+    }
+
+    /**
+     * @return the number of elements handed directly to a waiting consumer
+     */
+    @ManagedAttribute("The number of elements handed directly to a waiting consumer")
+    public long getHandoffs()
+    {
+        return _handoffs.sum();
+    }
+
+    /**
+     * @return the number of elements queued because no consumer was waiting
+     */
+    @ManagedAttribute("The number of elements queued because no consumer was waiting")
+    public long getQueued()
+    {
+        return _queued.sum();
+    }
+
+    /**
+     * @return the number of consumers waiting for an element
+     */
+    @ManagedAttribute("The number of consumers waiting for an element")
+    public int getWaiters()
+    {
+        int waiters = 0;
+        for (Waiter w = _waiters.get(); w != null; w = w._next)
+        {
+            if (w.get() == null)
+                ++waiters;
+        }
+        return waiters;
+    }
+
+    /**
+     * @return the histogram of the times in ns elements waited before being consumed
+     */
+    public HistogramStatistic getLatency()
+    {
+        return _latency;
+    }
+
+    @ManagedAttribute("The median time in us elements waited before being consumed")
+    public long getLatency50()
+    {
+        return TimeUnit.NANOSECONDS.toMicros(_latency.getValueAtPercentile(50));
+    }
+
+    @ManagedAttribute("The 99th percentile time in us elements waited before being consumed")
+    public long getLatency99()
+    {
+        return TimeUnit.NANOSECONDS.toMicros(_latency.getValueAtPercentile(99));
+    }
+
+    @ManagedAttribute("The 99.9th percentile time in us elements waited before being consumed")
+    public long getLatency999()
+    {
+        return TimeUnit.NANOSECONDS.toMicros(_latency.getValueAtPercentile(99.9));
+    }
+
+    @ManagedAttribute("The max time in us elements waited before being consumed")
+    public long getLatencyMax()
+    {
+        return TimeUnit.NANOSECONDS.toMicros(_latency.getMax());
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        _handoffs.reset();
+        _queued.reset();
+        _latency.reset();
+    }
+
+    private boolean handoff(E item, long nanos)
+    {
+        while (true)
+        {
+            Waiter w = popWaiter();
+            if (w == null)
+                return false;
+            // A waiter that cannot be matched has been cancelled, try the next one.
+            if (w.match(item, nanos))
+            {
+                _handoffs.increment();
+                return true;
+            }
+        }
+    }
+
+    private void enqueue(Entry<E> entry)
+    {
+        _size.incrementAndGet();
+        _queue.offer(entry);
+
+        // A consumer may have started waiting after handoff() found no waiter
+        // and may have missed the entry queued above, so check again.
+        Entry<E> pending = null;
+        while (true)
+        {
+            Waiter w = popWaiter();
+            if (w == null)
+            {
+                if (pending == null)
+                    return;
+                // The waiter was cancelled, queue the entry again and check again.
+                _size.incrementAndGet();
+                _queue.offer(pending);
+                pending = null;
+                continue;
+            }
+            if (pending == null)
+                pending = pollEntry();
+            if (pending == null)
+            {
+                // The entry has already been consumed, let the waiter wait again.
+                w.kick();
+                return;
+            }
+            if (w.match(pending._item, pending._nanos))
+                return;
+        }
+    }
+
+    private Entry<E> pollEntry()
+    {
+        Entry<E> entry = _queue.poll();
+        if (entry != null)
+            _size.decrementAndGet();
+        return entry;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E await(boolean timed, long nanos) throws InterruptedException
+    {
+        E item = poll();
+        if (item != null)
+            return item;
+
+        long deadline = System.nanoTime() + nanos;
+        while (true)
+        {
+            if (Thread.interrupted())
+                throw new InterruptedException();
+
+            Waiter w = new Waiter();
+            pushWaiter(w);
+
+            // An entry may have been queued before this waiter was visible.
+            Entry<E> entry = pollEntry();
+            if (entry != null)
+            {
+                if (w.cancel())
+                {
+                    clean();
+                    _latency.record(System.nanoTime() - entry._nanos);
+                    return entry._item;
+                }
+                // Raced with a handoff, give the entry back.
+                if (!handoff(entry._item, entry._nanos))
+                    enqueue(entry);
+            }
+
+            while (w.get() == null)
+            {
+                if (timed)
+                {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0)
+                    {
+                        if (w.cancel())
+                        {
+                            clean();
+                            return null;
+                        }
+                        continue;
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                }
+                else
+                {
+                    LockSupport.park(this);
+                }
+
+                if (Thread.interrupted())
+                {
+                    if (w.cancel())
+                    {
+                        clean();
+                        throw new InterruptedException();
+                    }
+                    // Already matched, preserve the interrupt for the caller.
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            Object state = w.get();
+            if (state != KICKED)
+            {
+                _latency.record(System.nanoTime() - w._nanos);
+                return (E)state;
+            }
+
+            item = poll();
+            if (item != null)
+                return item;
+        }
+    }
+
+    private void pushWaiter(Waiter w)
+    {
+        while (true)
+        {
+            Waiter head = _waiters.get();
+            w._next = head;
+            if (_waiters.compareAndSet(head, w))
+                return;
+        }
+    }
+
+    private Waiter popWaiter()
+    {
+        while (true)
+        {
+            Waiter head = _waiters.get();
+            if (head == null)
+                return null;
+            if (_waiters.compareAndSet(head, head._next))
+                return head;
+        }
+    }
+
+    private void clean()
+    {
+        // Pop the cancelled waiters at the top of the stack.
+        Waiter w;
+        while ((w = _waiters.get()) != null && w.isCancelled())
+            _waiters.compareAndSet(w, w._next);
+
+        // Unlink the cancelled waiters in the rest of the stack.
+        while (w != null)
+        {
+            Waiter next = w._next;
+            if (next != null && next.isCancelled())
+                w.casNext(next, next._next);
+            else
+                w = next;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{size=%d,waiters=%d}", getClass().getSimpleName(), hashCode(), size(), getWaiters());
+    }
+
+    private static class Entry<E>
+    {
+        private final E _item;
+        private final long _nanos;
+
+        private Entry(E item, long nanos)
+        {
+            _item = item;
+            _nanos = nanos;
+        }
+    }
+
+    /**
+     * <p>A consumer waiting on the stack.</p>
+     * <p>The value is null while waiting, then either the element handed to the consumer,
+     * {@link #CANCELLED} if the consumer stopped waiting, or {@link #KICKED} if the
+     * consumer was removed from the stack without an element and must wait again.
+     * Only the thread that popped the waiter from the stack can hand it an element.</p>
+     */
+    @SuppressWarnings("serial")
+    private static class Waiter extends AtomicReference<Object>
+    {
+        private static final AtomicReferenceFieldUpdater<Waiter, Waiter> NEXT =
+                AtomicReferenceFieldUpdater.newUpdater(Waiter.class, Waiter.class, "_next");
+
+        private final Thread _thread = Thread.currentThread();
+        private volatile Waiter _next;
+        private long _nanos;
+
+        private boolean match(Object item, long nanos)
+        {
+            _nanos = nanos;
+            if (!compareAndSet(null, item))
+                return false;
+            LockSupport.unpark(_thread);
+            return true;
+        }
+
+        private void kick()
+        {
+            if (compareAndSet(null, KICKED))
+                LockSupport.unpark(_thread);
+        }
+
+        private boolean cancel()
+        {
+            return compareAndSet(null, CANCELLED);
+        }
+
+        private boolean isCancelled()
+        {
+            return get() == CANCELLED;
+        }
+
+        private void casNext(Waiter expected, Waiter next)
+        {
+            NEXT.compareAndSet(this, expected, next);
+        }
+    }
+}
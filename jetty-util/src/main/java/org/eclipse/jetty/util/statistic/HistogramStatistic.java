@@ -0,0 +1,142 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.statistic;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>A lock-free histogram of non negative samples, such as latencies in nanoseconds.</p>
+ * <p>Samples are counted in log-linear buckets, in the style of HDR histograms: each power
+ * of two range is divided in 8 linear sub-buckets, so that percentiles are reported with
+ * a relative error below 12.5% over the whole range of {@code long} values, using a fixed
+ * array of counters.</p>
+ * <p>Recording a sample is lock-free: an atomic increment of the bucket counter, plus
+ * updates of the max, total and count that are striped {@link LongAccumulator} and
+ * {@link LongAdder} cells, so that histograms can be left enabled in production.
+ * The max, total and count are updated independently of the bucket counters, so a
+ * snapshot concurrent with recordings may be slightly inconsistent between them, and
+ * a {@link #reset()} concurrent with recordings may lose or retain some samples.</p>
+ */
+public class HistogramStatistic
+{
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray _counts = new AtomicLongArray(BUCKETS);
+    private final LongAccumulator _max = new LongAccumulator(Math::max, 0L);
+    private final LongAdder _total = new LongAdder();
+    private final LongAdder _count = new LongAdder();
+
+    public void reset()
+    {
+        for (int i = 0; i < BUCKETS; ++i)
+            _counts.set(i, 0);
+        _max.reset();
+        _total.reset();
+        _count.reset();
+    }
+
+    /**
+     * @param sample the sample to record, negative samples are recorded as 0
+     */
+    public void record(long sample)
+    {
+        if (sample < 0)
+            sample = 0;
+        _counts.incrementAndGet(indexOf(sample));
+        _max.accumulate(sample);
+        _total.add(sample);
+        _count.increment();
+    }
+
+    public long getCount()
+    {
+        return _count.sum();
+    }
+
+    public long getTotal()
+    {
+        return _total.sum();
+    }
+
+    public long getMax()
+    {
+        return _max.get();
+    }
+
+    public double getMean()
+    {
+        long count = getCount();
+        return count == 0 ? 0.0 : (double)getTotal() / count;
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100
+     * @return the highest value equivalent to the sample at the given percentile, or 0 if no samples were recorded
+     */
+    public long getValueAtPercentile(double percentile)
+    {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; ++i)
+        {
+            counts[i] = _counts.get(i);
+            total += counts[i];
+        }
+        if (total == 0)
+            return 0;
+        long target = Math.max(1, (long)Math.ceil(Math.min(Math.max(percentile, 0.0), 100.0) * total / 100.0));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS; ++i)
+        {
+            cumulative += counts[i];
+            if (cumulative >= target)
+                return Math.min(highestValueOf(i), getMax());
+        }
+        return getMax();
+    }
+
+    static int indexOf(long value)
+    {
+        if (value < SUB_BUCKETS)
+            return (int)value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int sub = (int)(value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long highestValueOf(int index)
+    {
+        if (index < SUB_BUCKETS)
+            return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long)(SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{c=%d,p50=%d,p99=%d,p999=%d,m=%d}", getClass().getSimpleName(), hashCode(),
+                getCount(), getValueAtPercentile(50), getValueAtPercentile(99), getValueAtPercentile(99.9), getMax());
+    }
+}
@@ -0,0 +1,184 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.thread;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+
+/**
+ * <p>A slice of dedicated threads, one of several partitions of the threads of a server.</p>
+ * <p>A partition owns a small {@link QueuedThreadPool} whose threads are reserved by a
+ * {@link ReservedThreadExecutor}, so that {@link #execute(Runnable)} hands a task directly
+ * to an idle thread of this partition if there is one, then to an idle thread of one of the
+ * {@link #setPeers(List) peer partitions}, and only if all of them are busy submits the
+ * task to the shared executor.</p>
+ * <p>Partitions are used by the {@code SelectorManager} to give each selector its own
+ * worker and producer threads, so that a connection tends to be handled by the same few
+ * threads, keeping its state in the cache of the same cores.
+ * An optional {@link ThreadAffinity} is invoked by each thread of the partition when it
+ * starts, for example to pin it to the CPUs of a NUMA node.</p>
+ */
+@ManagedObject("A partition of threads")
+public class ExecutorPartition extends ContainerLifeCycle implements Executor
+{
+    private final LongAdder _local = new LongAdder();
+    private final LongAdder _stolen = new LongAdder();
+    private final LongAdder _shared = new LongAdder();
+    private final int _index;
+    private final Executor _executor;
+    private final QueuedThreadPool _threadPool;
+    private final ReservedThreadExecutor _reserved;
+    private volatile List<ExecutorPartition> _peers = Collections.emptyList();
+
+    /**
+     * @param name the name prefix of the threads of the partition
+     * @param index the index of this partition
+     * @param threads the number of threads of this partition
+     * @param executor the shared executor used when no partition thread is idle
+     * @param affinity the affinity applied to the threads of this partition, or null
+     */
+    public ExecutorPartition(String name, int index, int threads, Executor executor, ThreadAffinity affinity)
+    {
+        if (threads <= 0)
+            throw new IllegalArgumentException("Invalid threads " + threads);
+        _index = index;
+        _executor = executor;
+        // Extra threads replace the reserved threads that are running tasks.
+        _threadPool = new QueuedThreadPool(2 * threads, threads)
+        {
+            @Override
+            protected Thread newThread(Runnable runnable)
+            {
+                if (affinity == null)
+                    return super.newThread(runnable);
+                return super.newThread(() ->
+                {
+                    affinity.bind(index);
+                    runnable.run();
+                });
+            }
+        };
+        _threadPool.setName(name + "-" + index);
+        _threadPool.setDaemon(true);
+        _reserved = new ReservedThreadExecutor(_threadPool, threads);
+        addBean(_threadPool);
+        addBean(_reserved);
+    }
+
+    public int getIndex()
+    {
+        return _index;
+    }
+
+    /**
+     * @return the reserved threads of this partition
+     */
+    public ReservedThreadExecutor getReservedThreadExecutor()
+    {
+        return _reserved;
+    }
+
+    /**
+     * @param peers the partitions from which idle threads may be stolen, may include this partition
+     */
+    public void setPeers(List<ExecutorPartition> peers)
+    {
+        _peers = peers;
+    }
+
+    @Override
+    public void execute(Runnable task) throws RejectedExecutionException
+    {
+        if (_reserved.tryExecute(task))
+        {
+            _local.increment();
+            return;
+        }
+
+        List<ExecutorPartition> peers = _peers;
+        int size = peers.size();
+        for (int i = 1; i <= size; ++i)
+        {
+            ExecutorPartition peer = peers.get((_index + i) % size);
+            if (peer != this && peer._reserved.tryExecute(task))
+            {
+                _stolen.increment();
+                return;
+            }
+        }
+
+        _shared.increment();
+        _executor.execute(task);
+    }
+
+    @ManagedAttribute("The number of tasks run by a thread of this partition")
+    public long getLocalTasks()
+    {
+        return _local.sum();
+    }
+
+    @ManagedAttribute("The number of tasks run by a thread of another partition")
+    public long getStolenTasks()
+    {
+        return _stolen.sum();
+    }
+
+    @ManagedAttribute("The number of tasks run by the shared executor")
+    public long getSharedTasks()
+    {
+        return _shared.sum();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void reset()
+    {
+        _local.reset();
+        _stolen.reset();
+        _shared.reset();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,%d,local=%d,stolen=%d,shared=%d}", getClass().getSimpleName(), hashCode(), getState(), _index,
+                getLocalTasks(), getStolenTasks(), getSharedTasks());
+    }
+
+    /**
+     * <p>A hook to bind the threads of a partition to a set of CPUs.</p>
+     */
+    @FunctionalInterface
+    public interface ThreadAffinity
+    {
+        /**
+         * <p>Invoked by each thread of a partition when it starts, before it runs any task.</p>
+         *
+         * @param partition the index of the partition of the calling thread
+         */
+        void bind(int partition);
+    }
+}
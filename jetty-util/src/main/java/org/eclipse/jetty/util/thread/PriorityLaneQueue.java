@@ -0,0 +1,486 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.thread;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.statistic.HistogramStatistic;
+
+/**
+ * <p>A {@link BlockingQueue} of jobs with two lanes: a priority lane for the jobs that
+ * declare themselves as {@link Invocable.InvocationType#NON_BLOCKING non blocking} and
+ * a normal lane for all the other jobs.</p>
+ * <p>Jobs are polled from the priority lane first, so that short control tasks
+ * such as HTTP/2 control frames, TLS handshake steps or connection closes do not wait
+ * behind the application jobs that are queued in the normal lane. However, after
+ * {@link #getMaxPriorityBurst() a number} of consecutive priority jobs, a job of the
+ * normal lane is polled if any, so that a steady flow of priority jobs cannot starve
+ * the normal lane. Within a lane jobs are consumed in FIFO order.</p>
+ * <p>This queue is meant to be the job queue of a {@link QueuedThreadPool}:</p>
+ * <pre>
+ * QueuedThreadPool threadPool = new QueuedThreadPool(200, 8, 60000, new PriorityLaneQueue());
+ * </pre>
+ * <p>The normal lane may be bounded, while the priority lane is unbounded so that control
+ * tasks are never rejected. The size of each lane and the time jobs wait in each lane
+ * are reported by this queue.</p>
+ */
+@ManagedObject("A job queue with a priority lane for non blocking jobs")
+public class PriorityLaneQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable>
+{
+    private final Locker _locker = new Locker();
+    private final Condition _notEmpty = _locker.newCondition();
+    private final Lane _priority = new Lane();
+    private final Lane _normal = new Lane();
+    private final int _maxCapacity;
+    private volatile int _maxPriorityBurst = 16;
+    private int _priorityBurst;
+
+    public PriorityLaneQueue()
+    {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxCapacity the max number of jobs in the normal lane
+     */
+    public PriorityLaneQueue(int maxCapacity)
+    {
+        if (maxCapacity <= 0)
+            throw new IllegalArgumentException("Invalid max capacity " + maxCapacity);
+        _maxCapacity = maxCapacity;
+    }
+
+    /**
+     * @param job the job to queue
+     * @return whether the job is queued in the priority lane
+     */
+    protected boolean isPriority(Runnable job)
+    {
+        return Invocable.getInvocationType(job) == Invocable.InvocationType.NON_BLOCKING;
+    }
+
+    @Override
+    public boolean offer(Runnable job)
+    {
+        Objects.requireNonNull(job);
+        boolean priority = isPriority(job);
+        try (Locker.Lock lock = _locker.lock())
+        {
+            if (priority)
+                _priority.add(job);
+            else if (_normal.size() >= _maxCapacity)
+                return false;
+            else
+                _normal.add(job);
+            _notEmpty.signal();
+            return true;
+        }
+    }
+
+    @Override
+    public void put(Runnable job) throws InterruptedException
+    {
+        if (!offer(job))
+            throw new IllegalStateException("Queue full");
+    }
+
+    @Override
+    public boolean offer(Runnable job, long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return offer(job);
+    }
+
+    @Override
+    public Runnable poll()
+    {
+        try (Locker.Lock lock = _locker.lock())
+        {
+            return dequeue();
+        }
+    }
+
+    @Override
+    public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long nanos = unit.toNanos(timeout);
+        try (Locker.Lock lock = _locker.lock())
+        {
+            while (true)
+            {
+                Runnable job = dequeue();
+                if (job != null)
+                    return job;
+                if (nanos <= 0)
+                    return null;
+                nanos = _notEmpty.awaitNanos(nanos);
+            }
+        }
+    }
+
+    @Override
+    public Runnable take() throws InterruptedException
+    {
+        try (Locker.Lock lock = _locker.lock())
+        {
+            while (true)
+            {
+                Runnable job = dequeue();
+                if (job != null)
+                    return job;
+                _notEmpty.await();
+            }
+        }
+    }
+
+    private boolean isNormalTurn()
+    {
+        return _priorityBurst >= _maxPriorityBurst && _normal.size() > 0;
+    }
+
+    private Runnable dequeue()
+    {
+        if (!isNormalTurn())
+        {
+            Runnable job = _priority.poll();
+            if (job != null)
+            {
+                ++_priorityBurst;
+                return job;
+            }
+        }
+        _priorityBurst = 0;
+        return _normal.poll();
+    }
+
+    @Override
+    public Runnable peek()
+    {
+        try (Locker.Lock lock = _locker.lock())
+        {
+            Runnable job = isNormalTurn() ? null : _priority.peek();
+            return job == null ? _normal.peek() : job;
+        }
+    }
+
+    @Override
+    public boolean remove(Object o)
+    {
+        try (Locker.Lock lock = _locker.lock())
+        {
+            return _priority.remove(o) || _normal.remove(o);
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        try (Locker.Lock lock = _locker.lock())
+        {
+            return _priority.size() + _normal.size();
+        }
+    }
+
+    @Override
+    public int remainingCapacity()
+    {
+        try (Locker.Lock lock = _locker.lock())
+        {
+            return _maxCapacity - _normal.size();
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c)
+    {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Runnable> c, int maxElements)
+    {
+        if (c == this)
+            throw new IllegalArgumentException();
+        int drained = 0;
+        try (Locker.Lock lock = _locker.lock())
+        {
+            while (drained < maxElements)
+            {
+                Runnable job = dequeue();
+                if (job == null)
+                    break;
+                c.add(job);
+                ++drained;
+            }
+        }
+        return drained;
+    }
+
+    @Override
+    public Iterator<Runnable> iterator()
+    {
+        // Returns a snapshot, with the jobs of the priority lane first.
+        List<Runnable> jobs = new ArrayList<>();
+        try (Locker.Lock lock = _locker.lock())
+        {
+            _priority.copyTo(jobs);
+            _normal.copyTo(jobs);
+        }
+        return jobs.iterator();
+    }
+
+    @ManagedAttribute("The max number of jobs in the normal lane")
+    public int getMaxCapacity()
+    {
+        return _maxCapacity;
+    }
+
+    @ManagedAttribute("The max number of consecutive priority jobs polled while normal jobs wait")
+    public int getMaxPriorityBurst()
+    {
+        return _maxPriorityBurst;
+    }
+
+    /**
+     * @param maxPriorityBurst the max number of consecutive jobs polled from the
+     * priority lane before a job of the normal lane is polled
+     */
+    public void setMaxPriorityBurst(int maxPriorityBurst)
+    {
+        if (maxPriorityBurst <= 0)
+            throw new IllegalArgumentException("Invalid max priority burst " + maxPriorityBurst);
+        _maxPriorityBurst = maxPriorityBurst;
+    }
+
+    @ManagedAttribute("The number of jobs in the priority lane")
+    public int getPrioritySize()
+    {
+        try (Locker.Lock lock = _locker.lock())
+        {
+            return _priority.size();
+        }
+    }
+
+    @ManagedAttribute("The number of jobs in the normal lane")
+    public int getNormalSize()
+    {
+        try (Locker.Lock lock = _locker.lock())
+        {
+            return _normal.size();
+        }
+    }
+
+    @ManagedAttribute("The max number of jobs in the priority lane")
+    public int getPriorityMaxSize()
+    {
+        return _priority._maxSize;
+    }
+
+    @ManagedAttribute("The max number of jobs in the normal lane")
+    public int getNormalMaxSize()
+    {
+        return _normal._maxSize;
+    }
+
+    @ManagedAttribute("The number of jobs queued in the priority lane")
+    public long getPriorityJobs()
+    {
+        return _priority._jobs.sum();
+    }
+
+    @ManagedAttribute("The number of jobs queued in the normal lane")
+    public long getNormalJobs()
+    {
+        return _normal._jobs.sum();
+    }
+
+    @ManagedAttribute("The 99th percentile of the wait time in the priority lane in µs")
+    public long getPriorityWaitTime99()
+    {
+        return toMicros(_priority._waitTimes.getValueAtPercentile(99.0));
+    }
+
+    @ManagedAttribute("The max wait time in the priority lane in µs")
+    public long getPriorityWaitTimeMax()
+    {
+        return toMicros(_priority._waitTimes.getMax());
+    }
+
+    @ManagedAttribute("The 99th percentile of the wait time in the normal lane in µs")
+    public long getNormalWaitTime99()
+    {
+        return toMicros(_normal._waitTimes.getValueAtPercentile(99.0));
+    }
+
+    @ManagedAttribute("The max wait time in the normal lane in µs")
+    public long getNormalWaitTimeMax()
+    {
+        return toMicros(_normal._waitTimes.getMax());
+    }
+
+    /**
+     * @return the histogram of the nanoseconds jobs waited in the priority lane
+     */
+    public HistogramStatistic getPriorityWaitTimes()
+    {
+        return _priority._waitTimes;
+    }
+
+    /**
+     * @return the histogram of the nanoseconds jobs waited in the normal lane
+     */
+    public HistogramStatistic getNormalWaitTimes()
+    {
+        return _normal._waitTimes;
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        try (Locker.Lock lock = _locker.lock())
+        {
+            _priority.reset();
+            _normal.reset();
+        }
+    }
+
+    private static long toMicros(long nanos)
+    {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    @Override
+    public String toString()
+    {
+        try (Locker.Lock lock = _locker.lock())
+        {
+            return String.format("%s@%x{p=%d,n=%d/%d}", getClass().getSimpleName(), hashCode(), _priority.size(), _normal.size(), _maxCapacity);
+        }
+    }
+
+    private static class Lane
+    {
+        // A ring of the jobs and of the times they were queued, accessed with the lock held.
+        private Runnable[] _queue = new Runnable[16];
+        private long[] _times = new long[16];
+        private int _head;
+        private int _size;
+        private final LongAdder _jobs = new LongAdder();
+        private final HistogramStatistic _waitTimes = new HistogramStatistic();
+        private volatile int _maxSize;
+
+        private int index(int i)
+        {
+            return (_head + i) & (_queue.length - 1);
+        }
+
+        private void add(Runnable job)
+        {
+            if (_size == _queue.length)
+                grow();
+            int tail = index(_size);
+            _queue[tail] = job;
+            _times[tail] = System.nanoTime();
+            ++_size;
+            _jobs.increment();
+            if (_size > _maxSize)
+                _maxSize = _size;
+        }
+
+        private void grow()
+        {
+            Runnable[] queue = new Runnable[_queue.length * 2];
+            long[] times = new long[queue.length];
+            for (int i = 0; i < _size; ++i)
+            {
+                queue[i] = _queue[index(i)];
+                times[i] = _times[index(i)];
+            }
+            _queue = queue;
+            _times = times;
+            _head = 0;
+        }
+
+        private Runnable poll()
+        {
+            if (_size == 0)
+                return null;
+            Runnable job = _queue[_head];
+            _queue[_head] = null;
+            _waitTimes.record(System.nanoTime() - _times[_head]);
+            _head = index(1);
+            --_size;
+            return job;
+        }
+
+        private Runnable peek()
+        {
+            return _size == 0 ? null : _queue[_head];
+        }
+
+        private boolean remove(Object o)
+        {
+            for (int i = 0; i < _size; ++i)
+            {
+                if (_queue[index(i)].equals(o))
+                {
+                    // Shift the following jobs to fill the gap.
+                    for (int j = i + 1; j < _size; ++j)
+                    {
+                        _queue[index(j - 1)] = _queue[index(j)];
+                        _times[index(j - 1)] = _times[index(j)];
+                    }
+                    _queue[index(_size - 1)] = null;
+                    --_size;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int size()
+        {
+            return _size;
+        }
+
+        private void copyTo(List<Runnable> jobs)
+        {
+            for (int i = 0; i < _size; ++i)
+                jobs.add(_queue[index(i)]);
+        }
+
+        private void reset()
+        {
+            _jobs.reset();
+            _waitTimes.reset();
+            _maxSize = _size;
+        }
+    }
+}
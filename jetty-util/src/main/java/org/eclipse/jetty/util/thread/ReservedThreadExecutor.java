@@ -20,8 +20,13 @@ package org.eclipse.jetty.util.thread;
 
 import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Condition;
 
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.component.AbstractLifeCycle;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
@@ -31,17 +36,26 @@ import org.eclipse.jetty.util.log.Logger;
  * <p>Calls to {@link #execute(Runnable)} on a {@link ReservedThreadExecutor} will either succeed
  * with a Thread immediately being assigned the Runnable task, or fail if no Thread is
  * available. Threads are preallocated up to the capacity from a wrapped {@link Executor}.
+ * <p>The number of reserved threads adapts to the load: a call to {@link #tryExecute(Runnable)}
+ * that misses because no thread is reserved starts a new reserved thread, up to the capacity,
+ * while a reserved thread that has not been used for the {@link #getIdleTimeout(TimeUnit) idle timeout}
+ * is released back to the wrapped Executor. The most recently reserved thread is used first,
+ * so that the threads in excess are the ones that idle out.
  */
+@ManagedObject("A pool for reserved threads")
 public class ReservedThreadExecutor extends AbstractLifeCycle implements Executor
 {
     private static final Logger LOG = Log.getLogger(ReservedThreadExecutor.class);
     
     private final Executor _executor;
     private final Locker _locker = new Locker();
-    private final ReservedThread[] _queue;
-    private int _head;
+    private final ReservedThread[] _stack;
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _idleExpirations = new LongAdder();
     private int _size;
     private int _pending;
+    private long _idleTimeoutNanos = TimeUnit.MINUTES.toNanos(1);
     
     public ReservedThreadExecutor(Executor executor)
     {
@@ -72,7 +86,7 @@ public class ReservedThreadExecutor extends AbstractLifeCycle implements Executo
             }
         }
         
-        _queue = new ReservedThread[capacity];
+        _stack = new ReservedThread[capacity];
     }
 
     public Executor getExecutor()
@@ -80,11 +94,13 @@ public class ReservedThreadExecutor extends AbstractLifeCycle implements Executo
         return _executor;
     }
     
+    @ManagedAttribute("max number of reserved threads")
     public int getCapacity()
     {
-        return _queue.length;
+        return _stack.length;
     }
     
+    @ManagedAttribute("number of reserved threads available")
     public int getPreallocated()
     {
         try (Locker.Lock lock = _locker.lock())
@@ -92,14 +108,76 @@ public class ReservedThreadExecutor extends AbstractLifeCycle implements Executo
             return _size;
         }
     }
+
+    @ManagedAttribute("number of reserved threads being started")
+    public int getPending()
+    {
+        try (Locker.Lock lock = _locker.lock())
+        {
+            return _pending;
+        }
+    }
+
+    @ManagedAttribute("number of tasks assigned to a reserved thread")
+    public long getHits()
+    {
+        return _hits.sum();
+    }
+
+    @ManagedAttribute("number of tasks rejected because no reserved thread was available")
+    public long getMisses()
+    {
+        return _misses.sum();
+    }
+
+    @ManagedAttribute("number of reserved threads released after the idle timeout")
+    public long getIdleExpirations()
+    {
+        return _idleExpirations.sum();
+    }
+
+    @ManagedOperation(value = "resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        _hits.reset();
+        _misses.reset();
+        _idleExpirations.reset();
+    }
+
+    /**
+     * @param unit the time unit of the returned value
+     * @return the time a reserved thread waits for a task before being released, or a non positive value to wait forever
+     */
+    public long getIdleTimeout(TimeUnit unit)
+    {
+        return unit.convert(_idleTimeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @ManagedAttribute("idle timeout in ms of the reserved threads")
+    public long getIdleTimeoutMs()
+    {
+        return getIdleTimeout(TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * <p>Sets the time a reserved thread waits for a task before being released back to the
+     * wrapped Executor, so that the threads reserved during a load peak are not kept forever.</p>
+     *
+     * @param idleTimeout the idle timeout, or a non positive value to never release reserved threads
+     * @param unit the time unit of the idle timeout
+     */
+    public void setIdleTimeout(long idleTimeout, TimeUnit unit)
+    {
+        _idleTimeoutNanos = unit.toNanos(idleTimeout);
+    }
     
     @Override
     public void doStart() throws Exception
     {
         try (Locker.Lock lock = _locker.lock())
         {
-            _head = _size = _pending = 0;
-            while (_pending<_queue.length)
+            _size = _pending = 0;
+            while (_pending<_stack.length)
             {
                 _executor.execute(new ReservedThread());
                 _pending++;
@@ -114,10 +192,8 @@ public class ReservedThreadExecutor extends AbstractLifeCycle implements Executo
         {
             while (_size>0)
             {
-                ReservedThread thread = _queue[_head];
-                _queue[_head] = null;
-                _head = (_head+1)%_queue.length;
-                _size--;
+                ReservedThread thread = _stack[--_size];
+                _stack[_size] = null;
                 thread._wakeup.signal();
             }
         }
@@ -143,7 +219,8 @@ public class ReservedThreadExecutor extends AbstractLifeCycle implements Executo
         {
             if (_size==0)
             {
-                if (_pending<_queue.length)
+                _misses.increment();
+                if (_pending<_stack.length)
                 {
                     _executor.execute(new ReservedThread());
                     _pending++;
@@ -151,12 +228,10 @@ public class ReservedThreadExecutor extends AbstractLifeCycle implements Executo
                 return false;
             }
             
-            ReservedThread thread = _queue[_head];
-            _queue[_head] = null;
-            _head = (_head+1)%_queue.length;
-            _size--;
+            ReservedThread thread = _stack[--_size];
+            _stack[_size] = null;
             
-            if (_size==0 && _pending<_queue.length)
+            if (_size==0 && _pending<_stack.length)
             {
                 _executor.execute(new ReservedThread());
                 _pending++;
@@ -164,6 +239,7 @@ public class ReservedThreadExecutor extends AbstractLifeCycle implements Executo
             
             thread._task = task;
             thread._wakeup.signal();
+            _hits.increment();
             
             return true;
         }
@@ -174,15 +250,24 @@ public class ReservedThreadExecutor extends AbstractLifeCycle implements Executo
         }
     }
 
-    private class ReservedThread implements Runnable
+    private boolean remove(ReservedThread thread)
     {
-        private Condition _wakeup = null;
-        private Runnable _task = null;
-        
-        private void reservedWait() throws InterruptedException
+        for (int i=_size;i-->0;)
         {
-            _wakeup.await();
+            if (_stack[i]==thread)
+            {
+                System.arraycopy(_stack,i+1,_stack,i,_size-i-1);
+                _stack[--_size] = null;
+                return true;
+            }
         }
+        return false;
+    }
+
+    private class ReservedThread implements VirtualThreadPool.PlatformJob
+    {
+        private Condition _wakeup = null;
+        private Runnable _task = null;
         
         @Override
         public void run()
@@ -201,41 +286,58 @@ public class ReservedThreadExecutor extends AbstractLifeCycle implements Executo
                     }
                     
                     // Exit if no longer running or there now too many preallocated threads
-                    if (!isRunning() || _size>=_queue.length)
+                    if (!isRunning() || _size>=_stack.length)
                         break;
                     
-                    // Insert ourselves in the queue
-                    _queue[(_head+_size++)%_queue.length] = this;
+                    // Push ourselves on the stack
+                    _stack[_size++] = this;
 
                     // Wait for a task, ignoring spurious interrupts
-                    do
+                    long idleTimeout = _idleTimeoutNanos;
+                    long remaining = idleTimeout;
+                    while (true)
                     {
+                        task = _task;
+                        _task = null;
+                        if (task!=null || !isRunning())
+                            break;
                         try
                         {
-                            reservedWait();
-                            task = _task;
-                            _task = null;
+                            if (idleTimeout<=0)
+                            {
+                                _wakeup.await();
+                            }
+                            else
+                            {
+                                if (remaining<=0)
+                                {
+                                    // Idle for too long, release this thread if it is still reserved.
+                                    if (remove(this))
+                                        _idleExpirations.increment();
+                                    break;
+                                }
+                                remaining = _wakeup.awaitNanos(remaining);
+                            }
                         }
                         catch (InterruptedException e)
                         {
                             LOG.ignore(e);
                         }
                     }
-                    while (isRunning() && task==null);
+
+                    if (task==null)
+                        break;
                 }
 
                 // Run any task 
-                if (task!=null)
+                try
                 {
-                    try
-                    {
-                        task.run();
-                    }
-                    catch (Exception e)
-                    {
-                        LOG.warn(e);
-                        break;
-                    }
+                    task.run();
+                }
+                catch (Exception e)
+                {
+                    LOG.warn(e);
+                    break;
                 }
             }
         }
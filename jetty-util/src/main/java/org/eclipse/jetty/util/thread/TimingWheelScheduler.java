@@ -0,0 +1,351 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.thread;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.component.Dumpable;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>Implementation of {@link Scheduler} based on a hashed timing wheel.</p>
+ * <p>Time is divided in ticks of a configurable duration, and the wheel is an array of
+ * buckets, one per tick, that is walked by a single thread once per tick.
+ * A task is hashed into the bucket of the tick at which it expires, and it is
+ * executed when the wheel reaches that bucket after the number of complete
+ * revolutions needed to reach its deadline.</p>
+ * <p>Scheduling and cancelling a task are O(1) operations that only enqueue the task
+ * in a concurrent queue; the wheel itself is only accessed by the wheel thread.
+ * This makes this scheduler well suited to a very large number of timeouts that are
+ * mostly cancelled before they expire, such as the idle timeouts of connections,
+ * at the cost of a precision of one tick: tasks may be executed up to one tick
+ * after their deadline.</p>
+ * <p>Like {@link ScheduledExecutorScheduler}, tasks are executed by the single
+ * scheduler thread, so they must be quick and non blocking.</p>
+ * <p>This scheduler may be used by a {@code Server} by adding it as a bean (in place of the
+ * default {@link ScheduledExecutorScheduler}), and by {@code HttpClient} via its
+ * {@code setScheduler(Scheduler)} method.</p>
+ */
+@ManagedObject("A timing wheel scheduler")
+public class TimingWheelScheduler extends AbstractLifeCycle implements Scheduler, Dumpable
+{
+    private static final Logger LOG = Log.getLogger(TimingWheelScheduler.class);
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final Queue<WheelTask> _scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<WheelTask> _cancelled = new ConcurrentLinkedQueue<>();
+    private final String _name;
+    private final boolean _daemon;
+    private final long _tickNanos;
+    private final WheelTask[] _wheel;
+    private final int _mask;
+    private volatile Thread _thread;
+    private volatile long _startNanos;
+    private long _tick;
+
+    public TimingWheelScheduler()
+    {
+        this(null, false);
+    }
+
+    public TimingWheelScheduler(String name, boolean daemon)
+    {
+        this(name, daemon, 50, TimeUnit.MILLISECONDS, 512);
+    }
+
+    /**
+     * @param name the name of the scheduler thread
+     * @param daemon whether the scheduler thread is a daemon thread
+     * @param tickDuration the duration of a tick, which is the precision of this scheduler
+     * @param unit the unit of the tick duration
+     * @param ticksPerWheel the number of buckets of the wheel, rounded up to a power of 2
+     */
+    public TimingWheelScheduler(String name, boolean daemon, long tickDuration, TimeUnit unit, int ticksPerWheel)
+    {
+        if (tickDuration <= 0)
+            throw new IllegalArgumentException("Invalid tick duration " + tickDuration);
+        if (ticksPerWheel <= 0 || ticksPerWheel > 1 << 30)
+            throw new IllegalArgumentException("Invalid ticks per wheel " + ticksPerWheel);
+        _name = name == null ? "Scheduler-" + hashCode() : name;
+        _daemon = daemon;
+        _tickNanos = Math.max(unit.toNanos(tickDuration), TimeUnit.MILLISECONDS.toNanos(1));
+        int size = Integer.highestOneBit(ticksPerWheel);
+        if (size < ticksPerWheel)
+            size <<= 1;
+        _wheel = new WheelTask[size];
+        _mask = size - 1;
+    }
+
+    @ManagedAttribute("The duration of a tick in ms")
+    public long getTickDuration()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(_tickNanos);
+    }
+
+    @ManagedAttribute("The number of buckets of the wheel")
+    public int getTicksPerWheel()
+    {
+        return _wheel.length;
+    }
+
+    @ManagedAttribute("The number of tasks scheduled but not yet hashed into the wheel")
+    public int getPendingTasks()
+    {
+        return _scheduled.size();
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        _startNanos = System.nanoTime();
+        _tick = 0;
+        super.doStart();
+        Thread thread = new Thread(this::turn, _name);
+        thread.setDaemon(_daemon);
+        _thread = thread;
+        thread.start();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+        Thread thread = _thread;
+        _thread = null;
+        if (thread != null)
+        {
+            LockSupport.unpark(thread);
+            if (thread != Thread.currentThread())
+                thread.join();
+        }
+        Arrays.fill(_wheel, null);
+        _scheduled.clear();
+        _cancelled.clear();
+    }
+
+    @Override
+    public Task schedule(Runnable task, long delay, TimeUnit unit)
+    {
+        if (!isRunning())
+            return () -> false;
+
+        long deadline = System.nanoTime() - _startNanos + unit.toNanos(Math.max(delay, 0));
+        WheelTask wheelTask = new WheelTask(task, deadline);
+        _scheduled.offer(wheelTask);
+        return wheelTask;
+    }
+
+    private void turn()
+    {
+        while (isRunning())
+        {
+            if (!waitForNextTick())
+                break;
+            removeCancelled();
+            hashScheduled();
+            expire((int)(_tick & _mask), (_tick + 1) * _tickNanos);
+            ++_tick;
+        }
+    }
+
+    private boolean waitForNextTick()
+    {
+        long deadline = _startNanos + (_tick + 1) * _tickNanos;
+        while (true)
+        {
+            if (_thread == null)
+                return false;
+            long wait = deadline - System.nanoTime();
+            if (wait <= 0)
+                return true;
+            LockSupport.parkNanos(this, wait);
+        }
+    }
+
+    private void removeCancelled()
+    {
+        while (true)
+        {
+            WheelTask task = _cancelled.poll();
+            if (task == null)
+                return;
+            unlink(task);
+        }
+    }
+
+    private void hashScheduled()
+    {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; ++i)
+        {
+            WheelTask task = _scheduled.poll();
+            if (task == null)
+                return;
+            if (task.isCancelled())
+                continue;
+            // Tasks whose deadline has already passed are expired at the current tick.
+            long ticks = Math.max(task._deadline / _tickNanos, _tick);
+            task._rounds = (ticks - _tick) / _wheel.length;
+            link(task, (int)(ticks & _mask));
+        }
+    }
+
+    private void expire(int bucket, long deadline)
+    {
+        WheelTask task = _wheel[bucket];
+        while (task != null)
+        {
+            WheelTask next = task._next;
+            if (task._rounds <= 0)
+            {
+                unlink(task);
+                if (task._deadline <= deadline)
+                    task.expire();
+                else
+                    // Should not happen, but do not lose the task.
+                    _scheduled.offer(task);
+            }
+            else
+            {
+                --task._rounds;
+            }
+            task = next;
+        }
+    }
+
+    private void link(WheelTask task, int bucket)
+    {
+        WheelTask head = _wheel[bucket];
+        task._bucket = bucket;
+        task._next = head;
+        if (head != null)
+            head._prev = task;
+        _wheel[bucket] = task;
+    }
+
+    private void unlink(WheelTask task)
+    {
+        int bucket = task._bucket;
+        if (bucket < 0)
+            return;
+        WheelTask prev = task._prev;
+        WheelTask next = task._next;
+        if (prev == null)
+            _wheel[bucket] = next;
+        else
+            prev._next = next;
+        if (next != null)
+            next._prev = prev;
+        task._prev = null;
+        task._next = null;
+        task._bucket = -1;
+    }
+
+    @Override
+    public String dump()
+    {
+        return ContainerLifeCycle.dump(this);
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        ContainerLifeCycle.dumpObject(out, this);
+        Thread thread = _thread;
+        if (thread != null)
+        {
+            List<StackTraceElement> frames = Arrays.asList(thread.getStackTrace());
+            ContainerLifeCycle.dump(out, indent, frames);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,tick=%dms,wheel=%d}",
+                getClass().getSimpleName(), hashCode(), getState(), getTickDuration(), getTicksPerWheel());
+    }
+
+    private class WheelTask implements Task
+    {
+        private static final int SCHEDULED = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final AtomicInteger _state = new AtomicInteger(SCHEDULED);
+        private final Runnable _task;
+        private final long _deadline;
+        // The fields below are only accessed by the wheel thread.
+        private long _rounds;
+        private int _bucket = -1;
+        private WheelTask _prev;
+        private WheelTask _next;
+
+        private WheelTask(Runnable task, long deadline)
+        {
+            _task = task;
+            _deadline = deadline;
+        }
+
+        private boolean isCancelled()
+        {
+            return _state.get() == CANCELLED;
+        }
+
+        @Override
+        public boolean cancel()
+        {
+            if (!_state.compareAndSet(SCHEDULED, CANCELLED))
+                return false;
+            _cancelled.offer(this);
+            return true;
+        }
+
+        private void expire()
+        {
+            if (!_state.compareAndSet(SCHEDULED, EXPIRED))
+                return;
+            try
+            {
+                _task.run();
+            }
+            catch (Throwable x)
+            {
+                LOG.warn("Exception while running " + _task, x);
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x{%d,%s}", getClass().getSimpleName(), hashCode(), _state.get(), _task);
+        }
+    }
+}
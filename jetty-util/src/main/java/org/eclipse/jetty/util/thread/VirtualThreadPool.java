@@ -0,0 +1,254 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.thread;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.Name;
+import org.eclipse.jetty.util.log.Log;
+import org.eclipse.jetty.util.log.Logger;
+
+/**
+ * <p>A {@link QueuedThreadPool} that runs blocking application work on virtual threads,
+ * when the runtime supports them.</p>
+ * <p>Blocking jobs submitted via {@link #execute(Runnable)}, that is jobs that are not
+ * {@link Invocable} or that are {@link Invocable.InvocationType#BLOCKING}, are each run by
+ * a new virtual thread: these are the handling of requests, including the dispatches after
+ * asynchronous processing, {@code AsyncContext.start(Runnable)} and the tasks of the
+ * execution strategies, so that a request blocked on a database or a remote call does not
+ * hold a platform thread. {@link org.eclipse.jetty.util.thread.strategy.EatWhatYouKill} also
+ * uses {@link #getVirtualThreadsExecutor()} directly to run the blocking tasks it produces.</p>
+ * <p>The other jobs are run by the platform threads of this pool as usual: the non blocking
+ * jobs, and the {@link PlatformJob}s that hold their thread for the life of a component, such
+ * as the selectors, the acceptors and the reserved threads of {@link ReservedThreadExecutor}.
+ * This pool may therefore be configured with a small number of platform threads, and it
+ * is not {@link #isLowOnThreads() low on threads} when only virtual threads are busy.</p>
+ * <p>Virtual threads are looked up by reflection, so this class can be used on a runtime
+ * without virtual threads, where it behaves as a plain {@link QueuedThreadPool}.</p>
+ */
+@ManagedObject("A thread pool with virtual threads")
+public class VirtualThreadPool extends QueuedThreadPool
+{
+    private static final Logger LOG = Log.getLogger(VirtualThreadPool.class);
+
+    private final AtomicInteger _virtualThreads = new AtomicInteger();
+    private final LongAdder _virtualThreadsStarted = new LongAdder();
+    private final Executor _virtualExecutor = this::executeVirtual;
+    private volatile ThreadFactory _virtualThreadFactory;
+    private boolean _useVirtualThreads = true;
+
+    public VirtualThreadPool()
+    {
+        this(16);
+    }
+
+    public VirtualThreadPool(@Name("maxThreads") int maxThreads)
+    {
+        this(maxThreads, Math.min(8, maxThreads));
+    }
+
+    public VirtualThreadPool(@Name("maxThreads") int maxThreads, @Name("minThreads") int minThreads)
+    {
+        this(maxThreads, minThreads, 60000, null);
+    }
+
+    public VirtualThreadPool(@Name("maxThreads") int maxThreads, @Name("minThreads") int minThreads, @Name("idleTimeout") int idleTimeout, @Name("queue") BlockingQueue<Runnable> queue)
+    {
+        super(maxThreads, minThreads, idleTimeout, queue);
+    }
+
+    /**
+     * <p>A job that holds its thread for the life of a component, such as a selector,
+     * an acceptor or a reserved thread, and is therefore always run by a platform thread.</p>
+     */
+    public interface PlatformJob extends Runnable
+    {
+    }
+
+    /**
+     * @return whether the runtime supports virtual threads
+     */
+    public static boolean isVirtualThreadsSupported()
+    {
+        try
+        {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        }
+        catch (NoSuchMethodException x)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * @param executor the executor to inspect
+     * @return the executor that runs jobs on virtual threads if the given executor is a
+     * {@link VirtualThreadPool} that uses virtual threads, or null
+     */
+    public static Executor getVirtualThreadsExecutor(Executor executor)
+    {
+        if (executor instanceof VirtualThreadPool)
+            return ((VirtualThreadPool)executor).getVirtualThreadsExecutor();
+        return null;
+    }
+
+    @ManagedAttribute("whether blocking jobs are run on virtual threads")
+    public boolean isUseVirtualThreads()
+    {
+        return _useVirtualThreads;
+    }
+
+    /**
+     * @param useVirtualThreads whether blocking jobs are run on virtual threads, when the runtime supports them
+     */
+    public void setUseVirtualThreads(boolean useVirtualThreads)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        _useVirtualThreads = useVirtualThreads;
+    }
+
+    /**
+     * @return the executor that runs each job on a new virtual thread, or null if this
+     * pool is not started, does not use virtual threads or the runtime does not support them
+     */
+    public Executor getVirtualThreadsExecutor()
+    {
+        return _virtualThreadFactory == null ? null : _virtualExecutor;
+    }
+
+    @Override
+    public void execute(Runnable job)
+    {
+        Executor virtualExecutor = getVirtualThreadsExecutor();
+        if (virtualExecutor != null && isVirtualJob(job))
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("virtual {}", job);
+            virtualExecutor.execute(job);
+        }
+        else
+        {
+            super.execute(job);
+        }
+    }
+
+    /**
+     * @param job the job to run
+     * @return whether the job is run by a virtual thread when submitted via {@link #execute(Runnable)}
+     */
+    protected boolean isVirtualJob(Runnable job)
+    {
+        return !(job instanceof PlatformJob) && Invocable.getInvocationType(job) == Invocable.InvocationType.BLOCKING;
+    }
+
+    @ManagedAttribute("number of virtual threads running jobs")
+    public int getVirtualThreads()
+    {
+        return _virtualThreads.get();
+    }
+
+    @ManagedAttribute("number of virtual threads started")
+    public long getVirtualThreadsStarted()
+    {
+        return _virtualThreadsStarted.sum();
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        _virtualThreadFactory = _useVirtualThreads ? newVirtualThreadFactory() : null;
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} virtual thread factory {}", this, _virtualThreadFactory);
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        _virtualThreadFactory = null;
+        super.doStop();
+    }
+
+    /**
+     * <p>Creates the factory of virtual threads, via reflection on the
+     * {@code Thread.ofVirtual()} builder.</p>
+     *
+     * @return the factory of virtual threads, or null if the runtime does not support them
+     */
+    protected ThreadFactory newVirtualThreadFactory()
+    {
+        try
+        {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Method name = builderClass.getMethod("name", String.class, long.class);
+            builder = name.invoke(builder, getName() + "-virtual-", 0L);
+            return (ThreadFactory)builderClass.getMethod("factory").invoke(builder);
+        }
+        catch (Throwable x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Virtual threads not supported", x);
+            return null;
+        }
+    }
+
+    private void executeVirtual(Runnable job)
+    {
+        ThreadFactory factory = _virtualThreadFactory;
+        if (factory == null || !isRunning())
+            throw new RejectedExecutionException(job.toString());
+        Thread thread = factory.newThread(() ->
+        {
+            try
+            {
+                job.run();
+            }
+            catch (Throwable x)
+            {
+                LOG.warn(x);
+            }
+            finally
+            {
+                _virtualThreads.decrementAndGet();
+            }
+        });
+        _virtualThreads.incrementAndGet();
+        _virtualThreadsStarted.increment();
+        try
+        {
+            thread.start();
+        }
+        catch (Throwable x)
+        {
+            _virtualThreads.decrementAndGet();
+            throw new RejectedExecutionException(job.toString(), x);
+        }
+    }
+}
@@ -21,7 +21,11 @@ package org.eclipse.jetty.util.thread.strategy;
 import java.io.Closeable;
 import java.util.concurrent.Executor;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
 import org.eclipse.jetty.util.log.Log;
 import org.eclipse.jetty.util.log.Logger;
@@ -31,6 +35,7 @@ import org.eclipse.jetty.util.thread.Invocable.InvocationType;
 import org.eclipse.jetty.util.thread.Locker;
 import org.eclipse.jetty.util.thread.Locker.Lock;
 import org.eclipse.jetty.util.thread.ReservedThreadExecutor;
+import org.eclipse.jetty.util.thread.VirtualThreadPool;
 
 /**
  * <p>A strategy where the thread that produces will run the resulting task if it 
@@ -56,14 +61,27 @@ import org.eclipse.jetty.util.thread.ReservedThreadExecutor;
  * the task and immediately continue producing.  When operating in this pattern, the
  * sub-strategy is called ProduceExecuteConsume (PEC).
  * </p>
+ * <p>If the executor is a {@link VirtualThreadPool} that uses virtual threads, the
+ * tasks that may block are never consumed by the producing thread, but always executed
+ * on a virtual thread, so that the producing thread immediately continues producing.</p>
+ * <p>The number of tasks run in each mode, and the number of switches between the
+ * modes, are exported as statistics: a high number of PEC tasks indicates that
+ * the {@link ReservedThreadExecutor} often had no reserved thread available.</p>
  */
-public class EatWhatYouKill extends ContainerLifeCycle implements ExecutionStrategy, Runnable
+@ManagedObject("eat what you kill execution strategy")
+public class EatWhatYouKill extends ContainerLifeCycle implements ExecutionStrategy, VirtualThreadPool.PlatformJob
 {
     private static final Logger LOG = Log.getLogger(EatWhatYouKill.class);
 
     private enum State { IDLE, PRODUCING, REPRODUCING }
+    private enum Mode { PRODUCE_CONSUME, EXECUTE_PRODUCE_CONSUME, PRODUCE_EXECUTE_CONSUME }
     
     private final Locker _locker = new Locker();
+    private final LongAdder _pcMode = new LongAdder();
+    private final LongAdder _epcMode = new LongAdder();
+    private final LongAdder _pecMode = new LongAdder();
+    private final LongAdder _modeSwitches = new LongAdder();
+    private volatile Mode _mode = Mode.PRODUCE_CONSUME;
     private State _state = State.IDLE;
     private final Producer _producer;
     private final Executor _executor;
@@ -199,30 +217,34 @@ public class EatWhatYouKill extends ContainerLifeCycle implements ExecutionStrat
                 // PRODUCE CONSUME (EWYK!)
                 if (LOG.isDebugEnabled())
                     LOG.debug("{} PC t={}",this,task);
+                mode(Mode.PRODUCE_CONSUME);
                 task.run();
             }
             else
             {
-                boolean consume;
-                try (Lock locked = _locker.lock())
+                Executor executor = VirtualThreadPool.getVirtualThreadsExecutor(_executor);
+                boolean consume = false;
+                if (executor == null)
                 {
-                    if (_producers.tryExecute(this))
-                    {
-                        // EXECUTE PRODUCE CONSUME!
-                        // We have executed a new Producer, so we can EWYK consume
-                        _state = State.IDLE;
-                        producing = false;
-                        consume = true;
-                    }
-                    else
+                    executor = _executor;
+                    try (Lock locked = _locker.lock())
                     {
-                        // PRODUCE EXECUTE CONSUME!
-                        consume = false;
+                        if (_producers.tryExecute(this))
+                        {
+                            // EXECUTE PRODUCE CONSUME!
+                            // We have executed a new Producer, so we can EWYK consume
+                            _state = State.IDLE;
+                            producing = false;
+                            consume = true;
+                        }
                     }
                 }
+                // else PRODUCE EXECUTE CONSUME on a virtual thread!
+                // The task may block, so it is never consumed by the producing thread.
 
                 if (LOG.isDebugEnabled())
                     LOG.debug("{} {} t={}",this,consume?"EPC":"PEC",task);
+                mode(consume?Mode.EXECUTE_PRODUCE_CONSUME:Mode.PRODUCE_EXECUTE_CONSUME);
                 
                 // Consume or execute task
                 try
@@ -230,7 +252,7 @@ public class EatWhatYouKill extends ContainerLifeCycle implements ExecutionStrat
                     if (consume)
                         task.run();
                     else
-                        _executor.execute(task);
+                        executor.execute(task);
                 }
                 catch(RejectedExecutionException e)
                 {
@@ -257,6 +279,60 @@ public class EatWhatYouKill extends ContainerLifeCycle implements ExecutionStrat
         return producing;
     }
 
+    private void mode(Mode mode)
+    {
+        switch (mode)
+        {
+            case PRODUCE_CONSUME:
+                _pcMode.increment();
+                break;
+            case EXECUTE_PRODUCE_CONSUME:
+                _epcMode.increment();
+                break;
+            default:
+                _pecMode.increment();
+                break;
+        }
+        if (_mode!=mode)
+        {
+            _mode = mode;
+            _modeSwitches.increment();
+        }
+    }
+
+    @ManagedAttribute("number of non blocking tasks consumed by the producing thread")
+    public long getPCTasksConsumed()
+    {
+        return _pcMode.sum();
+    }
+
+    @ManagedAttribute("number of blocking tasks consumed after executing a new producer")
+    public long getEPCTasksConsumed()
+    {
+        return _epcMode.sum();
+    }
+
+    @ManagedAttribute("number of blocking tasks executed by the producing thread")
+    public long getPECTasksExecuted()
+    {
+        return _pecMode.sum();
+    }
+
+    @ManagedAttribute("number of switches between the PC, EPC and PEC modes")
+    public long getModeSwitches()
+    {
+        return _modeSwitches.sum();
+    }
+
+    @ManagedOperation(value = "resets the statistics", impact = "ACTION")
+    public void resetStatistics()
+    {
+        _pcMode.reset();
+        _epcMode.reset();
+        _pecMode.reset();
+        _modeSwitches.reset();
+    }
+
     public Boolean isIdle()
     {
         try (Lock locked = _locker.lock())
@@ -27,6 +27,7 @@ import org.eclipse.jetty.util.thread.Invocable;
 import org.eclipse.jetty.util.thread.Invocable.InvocationType;
 import org.eclipse.jetty.util.thread.Locker;
 import org.eclipse.jetty.util.thread.Locker.Lock;
+import org.eclipse.jetty.util.thread.VirtualThreadPool;
 
 /**
  * <p>A strategy where the thread that produces will always run the resulting task.</p>
@@ -41,7 +42,7 @@ import org.eclipse.jetty.util.thread.Locker.Lock;
  * does not yet have capacity to consume, which can save memory and exert back
  * pressure on producers.</p>
  */
-public class ExecuteProduceConsume implements ExecutionStrategy, Runnable
+public class ExecuteProduceConsume implements ExecutionStrategy, VirtualThreadPool.PlatformJob
 {
     private static final Logger LOG = Log.getLogger(ExecuteProduceConsume.class);
 
@@ -25,12 +25,13 @@ import org.eclipse.jetty.util.log.Logger;
 import org.eclipse.jetty.util.thread.ExecutionStrategy;
 import org.eclipse.jetty.util.thread.Invocable;
 import org.eclipse.jetty.util.thread.Locker;
+import org.eclipse.jetty.util.thread.VirtualThreadPool;
 
 /**
  * <p>A strategy where the caller thread iterates over task production, submitting each
  * task to an {@link Executor} for execution.</p>
  */
-public class ProduceConsume implements ExecutionStrategy, Runnable
+public class ProduceConsume implements ExecutionStrategy, VirtualThreadPool.PlatformJob
 {
     private static final Logger LOG = Log.getLogger(ExecuteProduceConsume.class);
 
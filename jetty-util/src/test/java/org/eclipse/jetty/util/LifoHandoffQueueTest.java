@@ -0,0 +1,220 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class LifoHandoffQueueTest
+{
+    @Test
+    public void testQueuedInOrderWithoutWaiters() throws Exception
+    {
+        LifoHandoffQueue<String> queue = new LifoHandoffQueue<>();
+        queue.offer("one");
+        queue.offer("two");
+        queue.offer("three");
+        assertThat(queue.size(), is(3));
+        assertThat(queue.peek(), is("one"));
+        assertThat(queue.poll(), is("one"));
+        assertThat(queue.poll(1, TimeUnit.SECONDS), is("two"));
+        assertThat(queue.take(), is("three"));
+        assertThat(queue.poll(), nullValue());
+        assertThat(queue.size(), is(0));
+        assertThat(queue.getQueued(), is(3L));
+        assertThat(queue.getHandoffs(), is(0L));
+        assertThat(queue.getLatency().getCount(), is(3L));
+    }
+
+    @Test
+    public void testHandoffToLastWaiter() throws Exception
+    {
+        LifoHandoffQueue<String> queue = new LifoHandoffQueue<>();
+        AtomicReference<String> first = new AtomicReference<>();
+        AtomicReference<String> second = new AtomicReference<>();
+
+        Thread thread1 = new Thread(() -> first.set(poll(queue)));
+        thread1.start();
+        awaitWaiters(queue, 1);
+        Thread thread2 = new Thread(() -> second.set(poll(queue)));
+        thread2.start();
+        awaitWaiters(queue, 2);
+
+        queue.offer("a");
+        thread2.join(5000);
+        assertThat(second.get(), is("a"));
+        assertThat(first.get(), nullValue());
+
+        queue.offer("b");
+        thread1.join(5000);
+        assertThat(first.get(), is("b"));
+
+        assertThat(queue.getHandoffs(), is(2L));
+        assertThat(queue.getQueued(), is(0L));
+        assertThat(queue.size(), is(0));
+    }
+
+    @Test
+    public void testTimedOutWaitersAreRemoved() throws Exception
+    {
+        LifoHandoffQueue<String> queue = new LifoHandoffQueue<>();
+        for (int i = 0; i < 3; ++i)
+            assertThat(queue.poll(10, TimeUnit.MILLISECONDS), nullValue());
+        assertThat(queue.getWaiters(), is(0));
+
+        // The element is queued, not handed to a cancelled waiter.
+        queue.offer("x");
+        assertThat(queue.getQueued(), is(1L));
+        assertThat(queue.poll(), is("x"));
+    }
+
+    @Test
+    public void testInterruptedWaiter() throws Exception
+    {
+        LifoHandoffQueue<String> queue = new LifoHandoffQueue<>();
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Thread thread = new Thread(() ->
+        {
+            try
+            {
+                queue.take();
+            }
+            catch (InterruptedException x)
+            {
+                interrupted.countDown();
+            }
+        });
+        thread.start();
+        awaitWaiters(queue, 1);
+        thread.interrupt();
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertThat(queue.getWaiters(), is(0));
+    }
+
+    @Test
+    public void testConcurrentProducersAndConsumers() throws Exception
+    {
+        LifoHandoffQueue<Integer> queue = new LifoHandoffQueue<>();
+        int producers = 4;
+        int consumers = 4;
+        int count = 20000;
+        Set<Integer> consumed = ConcurrentHashMap.newKeySet();
+        CountDownLatch latch = new CountDownLatch(producers * count);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < consumers; ++c)
+        {
+            threads.add(new Thread(() ->
+            {
+                try
+                {
+                    while (true)
+                    {
+                        Integer item = queue.poll(1, TimeUnit.MILLISECONDS);
+                        if (item != null)
+                        {
+                            if (item < 0)
+                                return;
+                            assertTrue(consumed.add(item));
+                            latch.countDown();
+                        }
+                    }
+                }
+                catch (InterruptedException x)
+                {
+                    throw new RuntimeException(x);
+                }
+            }));
+        }
+        for (int p = 0; p < producers; ++p)
+        {
+            int base = p * count;
+            threads.add(new Thread(() ->
+            {
+                for (int i = 0; i < count; ++i)
+                    queue.offer(base + i);
+            }));
+        }
+        threads.forEach(Thread::start);
+
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        for (int c = 0; c < consumers; ++c)
+            queue.offer(-1);
+        for (Thread thread : threads)
+            thread.join(5000);
+
+        assertThat(consumed.size(), is(producers * count));
+        assertThat(queue.size(), is(0));
+        assertThat(queue.getHandoffs() + queue.getQueued(), is((long)producers * count + consumers));
+    }
+
+    @Test
+    public void testAsThreadPoolQueue() throws Exception
+    {
+        BlockingQueue<Runnable> queue = new LifoHandoffQueue<>();
+        QueuedThreadPool threadPool = new QueuedThreadPool(8, 2, 60000, queue);
+        threadPool.start();
+        try
+        {
+            int jobs = 1000;
+            CountDownLatch latch = new CountDownLatch(jobs);
+            for (int i = 0; i < jobs; ++i)
+                threadPool.execute(latch::countDown);
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        }
+        finally
+        {
+            threadPool.stop();
+        }
+    }
+
+    private static String poll(LifoHandoffQueue<String> queue)
+    {
+        try
+        {
+            return queue.poll(5, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException x)
+        {
+            return null;
+        }
+    }
+
+    private static void awaitWaiters(LifoHandoffQueue<?> queue, int waiters) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queue.getWaiters() < waiters && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        assertThat(queue.getWaiters(), is(waiters));
+    }
+}
@@ -0,0 +1,69 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.statistic;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class HistogramStatisticTest
+{
+    @Test
+    public void testBuckets()
+    {
+        for (long value : new long[]{0, 1, 7, 8, 15, 16, 100, 1000, 123456789, Long.MAX_VALUE})
+        {
+            long highest = HistogramStatistic.highestValueOf(HistogramStatistic.indexOf(value));
+            assertThat(highest, greaterThanOrEqualTo(value));
+            // The relative error is below 12.5%.
+            assertThat(highest - value, lessThanOrEqualTo(value / 8));
+        }
+    }
+
+    @Test
+    public void testPercentiles()
+    {
+        HistogramStatistic histogram = new HistogramStatistic();
+        assertThat(histogram.getValueAtPercentile(99), is(0L));
+
+        for (int i = 1; i <= 1000; ++i)
+            histogram.record(i);
+
+        assertThat(histogram.getCount(), is(1000L));
+        assertThat(histogram.getMax(), is(1000L));
+        assertEquals(500.5, histogram.getMean(), 0.01);
+        assertNear(500, histogram.getValueAtPercentile(50));
+        assertNear(990, histogram.getValueAtPercentile(99));
+        assertThat(histogram.getValueAtPercentile(100), is(1000L));
+
+        histogram.reset();
+        assertThat(histogram.getCount(), is(0L));
+        assertThat(histogram.getValueAtPercentile(50), is(0L));
+    }
+
+    private void assertNear(long expected, long actual)
+    {
+        assertThat(actual, greaterThanOrEqualTo(expected));
+        assertThat(actual, lessThanOrEqualTo(expected + expected / 8));
+    }
+}
@@ -0,0 +1,131 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.thread;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ExecutorPartitionTest
+{
+    @Test
+    public void testLocalThenStolenThenShared() throws Exception
+    {
+        AtomicInteger shared = new AtomicInteger();
+        Executor executor = task ->
+        {
+            shared.incrementAndGet();
+            new Thread(task).start();
+        };
+        ExecutorPartition partition0 = new ExecutorPartition("test", 0, 1, executor, null);
+        ExecutorPartition partition1 = new ExecutorPartition("test", 1, 1, executor, null);
+        partition0.setPeers(Arrays.asList(partition0, partition1));
+        partition1.setPeers(Arrays.asList(partition0, partition1));
+        partition0.start();
+        partition1.start();
+        try
+        {
+            awaitReserved(partition0);
+            awaitReserved(partition1);
+
+            // Each partition has 1 reserved thread and at most 2 threads.
+            CountDownLatch block = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(5);
+            String[] threads = new String[5];
+            execute(partition0, 0, threads, block, done);
+            awaitReserved(partition0);
+            execute(partition0, 1, threads, block, done);
+            execute(partition0, 2, threads, block, done);
+            awaitReserved(partition1);
+            execute(partition0, 3, threads, block, done);
+            execute(partition0, 4, threads, block, done);
+            block.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+
+            assertThat(threads[0], startsWith("test-0"));
+            assertThat(threads[1], startsWith("test-0"));
+            assertThat(threads[2], startsWith("test-1"));
+            assertThat(threads[3], startsWith("test-1"));
+            assertThat(partition0.getLocalTasks(), is(2L));
+            assertThat(partition0.getStolenTasks(), is(2L));
+            assertThat(partition0.getSharedTasks(), is(1L));
+            assertThat(shared.get(), is(1));
+        }
+        finally
+        {
+            partition1.stop();
+            partition0.stop();
+        }
+    }
+
+    @Test
+    public void testThreadAffinity() throws Exception
+    {
+        CountDownLatch bound = new CountDownLatch(2);
+        ExecutorPartition partition = new ExecutorPartition("test", 3, 2, Runnable::run, index ->
+        {
+            assertThat(index, is(3));
+            bound.countDown();
+        });
+        partition.start();
+        try
+        {
+            assertTrue(bound.await(5, TimeUnit.SECONDS));
+        }
+        finally
+        {
+            partition.stop();
+        }
+    }
+
+    private static void execute(Executor executor, int job, String[] threads, CountDownLatch block, CountDownLatch done)
+    {
+        executor.execute(() ->
+        {
+            threads[job] = Thread.currentThread().getName();
+            try
+            {
+                block.await();
+            }
+            catch (InterruptedException x)
+            {
+                throw new RuntimeException(x);
+            }
+            done.countDown();
+        });
+    }
+
+    private static void awaitReserved(ExecutorPartition partition) throws InterruptedException
+    {
+        ReservedThreadExecutor reserved = partition.getReservedThreadExecutor();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (reserved.getPreallocated() < reserved.getCapacity() && System.nanoTime() < deadline)
+            Thread.sleep(1);
+        assertThat(reserved.getPreallocated(), is(reserved.getCapacity()));
+    }
+}
@@ -0,0 +1,206 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.thread;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class PriorityLaneQueueTest
+{
+    @Test
+    public void testPriorityLaneFirst() throws Exception
+    {
+        PriorityLaneQueue queue = new PriorityLaneQueue(2);
+        Runnable normal1 = new Job("n1",null);
+        Runnable normal2 = new Job("n2",null);
+        Runnable priority = new NonBlockingJob("p",null);
+
+        assertTrue(queue.offer(normal1));
+        assertTrue(queue.offer(normal2));
+        // The normal lane is full, but the priority lane is not bounded.
+        assertThat(queue.offer(new Job("n3",null)),is(false));
+        assertTrue(queue.offer(priority));
+
+        assertThat(queue.size(),is(3));
+        assertThat(queue.getPrioritySize(),is(1));
+        assertThat(queue.getNormalSize(),is(2));
+        assertThat(queue,contains(priority,normal1,normal2));
+
+        assertThat(queue.poll(),sameInstance(priority));
+        assertThat(queue.poll(),sameInstance(normal1));
+        assertThat(queue.poll(1,TimeUnit.MILLISECONDS),sameInstance(normal2));
+        assertThat(queue.poll(1,TimeUnit.MILLISECONDS),nullValue());
+
+        assertThat(queue.getPriorityJobs(),is(1L));
+        assertThat(queue.getNormalJobs(),is(2L));
+        assertThat(queue.getNormalMaxSize(),is(2));
+        assertThat(queue.getNormalWaitTimes().getCount(),is(2L));
+
+        queue.resetStatistics();
+        assertThat(queue.getNormalJobs(),is(0L));
+        assertThat(queue.getNormalMaxSize(),is(0));
+    }
+
+    @Test
+    public void testPriorityBurstDoesNotStarveNormalLane() throws Exception
+    {
+        PriorityLaneQueue queue = new PriorityLaneQueue();
+        queue.setMaxPriorityBurst(2);
+        Runnable normal1 = new Job("n1",null);
+        Runnable normal2 = new Job("n2",null);
+        queue.offer(normal1);
+        queue.offer(normal2);
+        Runnable[] priority = new Runnable[5];
+        for (int i = 0; i < priority.length; ++i)
+        {
+            priority[i] = new NonBlockingJob("p" + i,null);
+            queue.offer(priority[i]);
+        }
+
+        assertThat(queue.poll(),sameInstance(priority[0]));
+        assertThat(queue.poll(),sameInstance(priority[1]));
+        // After a burst of priority jobs, a normal job is polled.
+        assertThat(queue.peek(),sameInstance(normal1));
+        assertThat(queue.poll(),sameInstance(normal1));
+        assertThat(queue.poll(),sameInstance(priority[2]));
+        assertThat(queue.poll(),sameInstance(priority[3]));
+        assertThat(queue.poll(),sameInstance(normal2));
+        // The burst is not limited when the normal lane is empty.
+        assertThat(queue.poll(),sameInstance(priority[4]));
+        assertThat(queue.poll(),nullValue());
+    }
+
+    @Test
+    public void testLaneGrowsAndRemoves() throws Exception
+    {
+        PriorityLaneQueue queue = new PriorityLaneQueue();
+        Runnable[] jobs = new Runnable[40];
+        for (int i = 0; i < jobs.length; ++i)
+        {
+            jobs[i] = new Job("n" + i,null);
+            queue.offer(jobs[i]);
+            // Move the head of the ring, so that it wraps around.
+            if (i % 4 == 0)
+                queue.offer(queue.poll());
+        }
+        assertThat(queue.size(),is(jobs.length));
+        Runnable removed = queue.poll();
+        assertTrue(queue.remove(jobs[20]));
+        assertThat(queue.remove(jobs[20]),is(false));
+        assertThat(queue.size(),is(jobs.length - 2));
+
+        int polled = 1;
+        Runnable job;
+        while ((job = queue.poll()) != null)
+        {
+            assertThat(job == jobs[20] || job == removed,is(false));
+            ++polled;
+        }
+        assertThat(polled,is(jobs.length - 1));
+        // Every job queued, except the removed one, recorded its wait time.
+        assertThat(queue.getNormalWaitTimes().getCount(),is(queue.getNormalJobs() - 1));
+    }
+
+    @Test
+    public void testNonBlockingJobsBypassApplicationJobs() throws Exception
+    {
+        PriorityLaneQueue queue = new PriorityLaneQueue();
+        QueuedThreadPool pool = new QueuedThreadPool(1,1,60000,queue);
+        pool.start();
+        try
+        {
+            // Keep the only thread busy while jobs are queued.
+            CountDownLatch busy = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            pool.execute(()->
+            {
+                busy.countDown();
+                try
+                {
+                    release.await();
+                }
+                catch (InterruptedException e)
+                {
+                    throw new RuntimeException(e);
+                }
+            });
+            assertTrue(busy.await(5,TimeUnit.SECONDS));
+
+            List<String> ran = new CopyOnWriteArrayList<>();
+            pool.execute(new Job("application1",ran));
+            pool.execute(new Job("application2",ran));
+            pool.execute(new NonBlockingJob("control",ran));
+            assertThat(pool.getPriorityQueueSize(),is(1));
+            assertThat(pool.getQueueSize(),is(3));
+
+            CountDownLatch done = new CountDownLatch(1);
+            pool.execute(done::countDown);
+            release.countDown();
+            assertTrue(done.await(5,TimeUnit.SECONDS));
+            assertThat(ran,contains("control","application1","application2"));
+        }
+        finally
+        {
+            pool.stop();
+        }
+    }
+
+    private static class Job implements Runnable
+    {
+        private final String _name;
+        private final List<String> _ran;
+
+        private Job(String name, List<String> ran)
+        {
+            _name = name;
+            _ran = ran;
+        }
+
+        @Override
+        public void run()
+        {
+            _ran.add(_name);
+        }
+    }
+
+    private static class NonBlockingJob extends Job implements Invocable
+    {
+        private NonBlockingJob(String name, List<String> ran)
+        {
+            super(name,ran);
+        }
+
+        @Override
+        public InvocationType getInvocationType()
+        {
+            return InvocationType.NON_BLOCKING;
+        }
+    }
+}
@@ -23,6 +23,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -302,4 +303,76 @@ public class QueuedThreadPoolTest
 
         assertTrue(latch.await(5, TimeUnit.SECONDS));
     }
+
+    @Test
+    public void testJobStatistics() throws Exception
+    {
+        QueuedThreadPool pool = new QueuedThreadPool(4, 2);
+        pool.setJobStatistics(true);
+        pool.start();
+        try
+        {
+            CountDownLatch latch = new CountDownLatch(30);
+            for (int i = 0; i < 10; ++i)
+            {
+                pool.execute(new CountingJob(latch));
+                pool.execute(() ->
+                {
+                    try
+                    {
+                        Thread.sleep(10);
+                    }
+                    catch (InterruptedException x)
+                    {
+                        throw new RuntimeException(x);
+                    }
+                    latch.countDown();
+                });
+                pool.execute(() -> latch.countDown());
+            }
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+            // Run times are recorded after the jobs complete.
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            Map<String, String> statistics = pool.getJobStatisticsByClass();
+            while (completed(statistics, CountingJob.class.getName()) != 1 || completed(statistics, QueuedThreadPoolTest.class.getName() + "$$Lambda") != 2)
+            {
+                assertTrue(System.nanoTime() < deadline);
+                Thread.sleep(10);
+                statistics = pool.getJobStatisticsByClass();
+            }
+            assertEquals(3, statistics.size());
+            assertThat(pool.getJobRunTime99(), greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toMicros(10)));
+
+            pool.resetJobStatistics();
+            assertTrue(pool.getJobStatisticsByClass().isEmpty());
+        }
+        finally
+        {
+            pool.stop();
+        }
+    }
+
+    private static long completed(Map<String, String> statistics, String jobClassPrefix)
+    {
+        return statistics.entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith(jobClassPrefix) && entry.getValue().startsWith("jobs=10,"))
+                .count();
+    }
+
+    private static class CountingJob implements Runnable
+    {
+        private final CountDownLatch _latch;
+
+        private CountingJob(CountDownLatch latch)
+        {
+            _latch = latch;
+        }
+
+        @Override
+        public void run()
+        {
+            _latch.countDown();
+        }
+    }
 }
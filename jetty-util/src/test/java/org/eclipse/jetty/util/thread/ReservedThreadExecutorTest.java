@@ -155,7 +155,51 @@ public class ReservedThreadExecutorTest
         }
         assertThat(_pae.getPreallocated(),is(SIZE));
         
-        
+        assertThat(_pae.getHits(),is((long)SIZE));
+        assertThat(_pae.getMisses(),is(1L));
+    }
+
+    @Test
+    public void testIdleTimeout() throws Exception
+    {
+        _pae.setIdleTimeout(500,TimeUnit.MILLISECONDS);
+        while(!_executor._queue.isEmpty())
+            _executor.execute();
+        long started = System.nanoTime();
+        while (_pae.getPreallocated()<SIZE)
+        {
+            if (TimeUnit.NANOSECONDS.toSeconds(System.nanoTime()-started)>10)
+                break;
+            Thread.sleep(10);
+        }
+        assertThat(_pae.getPreallocated(),is(SIZE));
+
+        // The unused reserved threads are released after the idle timeout.
+        started = System.nanoTime();
+        while (_pae.getPreallocated()>0)
+        {
+            if (TimeUnit.NANOSECONDS.toSeconds(System.nanoTime()-started)>10)
+                break;
+            Thread.sleep(100);
+        }
+        assertThat(_pae.getPreallocated(),is(0));
+        assertThat(_pae.getIdleExpirations(),is((long)SIZE));
+
+        // A miss reserves a thread again.
+        assertThat(_pae.tryExecute(new NOOP()),is(false));
+        assertThat(_pae.getMisses(),is(1L));
+        assertThat(_executor._queue.size(),is(1));
+        _executor.execute();
+        started = System.nanoTime();
+        while (_pae.getPreallocated()<1)
+        {
+            if (TimeUnit.NANOSECONDS.toSeconds(System.nanoTime()-started)>10)
+                break;
+            Thread.sleep(10);
+        }
+        assertThat(_pae.getPreallocated(),is(1));
+        assertThat(_pae.tryExecute(new NOOP()),is(true));
+        assertThat(_pae.getHits(),is(1L));
     }
     
     
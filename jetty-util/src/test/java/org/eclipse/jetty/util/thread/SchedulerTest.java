@@ -48,7 +48,8 @@ public class SchedulerTest
     {
         Object[][] data = new Object[][]{
             {new TimerScheduler()},
-            {new ScheduledExecutorScheduler()}/*,
+            {new ScheduledExecutorScheduler()},
+            {new TimingWheelScheduler(null,false,10,TimeUnit.MILLISECONDS,64)}/*,
             {new ConcurrentScheduler(0)},
             {new ConcurrentScheduler(1500)},
             {new ConcurrentScheduler(executor,1500)}*/
@@ -0,0 +1,217 @@
+//
+//  ========================================================================
+//  Copyright (c) 1995-2017 Mort Bay Consulting Pty. Ltd.
+//  ------------------------------------------------------------------------
+//  All rights reserved. This program and the accompanying materials
+//  are made available under the terms of the Eclipse Public License v1.0
+//  and Apache License v2.0 which accompanies this distribution.
+//
+//      The Eclipse Public License is available at
+//      http://www.eclipse.org/legal/epl-v10.html
+//
+//      The Apache License v2.0 is available at
+//      http://www.opensource.org/licenses/apache2.0.php
+//
+//  You may elect to redistribute this code under either of these licenses.
+//  ========================================================================
+//
+
+package org.eclipse.jetty.util.thread;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.util.thread.strategy.EatWhatYouKill;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class VirtualThreadPoolTest
+{
+    @Test
+    public void testVirtualThreadsExecutorMatchesRuntime() throws Exception
+    {
+        VirtualThreadPool pool = new VirtualThreadPool();
+        assertThat(pool.getVirtualThreadsExecutor(), nullValue());
+        pool.start();
+        try
+        {
+            assertThat(pool.getVirtualThreadsExecutor() != null, is(VirtualThreadPool.isVirtualThreadsSupported()));
+        }
+        finally
+        {
+            pool.stop();
+        }
+        assertThat(pool.getVirtualThreadsExecutor(), nullValue());
+    }
+
+    @Test
+    public void testUseVirtualThreadsDisabled() throws Exception
+    {
+        VirtualThreadPool pool = new TestVirtualThreadPool();
+        pool.setUseVirtualThreads(false);
+        pool.start();
+        try
+        {
+            assertThat(pool.getVirtualThreadsExecutor(), nullValue());
+            assertThat(VirtualThreadPool.getVirtualThreadsExecutor(pool), nullValue());
+        }
+        finally
+        {
+            pool.stop();
+        }
+    }
+
+    @Test
+    public void testEatWhatYouKillNeverConsumesBlockingTasks() throws Exception
+    {
+        VirtualThreadPool pool = new TestVirtualThreadPool();
+        pool.start();
+        assertThat(VirtualThreadPool.getVirtualThreadsExecutor(pool), notNullValue());
+
+        int tasks = 10;
+        CountDownLatch latch = new CountDownLatch(tasks);
+        Queue<String> threads = new ConcurrentLinkedQueue<>();
+        AtomicInteger produced = new AtomicInteger();
+        EatWhatYouKill strategy = new EatWhatYouKill(() ->
+        {
+            if (produced.getAndIncrement() >= tasks)
+                return null;
+            return () ->
+            {
+                threads.add(Thread.currentThread().getName());
+                latch.countDown();
+            };
+        }, pool);
+        strategy.start();
+        try
+        {
+            strategy.produce();
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            for (String thread : threads)
+                assertThat(thread, startsWith("test-virtual-"));
+            assertThat(pool.getVirtualThreadsStarted(), is((long)tasks));
+        }
+        finally
+        {
+            strategy.stop();
+            pool.stop();
+        }
+    }
+
+    @Test
+    public void testExecuteRunsBlockingJobsOnVirtualThreads() throws Exception
+    {
+        VirtualThreadPool pool = new TestVirtualThreadPool();
+        pool.start();
+        try
+        {
+            Queue<String> threads = new ConcurrentLinkedQueue<>();
+
+            CountDownLatch blocking = new CountDownLatch(1);
+            pool.execute(() ->
+            {
+                threads.add(Thread.currentThread().getName());
+                blocking.countDown();
+            });
+            assertTrue(blocking.await(5, TimeUnit.SECONDS));
+            assertThat(threads.poll(), startsWith("test-virtual-"));
+
+            CountDownLatch nonBlocking = new CountDownLatch(1);
+            pool.execute(new NonBlockingJob()
+            {
+                @Override
+                public void run()
+                {
+                    threads.add(Thread.currentThread().getName());
+                    nonBlocking.countDown();
+                }
+            });
+            assertTrue(nonBlocking.await(5, TimeUnit.SECONDS));
+            assertThat(threads.poll(), not(startsWith("test-virtual-")));
+
+            CountDownLatch platform = new CountDownLatch(1);
+            pool.execute((VirtualThreadPool.PlatformJob)() ->
+            {
+                threads.add(Thread.currentThread().getName());
+                platform.countDown();
+            });
+            assertTrue(platform.await(5, TimeUnit.SECONDS));
+            assertThat(threads.poll(), not(startsWith("test-virtual-")));
+
+            assertThat(pool.getVirtualThreadsStarted(), is(1L));
+        }
+        finally
+        {
+            pool.stop();
+        }
+    }
+
+    @Test
+    public void testBlockedVirtualThreadsDoNotMakePoolLowOnThreads() throws Exception
+    {
+        VirtualThreadPool pool = new TestVirtualThreadPool();
+        pool.setMinThreads(2);
+        pool.setMaxThreads(4);
+        pool.start();
+        CountDownLatch release = new CountDownLatch(1);
+        try
+        {
+            int jobs = 16;
+            CountDownLatch started = new CountDownLatch(jobs);
+            for (int i = 0; i < jobs; ++i)
+            {
+                pool.execute(() ->
+                {
+                    started.countDown();
+                    try
+                    {
+                        release.await();
+                    }
+                    catch (InterruptedException x)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertThat(pool.isLowOnThreads(), is(false));
+        }
+        finally
+        {
+            release.countDown();
+            pool.stop();
+        }
+    }
+
+    private abstract static class NonBlockingJob implements Runnable, Invocable
+    {
+        @Override
+        public InvocationType getInvocationType()
+        {
+            return InvocationType.NON_BLOCKING;
+        }
+    }
+
+    private static class TestVirtualThreadPool extends VirtualThreadPool
+    {
+        private final AtomicInteger _ids = new AtomicInteger();
+
+        @Override
+        protected ThreadFactory newVirtualThreadFactory()
+        {
+            // Platform threads stand in for virtual threads on runtimes that lack them.
+            return job -> new Thread(job, "test-virtual-" + _ids.getAndIncrement());
+        }
+    }
+}